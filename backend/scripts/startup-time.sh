@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Milliseconds from launch until /actuator/health/readiness is UP (warm-up included), averaged over RUNS
+# starts without and with the AppCDS archive. Build it first: mvn package -Pcds -DskipTests
+# Usage: scripts/startup-time.sh [runs] [port]
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${2:-18080}
+DIR=$(cd "$(dirname "$0")/.." && pwd)/target/cds
+JAR=$DIR/backend-0.0.1-SNAPSHOT-exec.jar
+ARCHIVE=$DIR/backend.jsa
+
+if [[ ! -f $JAR || ! -f $ARCHIVE ]]; then
+  echo "No AppCDS build in $DIR; run: mvn package -Pcds -DskipTests" >&2
+  exit 1
+fi
+
+# Prints the milliseconds one start took to become ready
+start_once() {
+  local started pid
+  started=$(date +%s%N)
+  java "$@" -jar "$JAR" --server.port="$PORT" --spring.datasource.url=jdbc:h2:mem:startup \
+    --routes.prefetch.enabled=false --routes.warmup.snapshot-file= >/dev/null 2>&1 &
+  pid=$!
+  until curl -sf "http://localhost:$PORT/actuator/health/readiness" >/dev/null 2>&1; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "The application exited before it was ready" >&2
+      exit 1
+    fi
+    sleep 0.05
+  done
+  echo $(( ($(date +%s%N) - started) / 1000000 ))
+  kill -TERM "$pid"
+  wait "$pid" || true
+}
+
+measure() {
+  local label=$1 total=0 ms
+  shift
+  for ((i = 1; i <= RUNS; i++)); do
+    ms=$(start_once "$@")
+    total=$((total + ms))
+    echo "$label run $i: $ms ms"
+  done
+  echo "$label average: $((total / RUNS)) ms"
+}
+
+measure "Without CDS" -Xshare:auto
+measure "With CDS   " -XX:SharedArchiveFile="$ARCHIVE"
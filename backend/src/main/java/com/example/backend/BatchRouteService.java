@@ -0,0 +1,124 @@
+package com.example.backend;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Fans a batch of route requests out over RouteService with bounded concurrency.
+// Entries that quantize to the same cache key share one computation; results are reported as each key finishes.
+@Service
+public class BatchRouteService {
+
+    public record BatchResult(int index, Route route, String token, String error, String details) {
+        static BatchResult success(int index, Route route, String token) {
+            return new BatchResult(index, route, token, null, null);
+        }
+
+        static BatchResult failure(int index, String error, String details) {
+            return new BatchResult(index, null, null, error, details);
+        }
+
+        public boolean isSuccess() {
+            return route != null;
+        }
+    }
+
+    private final RouteService routeService;
+    private final int maxConcurrency;
+    private final int maxItems;
+
+    public BatchRouteService(RouteService routeService,
+                             @Value("${routes.batch.max-concurrency:8}") int maxConcurrency,
+                             @Value("${routes.batch.max-items:500}") int maxItems) {
+        this.routeService = routeService;
+        this.maxConcurrency = maxConcurrency;
+        this.maxItems = maxItems;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    // items maps each request's position in the batch to the (already validated) request.
+    // sink is called once per item, from whichever thread completes it; the future completes after the last call.
+    public CompletableFuture<Void> generate(Map<Integer, RouteRequest> items, long seed, Consumer<BatchResult> sink) {
+        Map<RouteKey, List<Integer>> indicesByKey = new LinkedHashMap<>();
+        Map<RouteKey, RouteRequest> requestByKey = new HashMap<>();
+        for (Map.Entry<Integer, RouteRequest> item : items.entrySet()) {
+            RouteRequest request = item.getValue();
+            RouteKey key = routeService.keyFor(request.getShape(), request.getTerrainPreference(), request.getLat(),
+                    request.getLon(), request.getDistanceKm());
+            indicesByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(item.getKey());
+            requestByKey.putIfAbsent(key, request);
+        }
+
+        // Longest legs first, so shorter legs from the same start can reuse their cached reachable set
+        List<RouteKey> keys = new ArrayList<>(indicesByKey.keySet());
+        keys.sort(Comparator.comparingInt(RouteKey::distanceMeters).reversed());
+
+        BatchRun run = new BatchRun(keys, indicesByKey, requestByKey, seed, sink);
+        for (int i = 0; i < Math.min(maxConcurrency, keys.size()); i++) {
+            run.launchNext();
+        }
+        if (keys.isEmpty()) {
+            run.done.complete(null);
+        }
+        return run.done;
+    }
+
+    // Keeps at most maxConcurrency keys in flight: each completion launches the next key
+    private final class BatchRun {
+        private final List<RouteKey> keys;
+        private final Map<RouteKey, List<Integer>> indicesByKey;
+        private final Map<RouteKey, RouteRequest> requestByKey;
+        private final long seed;
+        private final Consumer<BatchResult> sink;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        BatchRun(List<RouteKey> keys, Map<RouteKey, List<Integer>> indicesByKey, Map<RouteKey, RouteRequest> requestByKey,
+                 long seed, Consumer<BatchResult> sink) {
+            this.keys = keys;
+            this.indicesByKey = indicesByKey;
+            this.requestByKey = requestByKey;
+            this.seed = seed;
+            this.sink = sink;
+            this.remaining = new AtomicInteger(keys.size());
+        }
+
+        void launchNext() {
+            int i = next.getAndIncrement();
+            if (i >= keys.size()) return;
+
+            RouteKey key = keys.get(i);
+            RouteRequest request = requestByKey.get(key);
+            CompletableFuture<Route> future;
+            try {
+                // Batch work queues behind interactive requests for the provider
+                long itemSeed = seed + i;
+                future = UpstreamPriority.BATCH.run(() -> routeService.generateRouteAsync(request.getShape(),
+                        key.terrain(), request.getLat(), request.getLon(), request.getDistanceKm(), itemSeed));
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((route, error) -> {
+                String token = error == null ? RouteToken.of(key, route).encode() : null;
+                for (int index : indicesByKey.get(key)) {
+                    sink.accept(error == null
+                            ? BatchResult.success(index, route, token)
+                            : BatchResult.failure(index, "Route generation failed", RouteService.unwrap(error).getMessage()));
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    done.complete(null);
+                } else {
+                    launchNext();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.backend;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Distance-bounded one-to-many Dijkstra over walking distance. Returns the settled nodes whose network
+// distance is at least minMeters, so one search covers every tolerance band up to maxMeters.
+// Search state lives in pooled primitive workspaces sized to the graph; only the result is allocated.
+public class BoundedDijkstra {
+
+    private final BaseGraph graph;
+    private final Weighting weighting;
+    private final NodeAccess nodeAccess;
+    // Pooled rather than ThreadLocal so short-lived (e.g. virtual) threads don't each allocate a workspace
+    private final Queue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+
+    public BoundedDijkstra(BaseGraph graph, Weighting weighting) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.nodeAccess = graph.getNodeAccess();
+    }
+
+    public ReachableSet search(int startNode, double minMeters, double maxMeters) {
+        Workspace ws = workspaces.poll();
+        if (ws == null) {
+            ws = new Workspace(graph.getNodes(), graph.createEdgeExplorer());
+        }
+        try {
+            return ws.run(startNode, minMeters, maxMeters);
+        } finally {
+            ws.reset();
+            workspaces.offer(ws);
+        }
+    }
+
+    private final class Workspace {
+        final double[] dist;
+        final int[] touched;
+        int touchedCount;
+
+        // Binary min-heap with lazy deletion: stale entries are skipped when popped
+        int[] heapNodes;
+        double[] heapKeys;
+        int heapSize;
+
+        // Settled nodes in the result band
+        int[] resultNodes;
+        int resultCount;
+
+        final EdgeExplorer explorer;
+
+        Workspace(int nodeCount, EdgeExplorer explorer) {
+            this.dist = new double[nodeCount];
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            this.touched = new int[nodeCount];
+            this.heapNodes = new int[Math.max(16, nodeCount / 4)];
+            this.heapKeys = new double[heapNodes.length];
+            this.resultNodes = new int[256];
+            this.explorer = explorer;
+        }
+
+        ReachableSet run(int startNode, double minMeters, double maxMeters) {
+            relax(startNode, 0);
+            int farthestNode = startNode;
+            double farthestDist = 0;
+
+            while (heapSize > 0) {
+                double d = heapKeys[0];
+                int node = pop();
+                if (d > dist[node]) continue;
+
+                if (d >= minMeters) addResult(node);
+                if (d > farthestDist) {
+                    farthestDist = d;
+                    farthestNode = node;
+                }
+
+                EdgeIterator edge = explorer.setBaseNode(node);
+                while (edge.next()) {
+                    if (Double.isInfinite(weighting.calcEdgeWeight(edge, false))) continue;
+                    double next = d + edge.getDistance();
+                    if (next <= maxMeters && next < dist[edge.getAdjNode()]) {
+                        relax(edge.getAdjNode(), next);
+                    }
+                }
+            }
+
+            // Nothing reached the band: hand back the farthest node so the caller can still turn around
+            if (resultCount == 0 && farthestNode != startNode) {
+                addResult(farthestNode);
+            }
+            return toReachableSet();
+        }
+
+        private void relax(int node, double d) {
+            if (dist[node] == Double.POSITIVE_INFINITY) {
+                touched[touchedCount++] = node;
+            }
+            dist[node] = d;
+            push(node, d);
+        }
+
+        private void addResult(int node) {
+            if (resultCount == resultNodes.length) {
+                resultNodes = Arrays.copyOf(resultNodes, resultCount * 2);
+            }
+            resultNodes[resultCount++] = node;
+        }
+
+        private ReachableSet toReachableSet() {
+            double[] coords = new double[resultCount * 2];
+            float[] distancesKm = new float[resultCount];
+            for (int i = 0; i < resultCount; i++) {
+                int node = resultNodes[i];
+                coords[2 * i] = nodeAccess.getLat(node);
+                coords[2 * i + 1] = nodeAccess.getLon(node);
+                distancesKm[i] = (float) (dist[node] / 1000.0);
+            }
+            return new ReachableSet(coords, distancesKm, resultCount);
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                dist[touched[i]] = Double.POSITIVE_INFINITY;
+            }
+            touchedCount = 0;
+            heapSize = 0;
+            resultCount = 0;
+        }
+
+        // ---------------- Heap ----------------
+        private void push(int node, double key) {
+            if (heapSize == heapNodes.length) {
+                heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKeys[parent] <= key) break;
+                heapNodes[i] = heapNodes[parent];
+                heapKeys[i] = heapKeys[parent];
+                i = parent;
+            }
+            heapNodes[i] = node;
+            heapKeys[i] = key;
+        }
+
+        private int pop() {
+            int top = heapNodes[0];
+            int lastNode = heapNodes[--heapSize];
+            double lastKey = heapKeys[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+                if (heapKeys[child] >= lastKey) break;
+                heapNodes[i] = heapNodes[child];
+                heapKeys[i] = heapKeys[child];
+                i = child;
+            }
+            heapNodes[i] = lastNode;
+            heapKeys[i] = lastKey;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Terrain heights from SRTM .hgt tiles (1x1 degree, big-endian int16 meters, north row first; 1201 or
+// 3601 samples a side), memory-mapped so only the pages a profile touches are read, and no per-request
+// service call is needed. At most maxOpenTiles stay mapped; an evicted mapping is released by the GC.
+// Profiles are sampled along a straight line, looking a tile up again only when a sample leaves the
+// current one.
+@Component
+public class ElevationModel {
+
+    private static final Logger log = LoggerFactory.getLogger(ElevationModel.class);
+    private static final short VOID = Short.MIN_VALUE;
+    // Height changes smaller than this are DEM noise, not climbing
+    static final double NOISE_METERS = 2;
+
+    private final Path tileDir;
+    private final Map<Integer, Tile> tiles;
+
+    @Autowired
+    public ElevationModel(@Value("${routes.elevation.tile-dir:}") String tileDir,
+                          @Value("${routes.elevation.max-open-tiles:16}") int maxOpenTiles) {
+        this.tileDir = tileDir == null || tileDir.isBlank() ? null : Path.of(tileDir);
+        int capacity = Math.max(1, maxOpenTiles);
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+                return size() > capacity;
+            }
+        };
+        if (this.tileDir != null && !Files.isDirectory(this.tileDir)) {
+            log.warn("Elevation tile directory {} does not exist; terrain preferences are ignored", this.tileDir);
+        }
+    }
+
+    // No tiles: every height is unknown and terrain preferences are ignored
+    public static ElevationModel disabled() {
+        return new ElevationModel(null, 1);
+    }
+
+    public boolean isEnabled() {
+        return tileDir != null && Files.isDirectory(tileDir);
+    }
+
+    // Bilinear height in meters, or NaN where there is no tile or the tile has a void
+    public double elevation(double lat, double lon) {
+        return tile(lat, lon).elevation(lat, lon);
+    }
+
+    // Climb plus descent along the straight line between two points, sampled about every spacingMeters.
+    // Out and back over the same ground, that is the total ascent of the route.
+    public double relief(double lat1, double lon1, double lat2, double lon2, double spacingMeters) {
+        double lengthMeters = GeoDistance.haversineKm(lat1, lon1, lat2, lon2) * 1000;
+        int samples = Math.max(2, (int) Math.ceil(lengthMeters / spacingMeters) + 1);
+        Relief relief = new Relief();
+        Tile tile = Tile.NONE;
+        for (int i = 0; i < samples; i++) {
+            double t = (double) i / (samples - 1);
+            double lat = lat1 + (lat2 - lat1) * t;
+            double lon = lon1 + (lon2 - lon1) * t;
+            if (!tile.contains(lat, lon)) tile = tile(lat, lon);
+            relief.add(tile.elevation(lat, lon));
+        }
+        return relief.total;
+    }
+
+    int openTiles() {
+        synchronized (tiles) {
+            return tiles.size();
+        }
+    }
+
+    private Tile tile(double lat, double lon) {
+        if (tileDir == null) return Tile.NONE;
+        int south = (int) Math.floor(lat);
+        int west = (int) Math.floor(lon);
+        int id = (south + 90) * 360 + (west + 180);
+        synchronized (tiles) {
+            Tile tile = tiles.get(id);
+            if (tile == null) {
+                tile = Tile.open(tileDir.resolve(fileName(south, west)), south, west);
+                tiles.put(id, tile);
+            }
+            return tile;
+        }
+    }
+
+    // SRTM naming: the tile's south-west corner, e.g. N51W001.hgt
+    static String fileName(int south, int west) {
+        return String.format(Locale.ROOT, "%s%02d%s%03d.hgt", south < 0 ? "S" : "N", Math.abs(south),
+                west < 0 ? "W" : "E", Math.abs(west));
+    }
+
+    // Hysteresis accumulator: a change counts once it exceeds NOISE_METERS from the last counted height
+    private static final class Relief {
+        double reference = Double.NaN;
+        double total;
+
+        void add(double elevation) {
+            if (Double.isNaN(elevation)) return;
+            if (Double.isNaN(reference)) {
+                reference = elevation;
+            } else if (Math.abs(elevation - reference) >= NOISE_METERS) {
+                total += Math.abs(elevation - reference);
+                reference = elevation;
+            }
+        }
+    }
+
+    private static final class Tile {
+        // Stands in for tiles that are missing or unreadable, so they are not looked for on every sample
+        static final Tile NONE = new Tile(null, 0, 0, 0);
+
+        private final MappedByteBuffer heights;
+        private final int south;
+        private final int west;
+        private final int size;
+
+        private Tile(MappedByteBuffer heights, int south, int west, int size) {
+            this.heights = heights;
+            this.south = south;
+            this.west = west;
+            this.size = size;
+        }
+
+        static Tile open(Path file, int south, int west) {
+            if (!Files.isRegularFile(file)) return missing(south, west);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long bytes = channel.size();
+                int size = (int) Math.round(Math.sqrt(bytes / 2.0));
+                if ((long) size * size * 2 != bytes || size < 2) {
+                    log.warn("Ignoring elevation tile {}: not a square grid of int16 samples", file);
+                    return missing(south, west);
+                }
+                MappedByteBuffer heights = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+                heights.order(ByteOrder.BIG_ENDIAN);
+                return new Tile(heights, south, west, size);
+            } catch (IOException e) {
+                log.warn("Cannot map elevation tile {}: {}", file, e.getMessage());
+                return missing(south, west);
+            }
+        }
+
+        private static Tile missing(int south, int west) {
+            return new Tile(null, south, west, 0);
+        }
+
+        boolean contains(double lat, double lon) {
+            return this != NONE && lat >= south && lat < south + 1 && lon >= west && lon < west + 1;
+        }
+
+        double elevation(double lat, double lon) {
+            if (heights == null) return Double.NaN;
+            double row = (south + 1 - lat) * (size - 1);
+            double col = (lon - west) * (size - 1);
+            int r = Math.min(size - 2, Math.max(0, (int) row));
+            int c = Math.min(size - 2, Math.max(0, (int) col));
+            double fr = row - r;
+            double fc = col - c;
+            short h00 = height(r, c), h01 = height(r, c + 1), h10 = height(r + 1, c), h11 = height(r + 1, c + 1);
+            if (h00 == VOID || h01 == VOID || h10 == VOID || h11 == VOID) return Double.NaN;
+            return (h00 * (1 - fc) + h01 * fc) * (1 - fr) + (h10 * (1 - fc) + h11 * fc) * fr;
+        }
+
+        private short height(int row, int col) {
+            return heights.getShort((row * size + col) * 2);
+        }
+    }
+}
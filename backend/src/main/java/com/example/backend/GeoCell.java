@@ -0,0 +1,79 @@
+package com.example.backend;
+
+// Geohash cells used to quantize start points, so nearby GPS fixes share cache entries
+public final class GeoCell {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoCell() {
+    }
+
+    // Precision 7 is roughly 150 m x 150 m, precision 6 roughly 1.2 km x 0.6 km
+    public static String geohash(double lat, double lon, int precision) {
+        double minLat = -90, maxLat = 90, minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0, ch = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (lon >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLon = mid;
+                } else {
+                    ch <<= 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (lat >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch <<= 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(BASE32[ch]);
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    // {minLat, minLon, maxLat, maxLon} of a cell geohash() produced; points on the max edges belong to the
+    // neighbouring cell
+    public static double[] bounds(String cell) {
+        double minLat = -90, maxLat = 90, minLon = -180, maxLon = 180;
+        boolean evenBit = true;
+        for (int i = 0; i < cell.length(); i++) {
+            int ch = indexOf(cell.charAt(i));
+            for (int bit = 4; bit >= 0; bit--) {
+                boolean high = (ch >> bit & 1) == 1;
+                if (evenBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (high) minLon = mid;
+                    else maxLon = mid;
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (high) minLat = mid;
+                    else maxLat = mid;
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[]{minLat, minLon, maxLat, maxLon};
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < BASE32.length; i++) {
+            if (BASE32[i] == c) return i;
+        }
+        throw new IllegalArgumentException("Not a geohash character: " + c);
+    }
+}
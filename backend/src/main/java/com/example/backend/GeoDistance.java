@@ -0,0 +1,95 @@
+package com.example.backend;
+
+// Great-circle distances. Exact haversine for anything reported to users; a local equirectangular
+// frame for the hot loops that only filter or compare nearby points.
+public final class GeoDistance {
+
+    static final double EARTH_RADIUS_KM = 6371;
+
+    private GeoDistance() {
+    }
+
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    // Exact haversine length of a packed {lat, lon} polyline. Same result as summing haversineKm per segment,
+    // but each vertex's cos(lat) is computed once and shared by the two segments it ends and starts.
+    public static double totalDistanceMeters(double[] packed) {
+        if (packed.length < 4) return 0;
+        double total = 0;
+        double prevLat = packed[0];
+        double prevLon = packed[1];
+        double prevCos = Math.cos(Math.toRadians(prevLat));
+        for (int i = 2; i + 1 < packed.length; i += 2) {
+            double lat = packed[i];
+            double lon = packed[i + 1];
+            double cos = Math.cos(Math.toRadians(lat));
+            double sinHalfDLat = Math.sin(Math.toRadians(lat - prevLat) / 2);
+            double sinHalfDLon = Math.sin(Math.toRadians(lon - prevLon) / 2);
+            double a = sinHalfDLat * sinHalfDLat + prevCos * cos * sinHalfDLon * sinHalfDLon;
+            total += EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a)) * 1000;
+            prevLat = lat;
+            prevLon = lon;
+            prevCos = cos;
+        }
+        return total;
+    }
+
+    // Equirectangular projection around a fixed origin. cos of the mean latitude is taken to first order
+    // from the origin's precomputed sin/cos, so a distance costs no trig at all. Error against haversine
+    // stays below 0.01% (a few meters) within 50 km of the origin, see GeoDistanceTest.
+    public static final class Local {
+        private final double originLat;
+        private final double originLon;
+        private final double cosOrigin;
+        private final double sinOrigin;
+
+        public Local(double originLat, double originLon) {
+            this.originLat = originLat;
+            this.originLon = originLon;
+            this.cosOrigin = Math.cos(Math.toRadians(originLat));
+            this.sinOrigin = Math.sin(Math.toRadians(originLat));
+        }
+
+        // Squared distance in km²; enough wherever only the ordering of distances matters
+        public double squaredKm(double lat, double lon) {
+            double dLat = Math.toRadians(lat - originLat);
+            double dLonDeg = lon - originLon;
+            if (dLonDeg > 180) dLonDeg -= 360;
+            else if (dLonDeg < -180) dLonDeg += 360;
+            double x = Math.toRadians(dLonDeg) * (cosOrigin - sinOrigin * dLat / 2);
+            return (x * x + dLat * dLat) * EARTH_RADIUS_KM * EARTH_RADIUS_KM;
+        }
+
+        public double distanceKm(double lat, double lon) {
+            return Math.sqrt(squaredKm(lat, lon));
+        }
+
+        public boolean isWithinKm(double lat, double lon, double km) {
+            return squaredKm(lat, lon) <= km * km;
+        }
+
+        // {east, north} offset from the origin in km, on a flat plane at the origin's latitude
+        public double[] toKm(double lat, double lon) {
+            double dLonDeg = lon - originLon;
+            if (dLonDeg > 180) dLonDeg -= 360;
+            else if (dLonDeg < -180) dLonDeg += 360;
+            return new double[]{Math.toRadians(dLonDeg) * cosOrigin * EARTH_RADIUS_KM,
+                    Math.toRadians(lat - originLat) * EARTH_RADIUS_KM};
+        }
+
+        // Inverse of toKm, as {lat, lon}
+        public double[] toLatLon(double eastKm, double northKm) {
+            double lon = originLon + Math.toDegrees(eastKm / (EARTH_RADIUS_KM * cosOrigin));
+            if (lon > 180) lon -= 360;
+            else if (lon < -180) lon += 360;
+            return new double[]{originLat + Math.toDegrees(northKm / EARTH_RADIUS_KM), lon};
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.backend;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+// Pulls the positions out of a GeoJSON response as its bytes arrive, with Jackson's non-blocking parser:
+// no body string, no DOM and no array per point. Every number inside a feature's geometry "coordinates" is
+// read as {lon, lat[, elevation]} straight into a packed {lat, lon} buffer; the first feature's way_points
+// (directions) are kept too. Coordinates anywhere else, such as the request ORS echoes back in
+// metadata.query, are skipped.
+// In dedup mode a vertex is skipped when an earlier one falls on the same 1e-6 degree grid point, which
+// drops the closing vertex of every ring and the vertices shared between isochrone bands.
+final class GeoJsonCoordinates {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final double DEDUP_SCALE = 1e6;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15};
+
+    private final JsonParser parser;
+    private final boolean dedup;
+    private LongHashSet seen;
+
+    private double[] coords = new double[256];
+    private int count;
+    private int[] wayPoints = new int[8];
+    private int wayPointCount;
+
+    private String field;
+    private int depth;
+    private int featuresDepth = -1;
+    private int geometryDepth = -1;
+    private int coordinatesDepth = -1;
+    private int propertiesDepth = -1;
+    private int wayPointsDepth = -1;
+    private int positionIndex;
+    private double positionLon;
+    private long bytes;
+    private long parseNanos;
+
+    GeoJsonCoordinates(boolean dedup) {
+        try {
+            this.parser = JSON.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.dedup = dedup;
+    }
+
+    static GeoJsonCoordinates parse(String json, boolean dedup) {
+        GeoJsonCoordinates coordinates = new GeoJsonCoordinates(dedup);
+        coordinates.feed(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+        coordinates.finish();
+        return coordinates;
+    }
+
+    // Subscriber that parses the body as it streams in and completes with finisher's view of the result
+    static <T> HttpResponse.BodySubscriber<T> subscriber(boolean dedup, Function<GeoJsonCoordinates, T> finisher) {
+        return new Subscriber<>(new GeoJsonCoordinates(dedup), finisher);
+    }
+
+    void feed(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) return;
+        long start = System.nanoTime();
+        bytes += buffer.remaining();
+        try {
+            ((ByteBufferFeeder) parser.getNonBlockingInputFeeder()).feedInput(buffer);
+            drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        parseNanos += System.nanoTime() - start;
+    }
+
+    void finish() {
+        long start = System.nanoTime();
+        parser.getNonBlockingInputFeeder().endOfInput();
+        try {
+            drain();
+            parser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (depth != 0) {
+            throw new UncheckedIOException(new IOException("Truncated GeoJSON response"));
+        }
+        parseNanos += System.nanoTime() - start;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case FIELD_NAME -> field = parser.currentName();
+                case START_OBJECT -> {
+                    depth++;
+                    // Members of a feature object, i.e. of an element of the top-level features array
+                    if (featuresDepth >= 0 && depth == featuresDepth + 2) {
+                        if ("properties".equals(field)) propertiesDepth = depth;
+                        else if ("geometry".equals(field)) geometryDepth = depth;
+                    }
+                    field = null;
+                }
+                case START_ARRAY -> {
+                    depth++;
+                    if (depth == 2 && "features".equals(field)) featuresDepth = depth;
+                    if (geometryDepth >= 0 && depth == geometryDepth + 1 && "coordinates".equals(field)) {
+                        coordinatesDepth = depth;
+                    }
+                    // The feature's own way_points, not those of its segments' steps
+                    if ("way_points".equals(field) && depth == propertiesDepth + 1 && wayPointCount == 0) {
+                        wayPointsDepth = depth;
+                    }
+                    positionIndex = 0;
+                    field = null;
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    if (depth == featuresDepth) featuresDepth = -1;
+                    if (depth == geometryDepth) geometryDepth = -1;
+                    if (depth == coordinatesDepth) coordinatesDepth = -1;
+                    if (depth == propertiesDepth) propertiesDepth = -1;
+                    if (depth == wayPointsDepth) wayPointsDepth = -1;
+                    depth--;
+                }
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> number();
+                default -> field = null;
+            }
+        }
+    }
+
+    private void number() throws IOException {
+        if (coordinatesDepth >= 0) {
+            // Position arrays are {lon, lat} with an optional elevation, which is ignored
+            if (positionIndex == 0) positionLon = doubleValue();
+            else if (positionIndex == 1) add(doubleValue(), positionLon);
+            positionIndex++;
+        } else if (wayPointsDepth >= 0 && depth == wayPointsDepth) {
+            if (wayPointCount == wayPoints.length) wayPoints = Arrays.copyOf(wayPoints, wayPointCount * 2);
+            wayPoints[wayPointCount++] = parser.getIntValue();
+        }
+        field = null;
+    }
+
+    // Plain decimals with at most 15 significant digits (every coordinate ORS sends) are parsed in place:
+    // digits / 10^scale is exact-operand division, so correctly rounded. Anything else goes to Jackson,
+    // which builds a String per number.
+    private double doubleValue() throws IOException {
+        char[] text = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int end = offset + parser.getTextLength();
+        int i = offset;
+        boolean negative = i < end && text[i] == '-';
+        if (negative) i++;
+        long digits = 0;
+        int significant = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char c = text[i];
+            if (c == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || ++significant > 15) return parser.getDoubleValue();
+            digits = digits * 10 + (c - '0');
+            if (scale >= 0) scale++;
+        }
+        double value = scale > 0 ? digits / POWERS_OF_TEN[scale] : digits;
+        return negative ? -value : value;
+    }
+
+    private void add(double lat, double lon) {
+        if (dedup) {
+            if (seen == null) seen = new LongHashSet();
+            long cell = (Math.round(lat * DEDUP_SCALE) << 32) ^ (Math.round(lon * DEDUP_SCALE) & 0xFFFFFFFFL);
+            if (!seen.add(cell)) return;
+        }
+        if (2 * count == coords.length) coords = Arrays.copyOf(coords, coords.length * 2);
+        coords[2 * count] = lat;
+        coords[2 * count + 1] = lon;
+        count++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    // Packed {lat, lon}; only the first 2 * count() entries are positions
+    double[] packed() {
+        return coords;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    // CPU time spent parsing, not waiting for the network
+    long parseNanos() {
+        return parseNanos;
+    }
+
+    PackedPoints path() {
+        return new PackedPoints(Arrays.copyOf(coords, 2 * count));
+    }
+
+    ReachableSet reachableSet(double startLat, double startLon) {
+        return ReachableSet.fromPacked(coords, count, startLat, startLon);
+    }
+
+    // The path split at the reported waypoint indices; adjacent legs share the waypoint vertex
+    List<List<double[]>> legs() {
+        if (wayPointCount < 2) {
+            throw new IllegalStateException("Directions response has no way_points");
+        }
+        List<List<double[]>> legs = new ArrayList<>(wayPointCount - 1);
+        for (int i = 0; i + 1 < wayPointCount; i++) {
+            legs.add(new PackedPoints(Arrays.copyOfRange(coords, 2 * wayPoints[i], 2 * wayPoints[i + 1] + 2)));
+        }
+        return legs;
+    }
+
+    private static final class Subscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final GeoJsonCoordinates coordinates;
+        private final Function<GeoJsonCoordinates, T> finisher;
+        private final CompletableFuture<T> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        Subscriber(GeoJsonCoordinates coordinates, Function<GeoJsonCoordinates, T> finisher) {
+            this.coordinates = coordinates;
+            this.finisher = finisher;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    coordinates.feed(buffer);
+                }
+            } catch (RuntimeException e) {
+                subscription.cancel();
+                body.completeExceptionally(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            body.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                coordinates.finish();
+                body.complete(finisher.apply(coordinates));
+            } catch (RuntimeException e) {
+                body.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Open addressing over primitive longs, so dedup allocates nothing per vertex
+    private static final class LongHashSet {
+        private long[] keys = new long[512];
+        private boolean[] used = new boolean[512];
+        private int size;
+
+        boolean add(long key) {
+            if (2 * (size + 1) > keys.length) grow();
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (!used[i]) {
+                    used[i] = true;
+                    keys[i] = key;
+                    size++;
+                    return true;
+                }
+                if (keys[i] == key) return false;
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) add(oldKeys[i]);
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
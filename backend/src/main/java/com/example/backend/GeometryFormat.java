@@ -0,0 +1,26 @@
+package com.example.backend;
+
+// How a route response carries its geometry; the wire name is what clients send as ?format=
+public enum GeometryFormat {
+    COORDINATES("coordinates"),
+    POLYLINE("polyline");
+
+    private final String wireName;
+
+    GeometryFormat(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String wireName() {
+        return wireName;
+    }
+
+    // A missing format keeps the original {lat, lng} array
+    public static GeometryFormat fromWireName(String format) {
+        if (format == null || format.isBlank()) return COORDINATES;
+        for (GeometryFormat value : values()) {
+            if (value.wireName.equalsIgnoreCase(format.trim())) return value;
+        }
+        throw new IllegalArgumentException("Format must be 'coordinates' or 'polyline'");
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.backend;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.json.Statement;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.PointList;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// In-process foot routing over a GraphHopper graph, loaded (memory-mapped) once at startup.
+// Reachability is a bounded Dijkstra on walking distance. Selected with routing.engine=embedded; points outside the loaded area go to the remote provider.
+@Component
+@Primary
+@ConditionalOnProperty(name = "routing.engine", havingValue = "embedded")
+public class GraphHopperRoutingEngine implements RoutingEngine {
+
+    static final String PROFILE = "foot";
+    // Farther than this from the nearest walkable edge counts as outside the loaded area
+    private static final double MAX_SNAP_DISTANCE_METERS = 500;
+
+    private final GraphHopper hopper;
+    private final Weighting weighting;
+    private final DefaultSnapFilter snapFilter;
+    private final RoutingEngine fallback;
+    private final BoundedDijkstra dijkstra;
+
+    @Autowired
+    public GraphHopperRoutingEngine(@Value("${routing.embedded.osm-file:}") String osmFile,
+                                    @Value("${routing.embedded.graph-location:graph-cache}") String graphLocation,
+                                    @Value("${routing.embedded.fallback-to-remote:true}") boolean fallbackToRemote,
+                                    OrsClient orsClient) {
+        this(osmFile, graphLocation, fallbackToRemote ? orsClient : null);
+    }
+
+    GraphHopperRoutingEngine(String osmFile, String graphLocation, RoutingEngine fallback) {
+        this.hopper = load(osmFile, graphLocation);
+        Profile profile = hopper.getProfile(PROFILE);
+        this.weighting = hopper.createWeighting(profile, new PMap());
+        this.snapFilter = new DefaultSnapFilter(weighting,
+                hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(PROFILE)));
+        this.fallback = fallback;
+        this.dijkstra = new BoundedDijkstra(hopper.getBaseGraph(), weighting);
+    }
+
+    static GraphHopper load(String osmFile, String graphLocation) {
+        GraphHopperConfig config = new GraphHopperConfig();
+        if (osmFile != null && !osmFile.isBlank()) {
+            config.putObject("datareader.file", osmFile);
+        }
+        config.putObject("graph.location", graphLocation);
+        config.putObject("graph.dataaccess.default_type", "MMAP");
+        config.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed");
+        config.putObject("import.osm.ignored_highways", "motorway,trunk");
+        config.setProfiles(List.of(new Profile(PROFILE).setCustomModel(footModel())));
+        config.setCHProfiles(List.of(new CHProfile(PROFILE)));
+
+        GraphHopper hopper = new GraphHopper();
+        hopper.init(config);
+        hopper.importOrLoad();
+        return hopper;
+    }
+
+    private static CustomModel footModel() {
+        return new CustomModel()
+                .addToPriority(Statement.If("!foot_access", Statement.Op.MULTIPLY, "0"))
+                .addToPriority(Statement.Else(Statement.Op.MULTIPLY, "foot_priority"))
+                .addToSpeed(Statement.If("true", Statement.Op.LIMIT, "foot_average_speed"));
+    }
+
+    @Override
+    public CompletableFuture<ReachableSet> isochronesAsync(double lat, double lon, double maxDistanceKm) {
+        Snap start = snap(lat, lon);
+        if (!isInGraph(start)) {
+            return fallbackOrFail(() -> fallback.isochronesAsync(lat, lon, maxDistanceKm), lat, lon);
+        }
+
+        // Only nodes inside the loosest tolerance band are useful as turnarounds
+        double targetMeters = maxDistanceKm * 1000;
+        double minMeters = targetMeters * (1 - RouteService.LOOSE_TOLERANCE);
+        double maxMeters = targetMeters * (1 + RouteService.LOOSE_TOLERANCE);
+        return CompletableFuture.completedFuture(dijkstra.search(start.getClosestNode(), minMeters, maxMeters));
+    }
+
+    @Override
+    public CompletableFuture<List<double[]>> directionsAsync(double startLat, double startLon, double endLat, double endLon) {
+        if (!isInGraph(snap(startLat, startLon)) || !isInGraph(snap(endLat, endLon))) {
+            return fallbackOrFail(() -> fallback.directionsAsync(startLat, startLon, endLat, endLon), startLat, startLon);
+        }
+
+        GHResponse response = hopper.route(new GHRequest(startLat, startLon, endLat, endLon).setProfile(PROFILE));
+        if (response.hasErrors()) {
+            return CompletableFuture.failedFuture(
+                    new RuntimeException("Directions request failed: " + response.getErrors().get(0).getMessage()));
+        }
+
+        PointList path = response.getBest().getPoints();
+        List<double[]> points = new ArrayList<>(path.size());
+        for (int i = 0; i < path.size(); i++) {
+            points.add(new double[]{path.getLat(i), path.getLon(i)});
+        }
+        return CompletableFuture.completedFuture(points);
+    }
+
+    private Snap snap(double lat, double lon) {
+        return hopper.getLocationIndex().findClosest(lat, lon, snapFilter);
+    }
+
+    private static boolean isInGraph(Snap snap) {
+        return snap.isValid() && snap.getQueryDistance() <= MAX_SNAP_DISTANCE_METERS;
+    }
+
+    private <T> CompletableFuture<T> fallbackOrFail(Supplier<CompletableFuture<T>> remoteCall, double lat, double lon) {
+        if (fallback != null) {
+            return remoteCall.get();
+        }
+        return CompletableFuture.failedFuture(new RuntimeException(
+                String.format(Locale.US, "Point %.6f,%.6f is outside the loaded graph", lat, lon)));
+    }
+
+    @PreDestroy
+    public void close() {
+        hopper.close();
+    }
+}
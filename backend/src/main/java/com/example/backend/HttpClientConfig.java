@@ -0,0 +1,49 @@
+package com.example.backend;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class HttpClientConfig {
+
+    // One shared client for the routing provider so connections, TLS sessions and HTTP/2 streams are reused
+    // With spring.threads.virtual.enabled on Java 21+, response handling runs on virtual threads instead of a fixed pool
+    @Bean
+    public HttpClient orsHttpClient(@Value("${ors.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                    @Value("${ors.http.executor-threads:8}") int executorThreads,
+                                    Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return buildHttpClient(connectTimeoutMs, new VirtualThreadTaskExecutor("ors-http-"));
+        }
+        return buildHttpClient(connectTimeoutMs, executorThreads);
+    }
+
+    static HttpClient buildHttpClient(long connectTimeoutMs, int executorThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(executorThreads, r -> {
+            Thread t = new Thread(r, "ors-http-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        return buildHttpClient(connectTimeoutMs, executor);
+    }
+
+    static HttpClient buildHttpClient(long connectTimeoutMs, Executor executor) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(executor)
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.backend;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// Stand-in for the shared store inside one JVM: every RouteService given the same instance behaves like a
+// replica sharing a Redis. Used by tests and local multi-instance runs; entries expire lazily on access.
+public class InMemorySharedRouteCache implements SharedRouteCache {
+
+    private record Expiring<T>(T value, long expiresAtNanos) {
+    }
+
+    private final Map<String, Expiring<List<byte[]>>> variants = new ConcurrentHashMap<>();
+    private final Map<String, Expiring<Long>> rotations = new ConcurrentHashMap<>();
+    private final Map<String, Expiring<String>> locks = new ConcurrentHashMap<>();
+    private final LongSupplier nanoTime;
+
+    public InMemorySharedRouteCache() {
+        this(System::nanoTime);
+    }
+
+    InMemorySharedRouteCache(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public List<byte[]> variants(String key) {
+        Expiring<List<byte[]>> entry = live(variants, key);
+        return entry == null ? List.of() : entry.value();
+    }
+
+    @Override
+    public void appendVariant(String key, byte[] route, int maxVariants, Duration ttl) {
+        long expiresAt = expiresAt(ttl);
+        Expiring<List<byte[]>> updated = variants.compute(key, (k, current) -> {
+            List<byte[]> routes = current == null || current.expiresAtNanos() <= nanoTime.getAsLong()
+                    ? List.of() : current.value();
+            if (routes.size() >= maxVariants) return new Expiring<>(routes, expiresAt);
+            List<byte[]> copy = new ArrayList<>(routes);
+            copy.add(route);
+            return new Expiring<>(List.copyOf(copy), expiresAt);
+        });
+        if (updated.value().size() == 1) {
+            rotations.put(key, new Expiring<>(1L, expiresAt));
+        }
+    }
+
+    @Override
+    public void replaceVariants(String key, List<byte[]> routes, Duration ttl) {
+        variants.put(key, new Expiring<>(List.copyOf(routes), expiresAt(ttl)));
+        rotations.remove(key);
+    }
+
+    @Override
+    public long nextRotation(String key, Duration ttl) {
+        long expiresAt = expiresAt(ttl);
+        return rotations.compute(key, (k, current) -> new Expiring<>(
+                current == null || current.expiresAtNanos() <= nanoTime.getAsLong() ? 1 : current.value() + 1,
+                expiresAt)).value() - 1;
+    }
+
+    @Override
+    public boolean tryLock(String key, String owner, Duration lease) {
+        long now = nanoTime.getAsLong();
+        Expiring<String> held = locks.compute(key, (k, current) ->
+                current == null || current.expiresAtNanos() <= now ? new Expiring<>(owner, expiresAt(lease)) : current);
+        return held.value().equals(owner) && held.expiresAtNanos() > now;
+    }
+
+    @Override
+    public boolean isLocked(String key) {
+        return live(locks, key) != null;
+    }
+
+    @Override
+    public void unlock(String key, String owner) {
+        locks.computeIfPresent(key, (k, current) -> current.value().equals(owner) ? null : current);
+    }
+
+    @Override
+    public void clear() {
+        variants.clear();
+        rotations.clear();
+        locks.clear();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private <T> Expiring<T> live(Map<String, Expiring<T>> map, String key) {
+        Expiring<T> entry = map.get(key);
+        if (entry == null || entry.expiresAtNanos() > nanoTime.getAsLong()) return entry;
+        map.remove(key, entry);
+        return null;
+    }
+
+    private long expiresAt(Duration ttl) {
+        return nanoTime.getAsLong() + ttl.toNanos();
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.backend;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Reachable sets by start cell and leg-distance bucket. A request can be answered from a cached set
+// for a somewhat longer leg (up to maxReuseRatio) by dropping the points beyond its own loose band.
+// A set's distances are measured from the start it was loaded for; a request from elsewhere in the cell
+// gets the same points with straight-line distances from its own start, before any filtering.
+@Component
+public class IsochroneCache {
+
+    // cell -> (leg bucket in meters -> reachable set), copied on write so Caffeine re-weighs the entry
+    private final Cache<String, NavigableMap<Integer, Loaded>> cache;
+    private final Map<String, CompletableFuture<Loaded>> inFlight = new ConcurrentHashMap<>();
+    private final int cellPrecision;
+    private final int bucketMeters;
+    private final double maxReuseRatio;
+
+    private final AtomicLong exactHits = new AtomicLong();
+    private final AtomicLong reuseHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public IsochroneCache(@Value("${routes.isochrone-cache.max-bytes:67108864}") long maxBytes,
+                          @Value("${routes.isochrone-cache.ttl-minutes:1440}") long ttlMinutes,
+                          @Value("${routes.cache.cell-precision:7}") int cellPrecision,
+                          @Value("${routes.isochrone-cache.distance-bucket-meters:250}") int bucketMeters,
+                          @Value("${routes.isochrone-cache.max-reuse-ratio:1.25}") double maxReuseRatio) {
+        this(maxBytes, Duration.ofMinutes(ttlMinutes), cellPrecision, bucketMeters, maxReuseRatio, Ticker.systemTicker());
+    }
+
+    IsochroneCache(long maxBytes, Duration ttl, int cellPrecision, int bucketMeters, double maxReuseRatio, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String cell, NavigableMap<Integer, Loaded> sets) -> weightBytes(sets))
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .build();
+        this.cellPrecision = cellPrecision;
+        this.bucketMeters = bucketMeters;
+        this.maxReuseRatio = maxReuseRatio;
+    }
+
+    public static IsochroneCache withDefaults() {
+        return new IsochroneCache(64L << 20, 1440, 7, 250, 1.25);
+    }
+
+    // Cached (or larger cached, filtered) reachable set, otherwise one shared load per cell and bucket
+    public CompletableFuture<ReachableSet> getOrLoad(double lat, double lon, double legKm,
+                                                     Supplier<CompletableFuture<ReachableSet>> loader) {
+        String cell = GeoCell.geohash(lat, lon, cellPrecision);
+        int bucket = bucketFor(legKm);
+
+        ReachableSet cached = lookup(cell, bucket, lat, lon, legKm);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        String flightKey = cell + ":" + bucket;
+        CompletableFuture<Loaded> pending = new CompletableFuture<>();
+        CompletableFuture<Loaded> existing = inFlight.putIfAbsent(flightKey, pending);
+        if (existing != null) {
+            return existing.thenApply(loaded -> loaded.from(lat, lon));
+        }
+
+        misses.incrementAndGet();
+        pending.whenComplete((loaded, error) -> inFlight.remove(flightKey, pending));
+        CompletableFuture<ReachableSet> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            // A loader that throws instead of failing its future still has to release the cell for the next miss
+            pending.completeExceptionally(e);
+            return pending.thenApply(Loaded::set);
+        }
+        load.whenComplete((set, error) -> {
+            if (error != null) {
+                pending.completeExceptionally(error);
+                return;
+            }
+            Loaded loaded = new Loaded(lat, lon, set);
+            put(cell, bucket, loaded);
+            pending.complete(loaded);
+        });
+        return pending.thenApply(Loaded::set);
+    }
+
+    private ReachableSet lookup(String cell, int bucket, double lat, double lon, double legKm) {
+        NavigableMap<Integer, Loaded> sets = cache.getIfPresent(cell);
+        if (sets == null) {
+            return null;
+        }
+
+        Map.Entry<Integer, Loaded> entry = sets.ceilingEntry(bucket);
+        if (entry == null || entry.getKey() > bucket * maxReuseRatio) {
+            return null;
+        }
+        ReachableSet set = entry.getValue().from(lat, lon);
+        if (entry.getKey() == bucket) {
+            exactHits.incrementAndGet();
+            return set;
+        }
+        reuseHits.incrementAndGet();
+        return set.withinKm(legKm * (1 + RouteService.LOOSE_TOLERANCE));
+    }
+
+    private void put(String cell, int bucket, Loaded loaded) {
+        if (loaded.set().isEmpty()) {
+            return;
+        }
+        cache.asMap().compute(cell, (k, current) -> {
+            NavigableMap<Integer, Loaded> copy = current == null ? new TreeMap<>() : new TreeMap<>(current);
+            copy.put(bucket, loaded);
+            return Collections.unmodifiableNavigableMap(copy);
+        });
+    }
+
+    private int bucketFor(double legKm) {
+        return (int) Math.max(1, Math.round(legKm * 1000 / bucketMeters)) * bucketMeters;
+    }
+
+    private static int weightBytes(NavigableMap<Integer, Loaded> sets) {
+        int bytes = 0;
+        for (Loaded loaded : sets.values()) {
+            bytes += loaded.set().sizeBytes();
+        }
+        return bytes;
+    }
+
+    // A reachable set and the start its distances are measured from
+    private record Loaded(double originLat, double originLon, ReachableSet set) {
+
+        ReachableSet from(double lat, double lon) {
+            return lat == originLat && lon == originLon ? set : set.rebasedTo(lat, lon);
+        }
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("exactHits", exactHits.get());
+        body.put("reuseHits", reuseHits.get());
+        body.put("misses", misses.get());
+        body.put("cells", cache.estimatedSize());
+        body.put("weightBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L));
+        return body;
+    }
+}
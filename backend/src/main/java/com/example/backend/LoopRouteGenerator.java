@@ -0,0 +1,219 @@
+package com.example.backend;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+// Loops through 2-4 waypoints placed on a circle that passes through the start. The whole chain is routed
+// in one directions call; while the walked distance is off by more than the tolerance, the waypoint with
+// the longest legs is moved in or out and only its two legs are routed again (or, for a correction too large
+// for one waypoint, the whole loop is rescaled), up to maxDirectionsCalls calls per loop.
+@Component
+public class LoopRouteGenerator {
+
+    // Walking distance over straight-line distance, assumed for the first guess only;
+    // corrections use the ratio measured on the legs being replaced
+    static final double ASSUMED_DETOUR = 1.25;
+    private static final double MIN_APEX_OFFSET_KM = 0.05;
+
+    private final RoutingEngine routingEngine;
+    private final double tolerance;
+    private final int maxDirectionsCalls;
+    private final int variants;
+
+    @Autowired
+    public LoopRouteGenerator(RoutingEngine routingEngine,
+                              @Value("${routes.loop.tolerance:0.05}") double tolerance,
+                              @Value("${routes.loop.max-directions-calls:3}") int maxDirectionsCalls,
+                              @Value("${routes.loop.variants:2}") int variants) {
+        this.routingEngine = routingEngine;
+        this.tolerance = tolerance;
+        this.maxDirectionsCalls = Math.max(1, maxDirectionsCalls);
+        this.variants = Math.max(1, Math.min(variants, RouteService.MAX_VARIANTS));
+    }
+
+    public static LoopRouteGenerator withDefaults(RoutingEngine routingEngine) {
+        return new LoopRouteGenerator(routingEngine, 0.05, 3, 2);
+    }
+
+    // Loop variants generated per cache miss
+    public int variants() {
+        return variants;
+    }
+
+    public CompletableFuture<Route> generateAsync(double lat, double lon, double distanceKm, Random random) {
+        double targetMeters = distanceKm * 1000;
+        GeoDistance.Local frame = new GeoDistance.Local(lat, lon);
+        // Refinements are issued from provider callback threads, so they carry the caller's priority explicitly
+        UpstreamPriority priority = UpstreamPriority.current();
+        return routingEngine.directionsAsync(initialWaypoints(frame, lat, lon, distanceKm, random))
+                .thenCompose(legs -> {
+                    Attempt first = Attempt.of(legs);
+                    return refine(frame, priority, first, first, targetMeters, maxDirectionsCalls - 1);
+                });
+    }
+
+    private CompletableFuture<Route> refine(GeoDistance.Local frame, UpstreamPriority priority, Attempt current,
+                                            Attempt best, double targetMeters, int callsLeft) {
+        Attempt closest = Math.abs(current.totalMeters - targetMeters) < Math.abs(best.totalMeters - targetMeters)
+                ? current : best;
+        if (Math.abs(current.totalMeters - targetMeters) <= tolerance * targetMeters || callsLeft == 0) {
+            return CompletableFuture.completedFuture(Route.loop(closest.legs));
+        }
+
+        int apex = current.apexWaypoint();
+        List<double[]> before = current.legs.get(apex - 1);
+        List<double[]> after = current.legs.get(apex);
+        double[] moved = moveApex(frame, before.get(0), before.get(before.size() - 1), after.get(after.size() - 1),
+                current.legMeters[apex - 1] + current.legMeters[apex], targetMeters - current.totalMeters);
+
+        // Legs away from the apex are reused as they are. When the apex alone cannot absorb the difference,
+        // the whole loop is scaled about the start and routed again
+        CompletableFuture<Attempt> next = moved != null
+                ? priority.run(() -> routingEngine.directionsAsync(List.of(before.get(0), moved, after.get(after.size() - 1))))
+                        .thenApply(pair -> current.withApexLegs(apex, pair))
+                : priority.run(() -> routingEngine.directionsAsync(current.scaledWaypoints(frame, targetMeters / current.totalMeters)))
+                        .thenApply(Attempt::of);
+
+        return next.handle((attempt, error) -> {
+                    if (error == null) {
+                        return refine(frame, priority, attempt, closest, targetMeters, callsLeft - 1);
+                    }
+                    // A refinement that fails still leaves a usable loop, unless the provider is refusing us outright
+                    RuntimeException cause = RouteService.unwrap(error);
+                    if (cause instanceof UpstreamException upstream && upstream.isFatal()) {
+                        return CompletableFuture.<Route>failedFuture(cause);
+                    }
+                    return CompletableFuture.completedFuture(Route.loop(closest.legs));
+                })
+                .thenCompose(route -> route);
+    }
+
+    // Start, k waypoints evenly spaced on a circle through the start, start again. The circle is sized so
+    // the straight-line polygon times ASSUMED_DETOUR matches the target distance.
+    static List<double[]> initialWaypoints(GeoDistance.Local frame, double lat, double lon, double distanceKm, Random random) {
+        int k = 2 + random.nextInt(3);
+        double bearing = random.nextDouble() * 2 * Math.PI;
+        double direction = random.nextBoolean() ? 1 : -1;
+        double radiusKm = distanceKm / (ASSUMED_DETOUR * 2 * (k + 1) * Math.sin(Math.PI / (k + 1)));
+
+        double centerEast = radiusKm * Math.sin(bearing);
+        double centerNorth = radiusKm * Math.cos(bearing);
+        List<double[]> waypoints = new ArrayList<>(k + 2);
+        waypoints.add(new double[]{lat, lon});
+        for (int j = 1; j <= k; j++) {
+            double angle = bearing + Math.PI + direction * 2 * Math.PI * j / (k + 1);
+            waypoints.add(frame.toLatLon(centerEast + radiusKm * Math.sin(angle), centerNorth + radiusKm * Math.cos(angle)));
+        }
+        waypoints.add(new double[]{lat, lon});
+        return waypoints;
+    }
+
+    // New position for the apex between prev and next, along its offset from their midpoint, so that the two legs
+    // change by deltaMeters. The legs' measured walking/straight ratio converts the target back to straight-line km.
+    // Null when even a flattened apex would leave the legs too long.
+    static double[] moveApex(GeoDistance.Local frame, double[] prev, double[] apex, double[] next,
+                             double legsMeters, double deltaMeters) {
+        double[] p = frame.toKm(prev[0], prev[1]);
+        double[] a = frame.toKm(apex[0], apex[1]);
+        double[] n = frame.toKm(next[0], next[1]);
+
+        double straightKm = Math.hypot(a[0] - p[0], a[1] - p[1]) + Math.hypot(n[0] - a[0], n[1] - a[1]);
+        double detour = straightKm > 0 ? Math.max(1, legsMeters / 1000 / straightKm) : ASSUMED_DETOUR;
+        double halfTargetKm = Math.max(0, legsMeters + deltaMeters) / 1000 / detour / 2;
+        double halfChordKm = Math.hypot(n[0] - p[0], n[1] - p[1]) / 2;
+        double offsetSquared = halfTargetKm * halfTargetKm - halfChordKm * halfChordKm;
+        if (offsetSquared < MIN_APEX_OFFSET_KM * MIN_APEX_OFFSET_KM) return null;
+        double offsetKm = Math.sqrt(offsetSquared);
+
+        double midEast = (p[0] + n[0]) / 2;
+        double midNorth = (p[1] + n[1]) / 2;
+        double dirEast = a[0] - midEast;
+        double dirNorth = a[1] - midNorth;
+        double length = Math.hypot(dirEast, dirNorth);
+        if (length < 1e-9) {
+            // Apex sits on the chord: push it out perpendicular to prev -> next
+            dirEast = -(n[1] - p[1]);
+            dirNorth = n[0] - p[0];
+            length = Math.hypot(dirEast, dirNorth);
+            if (length < 1e-9) {
+                dirEast = 0;
+                dirNorth = 1;
+                length = 1;
+            }
+        }
+        return frame.toLatLon(midEast + dirEast / length * offsetKm, midNorth + dirNorth / length * offsetKm);
+    }
+
+    // One routed loop: legs[i] runs from waypoint i to waypoint i + 1
+    private static final class Attempt {
+        final List<List<double[]>> legs;
+        final double[] legMeters;
+        final double totalMeters;
+
+        static Attempt of(List<List<double[]>> legs) {
+            double[] meters = new double[legs.size()];
+            for (int i = 0; i < legs.size(); i++) {
+                meters[i] = legMeters(legs.get(i));
+            }
+            return new Attempt(legs, meters);
+        }
+
+        private Attempt(List<List<double[]>> legs, double[] legMeters) {
+            this.legs = legs;
+            this.legMeters = legMeters;
+            double total = 0;
+            for (double meters : legMeters) {
+                total += meters;
+            }
+            this.totalMeters = total;
+        }
+
+        // Waypoint (1..legs - 1) whose two legs are longest: moving it changes the distance the most
+        int apexWaypoint() {
+            int apex = 1;
+            for (int w = 2; w < legs.size(); w++) {
+                if (legMeters[w - 1] + legMeters[w] > legMeters[apex - 1] + legMeters[apex]) apex = w;
+            }
+            return apex;
+        }
+
+        // Start, every waypoint moved towards or away from the start by factor, start again
+        List<double[]> scaledWaypoints(GeoDistance.Local frame, double factor) {
+            List<double[]> waypoints = new ArrayList<>(legs.size() + 1);
+            double[] start = legs.get(0).get(0);
+            waypoints.add(start);
+            for (int i = 0; i + 1 < legs.size(); i++) {
+                List<double[]> leg = legs.get(i);
+                double[] km = frame.toKm(leg.get(leg.size() - 1)[0], leg.get(leg.size() - 1)[1]);
+                waypoints.add(frame.toLatLon(km[0] * factor, km[1] * factor));
+            }
+            waypoints.add(start);
+            return waypoints;
+        }
+
+        Attempt withApexLegs(int apex, List<List<double[]>> pair) {
+            List<List<double[]>> updated = new ArrayList<>(legs);
+            updated.set(apex - 1, pair.get(0));
+            updated.set(apex, pair.get(1));
+            double[] meters = legMeters.clone();
+            meters[apex - 1] = legMeters(pair.get(0));
+            meters[apex] = legMeters(pair.get(1));
+            return new Attempt(updated, meters);
+        }
+
+        private static double legMeters(List<double[]> leg) {
+            double[] packed = new double[leg.size() * 2];
+            for (int i = 0; i < leg.size(); i++) {
+                packed[2 * i] = leg.get(i)[0];
+                packed[2 * i + 1] = leg.get(i)[1];
+            }
+            return GeoDistance.totalDistanceMeters(packed);
+        }
+    }
+}
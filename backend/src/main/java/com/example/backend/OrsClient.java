@@ -0,0 +1,155 @@
+package com.example.backend;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+// Long-lived openrouteservice client: one pooled HttpClient, async calls, admitted by an UpstreamScheduler
+@Component
+public class OrsClient implements RoutingEngine {
+
+    static final String DEFAULT_API_KEY = "eyJvcmciOiI1YjNjZTM1OTc4NTExMTAwMDFjZjYyNDgiLCJpZCI6IjRhYjMyZDNlZjhlYjRhNTFiMDM1MjEyZjFlMTVlMTdkIiwiaCI6Im11cm11cjY0In0=";
+    static final String DEFAULT_BASE_URL = "https://api.openrouteservice.org";
+    private static final String ISOCHRONES_PATH = "/v2/isochrones/foot-walking";
+    private static final String DIRECTIONS_PATH = "/v2/directions/foot-walking/geojson";
+
+    private final HttpClient httpClient;
+    private final String apiKey;
+    private final URI isochronesUri;
+    private final URI directionsUri;
+    private final Duration requestTimeout;
+    private final UpstreamScheduler scheduler;
+    private final RouteMetrics metrics;
+
+    @Autowired
+    public OrsClient(HttpClient orsHttpClient,
+                     @Value("${ors.api.key}") String apiKey,
+                     @Value("${ors.base-url:" + DEFAULT_BASE_URL + "}") String baseUrl,
+                     @Value("${ors.http.request-timeout-ms:10000}") long requestTimeoutMs,
+                     UpstreamScheduler scheduler,
+                     RouteMetrics metrics) {
+        this.httpClient = orsHttpClient;
+        this.apiKey = apiKey;
+        this.isochronesUri = URI.create(baseUrl + ISOCHRONES_PATH);
+        this.directionsUri = URI.create(baseUrl + DIRECTIONS_PATH);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+    }
+
+    // Concurrency limit only, no rate limiting or retries
+    public OrsClient(HttpClient orsHttpClient, String apiKey, String baseUrl, long requestTimeoutMs, int maxConcurrentRequests) {
+        this(orsHttpClient, apiKey, baseUrl, requestTimeoutMs, UpstreamScheduler.unthrottled(maxConcurrentRequests),
+                RouteMetrics.disabled());
+    }
+
+    // The public openrouteservice API, within its free-plan rate limits
+    public static OrsClient createDefault() {
+        return new OrsClient(HttpClientConfig.buildHttpClient(5000, 8), DEFAULT_API_KEY, DEFAULT_BASE_URL, 10000,
+                UpstreamScheduler.withDefaults(), RouteMetrics.disabled());
+    }
+
+    // Self-hosted openrouteservice or a stub server: unthrottled
+    public static OrsClient forBaseUrl(String baseUrl) {
+        return new OrsClient(HttpClientConfig.buildHttpClient(5000, 8), DEFAULT_API_KEY, baseUrl, 10000, 32);
+    }
+
+    @Override
+    public CompletableFuture<ReachableSet> isochronesAsync(double lat, double lon, double maxDistanceKm) {
+        JSONObject body = new JSONObject();
+        JSONArray locations = new JSONArray();
+        locations.put(new JSONArray().put(lon).put(lat));
+        body.put("locations", locations);
+
+        // Boost range to 1.6x half-distance
+        double rangeMeters = maxDistanceKm * 1000 * 1.6;
+        body.put("range", new JSONArray().put((int) rangeMeters));
+        body.put("range_type", "distance");
+
+        // Isochrone bands repeat each other's vertices and every ring repeats its first one
+        return post(isochronesUri, body.toString(), "Isochrones", true, parsed -> {
+            metrics.isochronePayload(parsed.bytes());
+            metrics.record(RouteMetrics.Stage.PARSE_ISOCHRONES, parsed.parseNanos());
+            return parsed.reachableSet(lat, lon);
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<double[]>> directionsAsync(double startLat, double startLon, double endLat, double endLon) {
+        String body = String.format(Locale.US,
+                "{\"coordinates\":[[%f,%f],[%f,%f]]}",
+                startLon, startLat, endLon, endLat);
+
+        return post(directionsUri, body, "Directions", false, parsed -> {
+            metrics.directionsPayload(parsed.bytes());
+            metrics.record(RouteMetrics.Stage.PARSE_DIRECTIONS, parsed.parseNanos());
+            return parsed.path();
+        });
+    }
+
+    // One request for the whole chain. Generated waypoints may fall off the path network, so they
+    // snap to the nearest walkable way however far it is (radius -1)
+    @Override
+    public CompletableFuture<List<List<double[]>>> directionsAsync(List<double[]> waypoints) {
+        JSONArray coordinates = new JSONArray();
+        JSONArray radiuses = new JSONArray();
+        for (double[] waypoint : waypoints) {
+            coordinates.put(new JSONArray().put(waypoint[1]).put(waypoint[0]));
+            radiuses.put(-1);
+        }
+        JSONObject body = new JSONObject();
+        body.put("coordinates", coordinates);
+        body.put("radiuses", radiuses);
+
+        return post(directionsUri, body.toString(), "Directions", false, parsed -> {
+            metrics.directionsPayload(parsed.bytes());
+            metrics.record(RouteMetrics.Stage.PARSE_DIRECTIONS, parsed.parseNanos());
+            return parsed.legs();
+        });
+    }
+
+    // A 200 body is parsed while it streams in; any other status fails with the provider's message
+    private <T> CompletableFuture<T> post(URI uri, String body, String apiName, boolean dedup,
+                                          Function<GeoJsonCoordinates, T> result) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Authorization", apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        HttpResponse.BodyHandler<T> handler = info -> info.statusCode() == 200
+                ? GeoJsonCoordinates.subscriber(dedup, result)
+                : HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), message -> {
+                    throw UpstreamException.fromResponse(apiName + " API error: " + message, info.statusCode(), info.headers());
+                });
+        return scheduler.submit(apiName, body, () -> httpClient.sendAsync(request, handler));
+    }
+
+    static ReachableSet parseIsochrones(String responseBody, double startLat, double startLon) {
+        return GeoJsonCoordinates.parse(responseBody, true).reachableSet(startLat, startLon);
+    }
+
+    static List<double[]> parseDirections(String responseBody) {
+        return GeoJsonCoordinates.parse(responseBody, false).path();
+    }
+
+    // Splits the path at the waypoint indices ORS reports; adjacent legs share the waypoint vertex
+    static List<List<double[]>> parseDirectionLegs(String responseBody) {
+        return GeoJsonCoordinates.parse(responseBody, false).legs();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.backend;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+// Read-only List<double[]> view over packed {lat, lon} doubles, so a parsed path needs no array per point.
+// get() hands out a fresh {lat, lon} pair; code that knows the type reads packed() instead.
+final class PackedPoints extends AbstractList<double[]> implements RandomAccess {
+
+    private final double[] packed;
+
+    PackedPoints(double[] packed) {
+        this.packed = packed;
+    }
+
+    // Not a copy: callers must not modify it
+    double[] packed() {
+        return packed;
+    }
+
+    @Override
+    public double[] get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+        return new double[]{packed[2 * index], packed[2 * index + 1]};
+    }
+
+    @Override
+    public int size() {
+        return packed.length / 2;
+    }
+}
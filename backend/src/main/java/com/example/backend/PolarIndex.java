@@ -0,0 +1,137 @@
+package com.example.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Reachable points bucketed around a start by bearing sector × distance ring, stored CSR-style:
+// point ids grouped by cell in one int[], with cellStart[c]..cellStart[c + 1] bounding cell c.
+// A distance band touches only its rings, and only the two boundary rings need a per-point check.
+final class PolarIndex {
+
+    static final int SECTORS = 8;
+    static final int RINGS = 32;
+
+    private final ReachableSet points;
+    private final double originLat;
+    private final double originLon;
+    private final double ringWidthKm;
+    private final int[] cellStart;
+    private final int[] ids;
+    private final int farthest;
+
+    private PolarIndex(ReachableSet points, double originLat, double originLon, double ringWidthKm,
+                       int[] cellStart, int[] ids, int farthest) {
+        this.points = points;
+        this.originLat = originLat;
+        this.originLon = originLon;
+        this.ringWidthKm = ringWidthKm;
+        this.cellStart = cellStart;
+        this.ids = ids;
+        this.farthest = farthest;
+    }
+
+    // One pass to find the extent, one to count cells, one to place ids (counting sort)
+    static PolarIndex build(ReachableSet points, double originLat, double originLon) {
+        int n = points.size();
+        int farthest = points.farthestIndex();
+        double maxKm = farthest < 0 ? 0 : points.distanceKm(farthest);
+        double ringWidthKm = maxKm > 0 ? maxKm / RINGS : 1;
+
+        int[] cellOf = new int[n];
+        int[] cellStart = new int[SECTORS * RINGS + 1];
+        for (int i = 0; i < n; i++) {
+            int cell = sector(originLat, originLon, points.lat(i), points.lon(i)) * RINGS
+                    + ring(points.distanceKm(i), ringWidthKm);
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < SECTORS * RINGS; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        int[] next = cellStart.clone();
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[next[cellOf[i]]++] = i;
+        }
+        return new PolarIndex(points, originLat, originLon, ringWidthKm, cellStart, ids, farthest);
+    }
+
+    // Same eight compass sectors the turnaround picker has always used
+    static int sector(double originLat, double originLon, double lat, double lon) {
+        double angle = Math.atan2(lon - originLon, lat - originLat);
+        return (int) Math.round(((angle + Math.PI) / (2 * Math.PI)) * SECTORS) % SECTORS;
+    }
+
+    private static int ring(double distanceKm, double ringWidthKm) {
+        return Math.min(RINGS - 1, Math.max(0, (int) (distanceKm / ringWidthKm)));
+    }
+
+    boolean isAround(double lat, double lon) {
+        return originLat == lat && originLon == lon;
+    }
+
+    int farthestIndex() {
+        return farthest;
+    }
+
+    // Up to count points with distance in [minKm, maxKm]: sectors in random order, one random point per
+    // sector per round, so the picks spread over as many directions as the band allows
+    List<double[]> pickDirectional(double minKm, double maxKm, Random random, int count) {
+        int[][] bySector = new int[SECTORS][];
+        int[] sizes = new int[SECTORS];
+        List<Integer> available = new ArrayList<>(SECTORS);
+        int total = 0;
+        for (int s = 0; s < SECTORS; s++) {
+            bySector[s] = inBand(s, minKm, maxKm);
+            sizes[s] = bySector[s].length;
+            total += sizes[s];
+            if (sizes[s] > 0) available.add(s);
+        }
+        Collections.shuffle(available, random);
+
+        List<double[]> picked = new ArrayList<>(Math.min(count, total));
+        while (picked.size() < count && !available.isEmpty()) {
+            for (int k = 0; k < available.size() && picked.size() < count; ) {
+                int s = available.get(k);
+                int j = random.nextInt(sizes[s]);
+                picked.add(points.point(bySector[s][j]));
+                // Swap-remove, so a point is never picked twice
+                bySector[s][j] = bySector[s][--sizes[s]];
+                if (sizes[s] == 0) {
+                    available.remove(k);
+                } else {
+                    k++;
+                }
+            }
+        }
+        return picked;
+    }
+
+    private int[] inBand(int sector, double minKm, double maxKm) {
+        if (minKm > maxKm || points.isEmpty()) return new int[0];
+        int firstRing = ring(minKm, ringWidthKm);
+        int lastRing = ring(maxKm, ringWidthKm);
+
+        int[] matches = new int[cellStart[sector * RINGS + lastRing + 1] - cellStart[sector * RINGS + firstRing]];
+        int found = 0;
+        for (int r = firstRing; r <= lastRing; r++) {
+            int from = cellStart[sector * RINGS + r];
+            int to = cellStart[sector * RINGS + r + 1];
+            if (r > firstRing && r < lastRing) {
+                // Inner rings lie wholly inside the band
+                System.arraycopy(ids, from, matches, found, to - from);
+                found += to - from;
+                continue;
+            }
+            for (int p = from; p < to; p++) {
+                double d = points.distanceKm(ids[p]);
+                if (d >= minKm && d <= maxKm) matches[found++] = ids[p];
+            }
+        }
+        return found == matches.length ? matches : Arrays.copyOf(matches, found);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.backend;
+
+import java.util.Arrays;
+
+// Geometry helpers for smaller responses: Douglas-Peucker simplification over packed {lat, lon} arrays, and
+// Google's encoded polyline format (1e-5 degrees, about a metre; zigzag deltas in 5-bit chunks of ASCII).
+// Only the encoder ships; clients decode.
+public final class Polyline {
+
+    static final int PRECISION = 5;
+    private static final double SCALE = 1e5;
+
+    private Polyline() {
+    }
+
+    // Keeps the first and last point and every point further than toleranceMeters from the simplified line.
+    // Iterative, so a 50 km leg cannot overflow the stack; distances are taken on a plane around the first point.
+    public static double[] simplify(double[] packed, double toleranceMeters) {
+        int count = packed.length / 2;
+        if (count < 3 || toleranceMeters <= 0) return packed;
+
+        GeoDistance.Local plane = new GeoDistance.Local(packed[0], packed[1]);
+        double[] xy = new double[packed.length];
+        for (int i = 0; i < count; i++) {
+            double[] km = plane.toKm(packed[2 * i], packed[2 * i + 1]);
+            xy[2 * i] = km[0] * 1000;
+            xy[2 * i + 1] = km[1] * 1000;
+        }
+
+        boolean[] keep = new boolean[count];
+        keep[0] = keep[count - 1] = true;
+        int[] stack = new int[2 * count];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        double tolerance2 = toleranceMeters * toleranceMeters;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            double max2 = tolerance2;
+            for (int i = first + 1; i < last; i++) {
+                double d2 = squaredSegmentDistance(xy, i, first, last);
+                if (d2 > max2) {
+                    max2 = d2;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) continue;
+            keep[farthest] = true;
+            stack[top++] = first;
+            stack[top++] = farthest;
+            stack[top++] = farthest;
+            stack[top++] = last;
+        }
+
+        double[] simplified = new double[packed.length];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (!keep[i]) continue;
+            simplified[n++] = packed[2 * i];
+            simplified[n++] = packed[2 * i + 1];
+        }
+        return n == packed.length ? packed : Arrays.copyOf(simplified, n);
+    }
+
+    // To the segment rather than the infinite line, so a loop's coinciding ends measure from the start point
+    private static double squaredSegmentDistance(double[] xy, int i, int a, int b) {
+        double ax = xy[2 * a], ay = xy[2 * a + 1];
+        double dx = xy[2 * b] - ax, dy = xy[2 * b + 1] - ay;
+        double px = xy[2 * i] - ax, py = xy[2 * i + 1] - ay;
+        double length2 = dx * dx + dy * dy;
+        double t = length2 == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / length2));
+        double ex = px - t * dx, ey = py - t * dy;
+        return ex * ex + ey * ey;
+    }
+
+    // The first count points of the route's full polyline
+    public static String encode(Route route, int count) {
+        StringBuilder out = new StringBuilder(count * 8);
+        long previousLat = 0, previousLon = 0;
+        for (int i = 0; i < count; i++) {
+            long lat = Math.round(route.lat(i) * SCALE);
+            long lon = Math.round(route.lon(i) * SCALE);
+            append(out, lat - previousLat);
+            append(out, lon - previousLon);
+            previousLat = lat;
+            previousLon = lon;
+        }
+        return out.toString();
+    }
+
+    private static void append(StringBuilder out, long delta) {
+        long value = delta < 0 ? ~(delta << 1) : delta << 1;
+        while (value >= 0x20) {
+            out.append((char) ((0x20 | (value & 0x1f)) + 63));
+            value >>= 5;
+        }
+        out.append((char) (value + 63));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.backend;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+// Points reachable from a start location, packed as {lat, lon} pairs with their distance from the start.
+// The distance is network (walking) distance when the engine knows it, straight-line distance otherwise.
+public final class ReachableSet {
+
+    private static final ReachableSet EMPTY = new ReachableSet(new double[0], new float[0], 0);
+
+    private final double[] coords;
+    private final float[] distancesKm;
+    private final int size;
+    // Last index built over this set; cached sets are usually queried again from the same start
+    private volatile PolarIndex polarIndex;
+
+    ReachableSet(double[] coords, float[] distancesKm, int size) {
+        this.coords = coords;
+        this.distancesKm = distancesKm;
+        this.size = size;
+    }
+
+    public static ReachableSet empty() {
+        return EMPTY;
+    }
+
+    // For engines that only return geometry (e.g. isochrone polygon vertices). The distances only feed
+    // tolerance bands and ordering, so the local equirectangular approximation is accurate enough.
+    public static ReachableSet fromPoints(Collection<double[]> points, double startLat, double startLon) {
+        double[] coords = new double[points.size() * 2];
+        float[] distances = new float[points.size()];
+        GeoDistance.Local local = new GeoDistance.Local(startLat, startLon);
+        int i = 0;
+        for (double[] p : points) {
+            coords[2 * i] = p[0];
+            coords[2 * i + 1] = p[1];
+            distances[i] = (float) local.distanceKm(p[0], p[1]);
+            i++;
+        }
+        return new ReachableSet(coords, distances, i);
+    }
+
+    // Packed {lat, lon} pairs, of which the first count are used; the array is copied to size
+    static ReachableSet fromPacked(double[] packed, int count, double startLat, double startLon) {
+        double[] coords = Arrays.copyOf(packed, count * 2);
+        float[] distances = new float[count];
+        GeoDistance.Local local = new GeoDistance.Local(startLat, startLon);
+        for (int i = 0; i < count; i++) {
+            distances[i] = (float) local.distanceKm(coords[2 * i], coords[2 * i + 1]);
+        }
+        return new ReachableSet(coords, distances, count);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double lat(int i) {
+        return coords[2 * i];
+    }
+
+    public double lon(int i) {
+        return coords[2 * i + 1];
+    }
+
+    public double distanceKm(int i) {
+        return distancesKm[i];
+    }
+
+    public double[] point(int i) {
+        return new double[]{coords[2 * i], coords[2 * i + 1]};
+    }
+
+    // Points no farther than maxKm from the start; shares nothing with this set
+    public ReachableSet withinKm(double maxKm) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (distancesKm[i] <= maxKm) count++;
+        }
+        if (count == size) {
+            return this;
+        }
+
+        double[] keptCoords = new double[count * 2];
+        float[] keptDistances = new float[count];
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (distancesKm[i] <= maxKm) {
+                keptCoords[2 * j] = coords[2 * i];
+                keptCoords[2 * j + 1] = coords[2 * i + 1];
+                keptDistances[j++] = distancesKm[i];
+            }
+        }
+        return new ReachableSet(keptCoords, keptDistances, count);
+    }
+
+    // The same points with straight-line distances from another start; network distances do not carry over
+    public ReachableSet rebasedTo(double startLat, double startLon) {
+        return fromPacked(coords, size, startLat, startLon);
+    }
+
+    public double maxDistanceKm() {
+        int farthest = farthestIndex();
+        return farthest < 0 ? 0 : distancesKm[farthest];
+    }
+
+    // Retained size: two doubles and a float per point plus array headers
+    public int sizeBytes() {
+        return 64 + size * 20;
+    }
+
+    PolarIndex polarIndex(double originLat, double originLon) {
+        PolarIndex index = polarIndex;
+        if (index == null || !index.isAround(originLat, originLon)) {
+            index = PolarIndex.build(this, originLat, originLon);
+            polarIndex = index;
+        }
+        return index;
+    }
+
+    public int farthestIndex() {
+        int farthest = -1;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            if (distancesKm[i] > max) {
+                max = distancesKm[i];
+                farthest = i;
+            }
+        }
+        return farthest;
+    }
+}
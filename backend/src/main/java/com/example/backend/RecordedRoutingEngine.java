@@ -0,0 +1,45 @@
+package com.example.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Answers every call with a recorded openrouteservice response (the isochrone and a directions leg of a 10 km
+// route from central London, in resources/warmup), parsed by the same code as live responses. For the startup
+// warm-up, which needs the generation path hot but must not spend provider quota.
+final class RecordedRoutingEngine implements RoutingEngine {
+
+    private final String isochrone;
+    private final String directions;
+
+    private RecordedRoutingEngine(String isochrone, String directions) {
+        this.isochrone = isochrone;
+        this.directions = directions;
+    }
+
+    static RecordedRoutingEngine fromResources() {
+        return new RecordedRoutingEngine(resource("warmup/isochrone.json"), resource("warmup/directions.json"));
+    }
+
+    @Override
+    public CompletableFuture<ReachableSet> isochronesAsync(double lat, double lon, double maxDistanceKm) {
+        return CompletableFuture.supplyAsync(() -> OrsClient.parseIsochrones(isochrone, lat, lon));
+    }
+
+    @Override
+    public CompletableFuture<List<double[]>> directionsAsync(double startLat, double startLon, double endLat, double endLon) {
+        return CompletableFuture.supplyAsync(() -> OrsClient.parseDirections(directions));
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = RecordedRoutingEngine.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) throw new IllegalStateException("Missing warm-up fixture " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
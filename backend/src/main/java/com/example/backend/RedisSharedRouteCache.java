@@ -0,0 +1,157 @@
+package com.example.backend;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanIterator;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// SharedRouteCache on Redis (or anything speaking its protocol). A key's variants are a list, its rotation a
+// counter and its lock a string holding the owner, all under one hash tag so the scripts that touch several of
+// them also work on a cluster. Commands fail fast while disconnected instead of queueing, so an outage costs
+// at most one timeout before SharedCacheTier stops asking.
+public class RedisSharedRouteCache implements SharedRouteCache {
+
+    private static final String PREFIX = "routes:";
+
+    // KEYS: variants, rotation. ARGV: route, max variants, ttl millis
+    private static final String APPEND = """
+            local size = redis.call('LLEN', KEYS[1])
+            if size < tonumber(ARGV[2]) then
+              size = redis.call('RPUSH', KEYS[1], ARGV[1])
+              if size == 1 then redis.call('SET', KEYS[2], 1, 'PX', ARGV[3]) end
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            return size""";
+    // KEYS: variants, rotation. ARGV: ttl millis, routes...
+    private static final String REPLACE = """
+            redis.call('DEL', KEYS[1], KEYS[2])
+            for i = 2, #ARGV do redis.call('RPUSH', KEYS[1], ARGV[i]) end
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return #ARGV - 1""";
+    // KEYS: rotation. ARGV: ttl millis
+    private static final String ROTATE = """
+            local position = redis.call('INCR', KEYS[1])
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return position""";
+    // KEYS: lock. ARGV: owner
+    private static final String UNLOCK = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end
+            return 0""";
+
+    private final RedisClient client;
+    private StatefulRedisConnection<byte[], byte[]> connection;
+
+    public RedisSharedRouteCache(String uri, Duration timeout) {
+        RedisURI redisUri = RedisURI.create(uri);
+        redisUri.setTimeout(timeout);
+        this.client = RedisClient.create(redisUri);
+        client.setOptions(ClientOptions.builder()
+                .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                .socketOptions(SocketOptions.builder().connectTimeout(timeout).build())
+                .timeoutOptions(TimeoutOptions.enabled(timeout))
+                .build());
+    }
+
+    @Override
+    public List<byte[]> variants(String key) {
+        return commands().lrange(variantsKey(key), 0, -1);
+    }
+
+    @Override
+    public void appendVariant(String key, byte[] route, int maxVariants, Duration ttl) {
+        commands().eval(APPEND, ScriptOutputType.INTEGER, new byte[][]{variantsKey(key), rotationKey(key)},
+                route, bytes(maxVariants), bytes(ttl.toMillis()));
+    }
+
+    @Override
+    public void replaceVariants(String key, List<byte[]> routes, Duration ttl) {
+        List<byte[]> args = new ArrayList<>(routes.size() + 1);
+        args.add(bytes(ttl.toMillis()));
+        args.addAll(routes);
+        commands().eval(REPLACE, ScriptOutputType.INTEGER, new byte[][]{variantsKey(key), rotationKey(key)},
+                args.toArray(byte[][]::new));
+    }
+
+    @Override
+    public long nextRotation(String key, Duration ttl) {
+        Long position = commands().eval(ROTATE, ScriptOutputType.INTEGER, new byte[][]{rotationKey(key)},
+                bytes(ttl.toMillis()));
+        return position - 1;
+    }
+
+    @Override
+    public boolean tryLock(String key, String owner, Duration lease) {
+        return "OK".equals(commands().set(lockKey(key), owner.getBytes(StandardCharsets.UTF_8),
+                SetArgs.Builder.nx().px(lease.toMillis())));
+    }
+
+    @Override
+    public boolean isLocked(String key) {
+        return commands().exists(lockKey(key)) > 0;
+    }
+
+    @Override
+    public void unlock(String key, String owner) {
+        commands().eval(UNLOCK, ScriptOutputType.INTEGER, new byte[][]{lockKey(key)},
+                owner.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Every replica's keys, in batches, without blocking the server the way KEYS would
+    @Override
+    public void clear() {
+        RedisCommands<byte[], byte[]> commands = commands();
+        ScanIterator<byte[]> keys = ScanIterator.scan(commands, ScanArgs.Builder.matches(PREFIX + "*").limit(500));
+        List<byte[]> batch = new ArrayList<>(500);
+        while (keys.hasNext()) {
+            batch.add(keys.next());
+            if (batch.size() == 500) {
+                commands.unlink(batch.toArray(byte[][]::new));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) commands.unlink(batch.toArray(byte[][]::new));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection != null) connection.close();
+        client.shutdown();
+    }
+
+    // Connects on first use, and again after a failed connect; an open connection reconnects by itself
+    private synchronized RedisCommands<byte[], byte[]> commands() {
+        if (connection == null) {
+            connection = client.connect(ByteArrayCodec.INSTANCE);
+        }
+        return connection.sync();
+    }
+
+    private static byte[] variantsKey(String key) {
+        return bytes(PREFIX + "{" + key + "}:variants");
+    }
+
+    private static byte[] rotationKey(String key) {
+        return bytes(PREFIX + "{" + key + "}:rotation");
+    }
+
+    private static byte[] lockKey(String key) {
+        return bytes(PREFIX + "{" + key + "}:lock");
+    }
+
+    private static byte[] bytes(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
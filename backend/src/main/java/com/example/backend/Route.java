@@ -0,0 +1,173 @@
+package com.example.backend;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Immutable route, packed as {lat, lon} doubles. For an out-and-back route only the out leg is stored;
+// the back leg is the same polyline read in reverse, without repeating the turnaround point.
+// A loop stores its whole polyline, start to start.
+public final class Route {
+
+    private final double[] outLeg;
+    private final int outPoints;
+    private final double distanceMeters;
+    private final boolean outAndBack;
+
+    // Lighter forms of this route, computed on first use and kept with it, so a cached route serves them
+    // again without redoing the work. One tolerance is remembered: clients send the same one every time.
+    private volatile Simplified simplified;
+    private volatile String polyline;
+    private volatile String mirroredPolyline;
+
+    private record Simplified(double toleranceMeters, Route route) {
+    }
+
+    Route(double[] outLeg, double distanceMeters) {
+        this(outLeg, distanceMeters, true);
+    }
+
+    Route(double[] outLeg, double distanceMeters, boolean outAndBack) {
+        this.outLeg = outLeg;
+        this.outPoints = outLeg.length / 2;
+        this.distanceMeters = distanceMeters;
+        this.outAndBack = outAndBack;
+    }
+
+    public static Route outAndBack(List<double[]> outRoute) {
+        double[] packed;
+        if (outRoute instanceof PackedPoints points) {
+            // Parsed paths are already packed and never modified
+            packed = points.packed();
+        } else {
+            packed = new double[outRoute.size() * 2];
+            for (int i = 0; i < outRoute.size(); i++) {
+                packed[2 * i] = outRoute.get(i)[0];
+                packed[2 * i + 1] = outRoute.get(i)[1];
+            }
+        }
+        // The back leg retraces the out leg, so the full distance is twice the out leg
+        return new Route(packed, 2 * GeoDistance.totalDistanceMeters(packed));
+    }
+
+    // Legs joined end to start; a leg's first point is dropped when it repeats the previous leg's last
+    public static Route loop(List<List<double[]>> legs) {
+        int count = 0;
+        for (List<double[]> leg : legs) {
+            count += leg.size();
+        }
+        double[] packed = new double[count * 2];
+        int n = 0;
+        for (List<double[]> leg : legs) {
+            if (leg instanceof PackedPoints points) {
+                double[] source = points.packed();
+                for (int i = 0; i + 1 < source.length; i += 2) {
+                    n = append(packed, n, source[i], source[i + 1]);
+                }
+                continue;
+            }
+            for (double[] point : leg) {
+                n = append(packed, n, point[0], point[1]);
+            }
+        }
+        double[] path = n * 2 == packed.length ? packed : Arrays.copyOf(packed, n * 2);
+        return new Route(path, GeoDistance.totalDistanceMeters(path), false);
+    }
+
+    private static int append(double[] packed, int n, double lat, double lon) {
+        if (n > 0 && packed[2 * n - 2] == lat && packed[2 * n - 1] == lon) return n;
+        packed[2 * n] = lat;
+        packed[2 * n + 1] = lon;
+        return n + 1;
+    }
+
+    // Number of points in the full polyline
+    public int pointCount() {
+        if (!outAndBack) return outPoints;
+        return outPoints == 0 ? 0 : 2 * outPoints - 1;
+    }
+
+    public RouteShape shape() {
+        return outAndBack ? RouteShape.OUT_AND_BACK : RouteShape.LOOP;
+    }
+
+    public double lat(int i) {
+        return outLeg[2 * outIndex(i)];
+    }
+
+    public double lon(int i) {
+        return outLeg[2 * outIndex(i) + 1];
+    }
+
+    private int outIndex(int i) {
+        return i < outPoints ? i : 2 * outPoints - 2 - i;
+    }
+
+    // Points actually stored: the out leg, or the whole loop
+    public int outLegPointCount() {
+        return outPoints;
+    }
+
+    double[] packedOutLeg() {
+        return outLeg;
+    }
+
+    // Douglas-Peucker at toleranceMeters; an out-and-back simplifies its out leg, so the back leg still retraces
+    // it. The distance stays the full-resolution one.
+    public Route simplified(double toleranceMeters) {
+        if (toleranceMeters <= 0) return this;
+        Simplified memo = simplified;
+        if (memo != null && memo.toleranceMeters() == toleranceMeters) return memo.route();
+        double[] path = Polyline.simplify(outLeg, toleranceMeters);
+        Route route = path == outLeg ? this : new Route(path, distanceMeters, outAndBack);
+        simplified = new Simplified(toleranceMeters, route);
+        return route;
+    }
+
+    // Encoded polyline of the whole route, or with mirror of an out-and-back only its out leg for the client
+    // to reverse
+    public String encodedPolyline(boolean mirror) {
+        if (mirror && outAndBack) {
+            String encoded = mirroredPolyline;
+            if (encoded == null) mirroredPolyline = encoded = Polyline.encode(this, outPoints);
+            return encoded;
+        }
+        String encoded = polyline;
+        if (encoded == null) polyline = encoded = Polyline.encode(this, pointCount());
+        return encoded;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public double getActualDistanceKm() {
+        return distanceMeters / 1000.0;
+    }
+
+    public boolean isSuccess() {
+        return true;
+    }
+
+    // Retained size: object header and fields plus the packed array
+    public int sizeBytes() {
+        return 32 + 16 + outLeg.length * 8;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Route other)) return false;
+        return distanceMeters == other.distanceMeters && outAndBack == other.outAndBack
+                && Arrays.equals(outLeg, other.outLeg);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(outLeg);
+    }
+
+    @Override
+    public String toString() {
+        return "Route{shape=" + shape().wireName() + ", points=" + pointCount() + ", distanceMeters=" + distanceMeters + '}';
+    }
+}
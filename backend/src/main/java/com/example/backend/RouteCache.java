@@ -0,0 +1,230 @@
+package com.example.backend;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bounded route-variant cache (W-TinyLFU eviction, TTL) keyed by quantized start cell and distance bucket.
+// Variant sets also stay in a last-known tier (same bound) for staleTtl after they expire, to serve while the
+// provider is down. Routes rebuilt from a token are kept apart, under that token, and never join a rotation.
+@Component
+public class RouteCache {
+
+    private final Cache<RouteKey, VariantSet> cache;
+    private final Cache<RouteKey, VariantSet> lastKnown;
+    private final Cache<RouteToken, Route> rebuilt;
+    private final int cellPrecision;
+    private final int distanceBucketMeters;
+    private final int maxVariants;
+    private final boolean weighted;
+    private final Duration ttl;
+
+    @Autowired
+    public RouteCache(@Value("${routes.cache.max-entries:10000}") long maxEntries,
+                      @Value("${routes.cache.max-bytes:0}") long maxBytes,
+                      @Value("${routes.cache.ttl-minutes:360}") long ttlMinutes,
+                      @Value("${routes.cache.cell-precision:7}") int cellPrecision,
+                      @Value("${routes.cache.distance-bucket-meters:100}") int distanceBucketMeters,
+                      @Value("${routes.cache.stale-ttl-minutes:1440}") long staleTtlMinutes) {
+        this(maxEntries, maxBytes, Duration.ofMinutes(ttlMinutes), cellPrecision, distanceBucketMeters,
+                Duration.ofMinutes(staleTtlMinutes), Ticker.systemTicker());
+    }
+
+    RouteCache(long maxEntries, long maxBytes, Duration ttl, int cellPrecision, int distanceBucketMeters, Ticker ticker) {
+        this(maxEntries, maxBytes, ttl, cellPrecision, distanceBucketMeters, ttl.multipliedBy(4), ticker);
+    }
+
+    RouteCache(long maxEntries, long maxBytes, Duration ttl, int cellPrecision, int distanceBucketMeters,
+               Duration staleTtl, Ticker ticker) {
+        this.cache = build(maxEntries, maxBytes, ttl, ticker, true);
+        this.lastKnown = build(maxEntries, maxBytes, ttl.plus(staleTtl), ticker, false);
+        this.rebuilt = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .maximumSize(Math.max(1, maxEntries))
+                .<RouteToken, Route>build();
+        this.cellPrecision = cellPrecision;
+        this.distanceBucketMeters = distanceBucketMeters;
+        this.maxVariants = RouteService.MAX_VARIANTS;
+        this.weighted = maxBytes > 0;
+        this.ttl = ttl;
+    }
+
+    public static RouteCache withDefaults() {
+        return new RouteCache(10000, 0, 360, 7, 100, 1440);
+    }
+
+    private static Cache<RouteKey, VariantSet> build(long maxEntries, long maxBytes, Duration expiry, Ticker ticker,
+                                                     boolean recordStats) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(expiry)
+                .ticker(ticker)
+                .executor(Runnable::run);
+        if (recordStats) {
+            builder.recordStats();
+        }
+
+        // Byte budget wins when set; otherwise bound the number of keys
+        if (maxBytes > 0) {
+            return builder.maximumWeight(maxBytes).weigher((RouteKey key, VariantSet set) -> set.weightBytes()).build();
+        }
+        return builder.maximumSize(maxEntries).build();
+    }
+
+    public RouteKey keyFor(double lat, double lon, double distanceKm) {
+        return keyFor(RouteShape.OUT_AND_BACK, lat, lon, distanceKm);
+    }
+
+    public RouteKey keyFor(RouteShape shape, double lat, double lon, double distanceKm) {
+        long buckets = Math.max(1, Math.round(distanceKm * 1000 / distanceBucketMeters));
+        return new RouteKey(shape, GeoCell.geohash(lat, lon, cellPrecision), (int) (buckets * distanceBucketMeters));
+    }
+
+    // Next variant in the key's rotation, or null on a miss
+    public Route nextVariant(RouteKey key) {
+        VariantSet set = cache.getIfPresent(key);
+        if (set == null) {
+            return null;
+        }
+        // Variants may still be arriving from the batch; rotate over the ones that are ready
+        List<Route> variants = set.variants;
+        return variants.get(Math.floorMod(set.rotation.getAndIncrement(), variants.size()));
+    }
+
+    // The variant at a rotation position counted elsewhere (the shared tier), or null on a miss
+    public Route variantAt(RouteKey key, long position) {
+        // Follows nextVariant, which has already counted the hit
+        VariantSet set = cache.asMap().get(key);
+        if (set == null) {
+            return null;
+        }
+        return set.variants.get((int) Math.floorMod(position, (long) set.variants.size()));
+    }
+
+    // Next variant even if it has expired, or null if the key has not been seen within the stale window
+    public Route staleVariant(RouteKey key) {
+        VariantSet set = lastKnown.getIfPresent(key);
+        if (set == null) {
+            return null;
+        }
+        return set.variants.get(Math.floorMod(set.rotation.getAndIncrement(), set.variants.size()));
+    }
+
+    // The variant the token addresses, without advancing the rotation. An expired copy still counts: it is
+    // the exact route the token was issued for
+    public Route findVariant(RouteToken token) {
+        Route route = find(cache.asMap().get(token.key()), token);
+        if (route == null) route = find(lastKnown.asMap().get(token.key()), token);
+        return route != null ? route : rebuilt.getIfPresent(token);
+    }
+
+    // A route rebuilt for a token, found again by findVariant(token) alone
+    public void keepRebuilt(RouteToken token, Route route) {
+        rebuilt.put(token, route);
+    }
+
+    private static Route find(VariantSet set, RouteToken token) {
+        if (set == null) return null;
+        for (Route route : set.variants) {
+            if (token.matches(route)) return route;
+        }
+        return null;
+    }
+
+    // Returns true when the route became the first variant for the key
+    public boolean addVariant(RouteKey key, Route route) {
+        VariantSet updated = cache.asMap().compute(key, (k, current) -> {
+            if (current == null) {
+                return VariantSet.first(route);
+            }
+            return current.variants.size() < maxVariants ? current.with(route) : current;
+        });
+        lastKnown.put(key, updated);
+        return updated.variants.get(0) == route;
+    }
+
+    // Swaps in a freshly generated rotation (none of it served yet), restarting the key's TTL
+    public void replaceVariants(RouteKey key, List<Route> routes) {
+        if (routes.isEmpty()) return;
+        VariantSet set = VariantSet.fresh(routes.subList(0, Math.min(routes.size(), maxVariants)));
+        cache.put(key, set);
+        lastKnown.put(key, set);
+    }
+
+    // Time until the key's variants expire; zero when it has none
+    public Duration timeToLive(RouteKey key) {
+        return cache.policy().expireAfterWrite()
+                .flatMap(expiration -> expiration.ageOf(key))
+                .map(age -> ttl.minus(age).isNegative() ? Duration.ZERO : ttl.minus(age))
+                .orElse(Duration.ZERO);
+    }
+
+    public int variantCount(RouteKey key) {
+        VariantSet set = cache.asMap().get(key);
+        return set == null ? 0 : set.variants.size();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+        lastKnown.invalidateAll();
+        rebuilt.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("hits", stats.hitCount());
+        body.put("misses", stats.missCount());
+        body.put("hitRate", stats.hitRate());
+        body.put("evictions", stats.evictionCount());
+        body.put("size", cache.estimatedSize());
+        if (weighted) {
+            body.put("weightBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L));
+        }
+        return body;
+    }
+
+    // Immutable list of variants; the rotation counter is carried over as variants are added
+    private static final class VariantSet {
+        final List<Route> variants;
+        final AtomicInteger rotation;
+
+        private VariantSet(List<Route> variants, AtomicInteger rotation) {
+            this.variants = variants;
+            this.rotation = rotation;
+        }
+
+        // The first variant has already been served to the request that created it
+        static VariantSet first(Route route) {
+            return new VariantSet(List.of(route), new AtomicInteger(1));
+        }
+
+        static VariantSet fresh(List<Route> routes) {
+            return new VariantSet(List.copyOf(routes), new AtomicInteger());
+        }
+
+        VariantSet with(Route route) {
+            List<Route> copy = new ArrayList<>(variants.size() + 1);
+            copy.addAll(variants);
+            copy.add(route);
+            return new VariantSet(Collections.unmodifiableList(copy), rotation);
+        }
+
+        int weightBytes() {
+            int bytes = 0;
+            for (Route route : variants) {
+                bytes += route.sizeBytes();
+            }
+            return bytes;
+        }
+    }
+}
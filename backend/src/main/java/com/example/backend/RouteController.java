@@ -1,75 +1,162 @@
 package com.example.backend;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.nio.charset.StandardCharsets;
+import java.io.InterruptedIOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/routes")
 public class RouteController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    static final String ROUTE_TOKEN = "X-Route-Token";
+    static final double MAX_TOLERANCE_METERS = 100;
+
     private final RouteService routeService;
+    private final BatchRouteService batchRouteService;
+    private final RouteMetrics metrics;
+
+    public RouteController(RouteService routeService, BatchRouteService batchRouteService) {
+        this(routeService, batchRouteService, RouteMetrics.disabled());
+    }
 
-    public RouteController(RouteService routeService) {
+    @Autowired
+    public RouteController(RouteService routeService, BatchRouteService batchRouteService, RouteMetrics metrics) {
         this.routeService = routeService;
+        this.batchRouteService = batchRouteService;
+        this.metrics = metrics;
     }
 
+    // format=polyline, tolerance (meters of simplification) and mirror shrink the response; see RouteExporter.writeJson
     @PostMapping
-    public ResponseEntity<?> createRoute(@RequestBody RouteRequest request) {
-        try {
-            validateRequest(request);
-
-            long seed = ThreadLocalRandom.current().nextLong();
-            Map<String, Object> route = routeService.generateBackAndForthRoute(
-                    request.getLat(),
-                    request.getLon(),
-                    request.getDistanceKm(),
-                    seed
-            );
-
-            return ResponseEntity.ok(route);
-
-        } catch (IllegalArgumentException e) {
-            return buildErrorResponse(HttpStatus.BAD_REQUEST, "Invalid request parameters", e.getMessage());
-        } catch (RuntimeException e) {
-            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Route generation failed", e.getMessage());
-        }
+    public ResponseEntity<StreamingResponseBody> createRoute(@RequestBody RouteRequest request,
+                                                             @RequestParam(defaultValue = "false") boolean pretty,
+                                                             @RequestParam(required = false) String format,
+                                                             @RequestParam(defaultValue = "0") double tolerance,
+                                                             @RequestParam(defaultValue = "false") boolean mirror,
+                                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        validateRequest(request);
+        GeometryFormat geometry = validateGeometry(format, tolerance);
+
+        Route route = routeService.generateRoute(
+                request.getShape(),
+                request.getTerrainPreference(),
+                request.getLat(),
+                request.getLon(),
+                request.getDistanceKm(),
+                seedFor(request)
+        );
+        String token = tokenFor(request, route);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(ROUTE_TOKEN, token);
+        Route served = route.simplified(tolerance);
+        return streamed(headers, acceptEncoding, serialization(
+                out -> RouteExporter.writeJson(served, token, out, pretty, geometry, mirror)));
+    }
+
+    // The route a token from an earlier response was issued for; never generates a different one
+    @GetMapping("/{token}")
+    public ResponseEntity<StreamingResponseBody> getRoute(@PathVariable String token,
+                                                          @RequestParam(defaultValue = "false") boolean pretty,
+                                                          @RequestParam(required = false) String format,
+                                                          @RequestParam(defaultValue = "0") double tolerance,
+                                                          @RequestParam(defaultValue = "false") boolean mirror,
+                                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        GeometryFormat geometry = validateGeometry(format, tolerance);
+        Route route = routeService.findRoute(RouteToken.parse(token));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(ROUTE_TOKEN, token);
+        Route served = route.simplified(tolerance);
+        return streamed(headers, acceptEncoding, serialization(
+                out -> RouteExporter.writeJson(served, token, out, pretty, geometry, mirror)));
     }
 
     @PostMapping("/gpx")
-    public ResponseEntity<?> downloadGPX(@RequestBody RouteRequest request) {
-        try {
-            validateRequest(request);
-
-            long seed = ThreadLocalRandom.current().nextLong();
-            Map<String, Object> route = routeService.generateBackAndForthRoute(
-                    request.getLat(),
-                    request.getLon(),
-                    request.getDistanceKm(),
-                    seed
-            );
-
-            String gpxContent = routeService.exportRouteAsGPX(route);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", "route.gpx");
-            headers.setContentLength(gpxContent.getBytes(StandardCharsets.UTF_8).length);
-
-            return new ResponseEntity<>(gpxContent, headers, HttpStatus.OK);
-
-        } catch (IllegalArgumentException e) {
-            return buildErrorResponse(HttpStatus.BAD_REQUEST, "Invalid request parameters", e.getMessage());
-        } catch (RuntimeException e) {
-            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Route generation failed", e.getMessage());
+    public ResponseEntity<StreamingResponseBody> downloadGPX(@RequestBody RouteRequest request,
+                                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        validateRequest(request);
+
+        Route route = routeService.generateRoute(
+                request.getShape(),
+                request.getTerrainPreference(),
+                request.getLat(),
+                request.getLon(),
+                request.getDistanceKm(),
+                seedFor(request)
+        );
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "route.gpx");
+        headers.set(ROUTE_TOKEN, tokenFor(request, route));
+        return streamed(headers, acceptEncoding, serialization(out -> RouteExporter.writeGpx(route, out)));
+    }
+
+    // GPX of a route already shown to the user, so downloading it costs no second generation
+    @GetMapping("/gpx/{token}")
+    public ResponseEntity<StreamingResponseBody> downloadGPX(@PathVariable String token,
+                                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Route route = routeService.findRoute(RouteToken.parse(token));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "route.gpx");
+        headers.set(ROUTE_TOKEN, token);
+        return streamed(headers, acceptEncoding, serialization(out -> RouteExporter.writeGpx(route, out)));
+    }
+
+    // One NDJSON line per entry, in completion order; each line carries the entry's index and its own success flag
+    @PostMapping("/batch")
+    public ResponseEntity<StreamingResponseBody> createRoutes(@RequestBody List<RouteRequest> requests,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (requests == null || requests.isEmpty())
+            throw new IllegalArgumentException("Batch must contain at least one request");
+        if (requests.size() > batchRouteService.getMaxItems())
+            throw new IllegalArgumentException("Batch cannot exceed " + batchRouteService.getMaxItems() + " requests");
+
+        BlockingQueue<BatchRouteService.BatchResult> results = new LinkedBlockingQueue<>();
+        Map<Integer, RouteRequest> valid = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                validateRequest(requests.get(i));
+                valid.put(i, requests.get(i));
+            } catch (IllegalArgumentException e) {
+                results.add(BatchRouteService.BatchResult.failure(i, "Invalid request parameters", e.getMessage()));
+            }
         }
+        batchRouteService.generate(valid, ThreadLocalRandom.current().nextLong(), results::add);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(NDJSON);
+        return streamed(headers, acceptEncoding, out -> {
+            for (int written = 0; written < requests.size(); written++) {
+                try {
+                    RouteExporter.writeBatchLine(results.take(), out);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Batch interrupted after " + written + " results");
+                }
+                out.flush();
+            }
+        });
     }
 
     @PostMapping("/reset-cache")
@@ -82,7 +169,89 @@ public class RouteController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/cache-stats")
+    public ResponseEntity<?> cacheStats() {
+        Map<String, Object> response = new HashMap<>(routeService.cacheStats());
+        response.put("success", true);
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+
+    // Route endpoints stream their body, so failures are mapped to the error response here
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidRequest(IllegalArgumentException e) {
+        return buildErrorResponse(HttpStatus.BAD_REQUEST, "Invalid request parameters", e.getMessage());
+    }
+
+    @ExceptionHandler(RouteNotFoundException.class)
+    public ResponseEntity<Map<String, Object>> handleRouteNotFound(RouteNotFoundException e) {
+        return buildErrorResponse(HttpStatus.NOT_FOUND, "Route not found", e.getMessage());
+    }
+
+    // Throttled or unreachable provider with nothing cached to fall back on: the client may retry shortly
+    @ExceptionHandler(UpstreamException.class)
+    public ResponseEntity<Map<String, Object>> handleUpstreamFailure(UpstreamException e) {
+        if (!e.isTransient()) {
+            return handleGenerationFailure(e);
+        }
+        return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Routing provider unavailable", e.getMessage());
+    }
+
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<Map<String, Object>> handleGenerationFailure(RuntimeException e) {
+        return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Route generation failed", e.getMessage());
+    }
+
     // ---------------- Helper Methods ----------------
+    // Times writing the route, which streams straight to the client, so slow readers show up here too
+    private StreamingResponseBody serialization(StreamingResponseBody body) {
+        return out -> {
+            long start = metrics.start();
+            boolean success = false;
+            try {
+                body.writeTo(out);
+                success = true;
+            } finally {
+                metrics.stop(RouteMetrics.Stage.SERIALIZATION, start, success);
+            }
+        };
+    }
+
+    // Body is written straight to the response stream (chunked), gzipped when the client accepts it
+    private ResponseEntity<StreamingResponseBody> streamed(HttpHeaders headers, String acceptEncoding, StreamingResponseBody body) {
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!acceptsGzip(acceptEncoding)) {
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
+        }
+        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return new ResponseEntity<>(out -> {
+            // syncFlush, so a flush pushes each streamed batch line through the compressor
+            GZIPOutputStream gzip = new GZIPOutputStream(out, 8192, true);
+            body.writeTo(gzip);
+            gzip.finish();
+        }, headers, HttpStatus.OK);
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+            return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    // A client-supplied seed makes generation on a miss repeatable
+    private static long seedFor(RouteRequest request) {
+        return request.getSeed() != null ? request.getSeed() : ThreadLocalRandom.current().nextLong();
+    }
+
+    private String tokenFor(RouteRequest request, Route route) {
+        return routeService.tokenFor(request.getShape(), request.getTerrainPreference(), request.getLat(), request.getLon(),
+                request.getDistanceKm(), route).encode();
+    }
+
     private void validateRequest(RouteRequest request) {
         if (request == null) throw new IllegalArgumentException("Request cannot be null");
         if (request.getLat() < -90 || request.getLat() > 90)
@@ -91,8 +260,16 @@ public class RouteController {
             throw new IllegalArgumentException("Longitude must be between -180 and 180");
         if (request.getDistanceKm() <= 0)
             throw new IllegalArgumentException("Distance must be greater than 0 km");
-        if (request.getDistanceKm() > 50)
-            throw new IllegalArgumentException("Distance cannot exceed 50 km");
+        if (request.getDistanceKm() > RouteService.MAX_DISTANCE_KM)
+            throw new IllegalArgumentException("Distance cannot exceed " + (int) RouteService.MAX_DISTANCE_KM + " km");
+        RouteShape.fromWireName(request.getType());  // rejects unknown route types
+        Terrain.fromWireName(request.getTerrain());  // and unknown terrain preferences
+    }
+
+    private static GeometryFormat validateGeometry(String format, double tolerance) {
+        if (!(tolerance >= 0 && tolerance <= MAX_TOLERANCE_METERS))
+            throw new IllegalArgumentException("Tolerance must be between 0 and " + (int) MAX_TOLERANCE_METERS + " meters");
+        return GeometryFormat.fromWireName(format);
     }
 
     private ResponseEntity<Map<String, Object>> buildErrorResponse(HttpStatus status, String error, String details) {
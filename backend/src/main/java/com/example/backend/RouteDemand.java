@@ -0,0 +1,139 @@
+package com.example.backend;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Request counts per route key (quantized start cell and distance bucket), for the prefetcher to pick the
+// hottest keys from. Counts are halved on every decay(), so they follow recent demand. A hit on variants the
+// prefetcher cached counts as a prefetch hit once per prefetch: without it that request would have missed.
+@Component
+public class RouteDemand implements MeterBinder {
+
+    private final Cache<RouteKey, Entry> entries;
+    private final AtomicLong prefetchHits = new AtomicLong();
+    private final AtomicLong prefetchedKeys = new AtomicLong();
+    private final AtomicLong failedPrefetches = new AtomicLong();
+
+    @Autowired
+    public RouteDemand(@Value("${routes.prefetch.tracked-keys:10000}") long trackedKeys) {
+        // W-TinyLFU keeps frequently requested keys when one-off requests overflow the bound
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(trackedKeys)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    public static RouteDemand withDefaults() {
+        return new RouteDemand(10000);
+    }
+
+    // A request on the hot path: one map lookup and a couple of atomic updates
+    public void record(RouteKey key, double lat, double lon, double distanceKm, boolean hit) {
+        Entry entry = entries.get(key, k -> new Entry(k));
+        entry.requests.incrementAndGet();
+        entry.lat = lat;
+        entry.lon = lon;
+        entry.distanceKm = distanceKm;
+        if (!hit) {
+            entry.prefetched.set(false);
+        } else if (entry.prefetched.get() && entry.prefetched.compareAndSet(true, false)) {
+            prefetchHits.incrementAndGet();
+        }
+    }
+
+    // Demand carried over from the previous instance, so its hot keys are prefetched without waiting for
+    // them to be requested again
+    public void restore(HotKey hot) {
+        Entry entry = entries.get(hot.key(), k -> new Entry(k));
+        entry.requests.addAndGet(hot.requests());
+        entry.lat = hot.lat();
+        entry.lon = hot.lon();
+        entry.distanceKm = hot.distanceKm();
+    }
+
+    // Keys with at least minRequests since the counts last decayed, most requested first
+    public List<HotKey> hottest(int limit, long minRequests) {
+        List<Entry> candidates = new ArrayList<>();
+        for (Entry entry : entries.asMap().values()) {
+            if (entry.requests.get() >= minRequests) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparingLong((Entry entry) -> entry.requests.get()).reversed());
+
+        List<HotKey> hottest = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (Entry entry : candidates.subList(0, Math.min(limit, candidates.size()))) {
+            hottest.add(new HotKey(entry.key, entry.lat, entry.lon, entry.distanceKm, entry.requests.get()));
+        }
+        return hottest;
+    }
+
+    // Halves every count and forgets keys nobody asks for any more
+    public void decay() {
+        entries.asMap().values().removeIf(entry -> entry.requests.updateAndGet(count -> count >> 1) == 0);
+    }
+
+    // The prefetcher cached variants for the key; the next hit on it is one the prefetcher earned
+    public void prefetched(RouteKey key, int variants) {
+        if (variants == 0) {
+            failedPrefetches.incrementAndGet();
+            return;
+        }
+        prefetchedKeys.incrementAndGet();
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null) {
+            entry.prefetched.set(true);
+        }
+    }
+
+    public long prefetchHits() {
+        return prefetchHits.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedKeys", entries.estimatedSize());
+        stats.put("prefetchedKeys", prefetchedKeys.get());
+        stats.put("failedPrefetches", failedPrefetches.get());
+        stats.put("prefetchHits", prefetchHits.get());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("routes.prefetch.hits", prefetchHits, AtomicLong::get)
+                .description("Requests served from variants the prefetcher cached, which would otherwise have missed")
+                .register(registry);
+        FunctionCounter.builder("routes.prefetch.keys", prefetchedKeys, AtomicLong::get)
+                .description("Keys the prefetcher filled or refreshed")
+                .register(registry);
+    }
+
+    // A key worth prefetching, with the last request's start and distance to generate it from
+    public record HotKey(RouteKey key, double lat, double lon, double distanceKm, long requests) {
+    }
+
+    private static final class Entry {
+        final RouteKey key;
+        final AtomicLong requests = new AtomicLong();
+        // Last writer wins: any request on the key is a fine template for generating it
+        volatile double lat;
+        volatile double lon;
+        volatile double distanceKm;
+        final AtomicBoolean prefetched = new AtomicBoolean();
+
+        Entry(RouteKey key) {
+            this.key = key;
+        }
+    }
+}
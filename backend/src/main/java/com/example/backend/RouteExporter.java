@@ -0,0 +1,203 @@
+package com.example.backend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Writes routes as GPX or JSON straight to an OutputStream: constant markup is pre-encoded,
+// coordinates are formatted into a reused byte buffer, nothing is built up as a String.
+public final class RouteExporter {
+
+    static final int COORDINATE_DECIMALS = 6;
+    private static final int BUFFER_SIZE = 8192;
+    private static final long[] POW10 = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+
+    private static final byte[] GPX_HEADER = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<gpx version=\"1.1\" creator=\"RouteService\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+            + "<trk><name>Generated Route</name><trkseg>\n");
+    private static final byte[] GPX_POINT_LAT = ascii("<trkpt lat=\"");
+    private static final byte[] GPX_POINT_LON = ascii("\" lon=\"");
+    private static final byte[] GPX_POINT_END = ascii("\"></trkpt>\n");
+    private static final byte[] GPX_FOOTER = ascii("</trkseg></trk>\n</gpx>");
+
+    private RouteExporter() {
+    }
+
+    public static void writeGpx(Route route, OutputStream out) throws IOException {
+        Sink sink = new Sink(out);
+        sink.write(GPX_HEADER);
+        for (int i = 0; i < route.pointCount(); i++) {
+            sink.write(GPX_POINT_LAT);
+            sink.fixed(route.lat(i), COORDINATE_DECIMALS);
+            sink.write(GPX_POINT_LON);
+            sink.fixed(route.lon(i), COORDINATE_DECIMALS);
+            sink.write(GPX_POINT_END);
+        }
+        sink.write(GPX_FOOTER);
+        sink.flush();
+    }
+
+    // Same shape as the API response: {"coordinates":[{"lat":..,"lng":..}],"distanceMeters":..,"actualDistanceKm":..,"success":true}
+    public static void writeJson(Route route, OutputStream out, boolean pretty) throws IOException {
+        writeJson(route, null, out, pretty);
+    }
+
+    // With a "token" field after actualDistanceKm when token is not null
+    public static void writeJson(Route route, String token, OutputStream out, boolean pretty) throws IOException {
+        writeJson(route, token, out, pretty, GeometryFormat.COORDINATES, false);
+    }
+
+    // As an encoded "polyline" in place of "coordinates" for POLYLINE. With mirror, an out-and-back carries only
+    // its out leg and "mirrored":true; the client appends it reversed, without repeating the turnaround.
+    public static void writeJson(Route route, String token, OutputStream out, boolean pretty, GeometryFormat format,
+                                 boolean mirror) throws IOException {
+        Sink sink = new Sink(out);
+        writeJson(route, token, sink, pretty, format, mirror);
+        sink.flush();
+    }
+
+    private static void writeJson(Route route, String token, Sink sink, boolean pretty, GeometryFormat format,
+                                  boolean mirror) throws IOException {
+        String nl = pretty ? "\n" : "";
+        String indent = pretty ? "  " : "";
+        String colon = pretty ? ": " : ":";
+        boolean mirrored = mirror && route.shape() == RouteShape.OUT_AND_BACK;
+
+        if (format == GeometryFormat.POLYLINE) {
+            sink.ascii("{" + nl + indent + "\"polyline\"" + colon);
+            sink.string(route.encodedPolyline(mirrored));
+            sink.ascii("," + nl);
+        } else {
+            sink.ascii("{" + nl + indent + "\"coordinates\"" + colon + "[" + nl);
+            byte[] pointStart = ascii(indent + indent + "{\"lat\"" + colon);
+            byte[] pointMiddle = ascii("," + (pretty ? " " : "") + "\"lng\"" + colon);
+            byte[] pointSeparator = ascii("}," + nl);
+            int count = mirrored ? route.outLegPointCount() : route.pointCount();
+            for (int i = 0; i < count; i++) {
+                if (i > 0) sink.write(pointSeparator);
+                sink.write(pointStart);
+                sink.fixed(route.lat(i), COORDINATE_DECIMALS);
+                sink.write(pointMiddle);
+                sink.fixed(route.lon(i), COORDINATE_DECIMALS);
+            }
+            if (count > 0) sink.ascii("}" + nl);
+            sink.ascii(indent + "]," + nl);
+        }
+        if (mirrored) {
+            sink.ascii(indent + "\"mirrored\"" + colon + "true," + nl);
+        }
+        sink.ascii(indent + "\"distanceMeters\"" + colon);
+        sink.fixed(route.getDistanceMeters(), 1);
+        sink.ascii("," + nl + indent + "\"actualDistanceKm\"" + colon);
+        sink.fixed(route.getActualDistanceKm(), 4);
+        if (token != null) {
+            sink.ascii("," + nl + indent + "\"token\"" + colon);
+            sink.string(token);
+        }
+        sink.ascii("," + nl + indent + "\"success\"" + colon + "true" + nl + "}");
+    }
+
+    // One NDJSON line per batch entry: {"index":..,"success":true,"route":{..}} or {"index":..,"success":false,"error":..,"details":..}
+    public static void writeBatchLine(BatchRouteService.BatchResult result, OutputStream out) throws IOException {
+        Sink sink = new Sink(out);
+        sink.ascii("{\"index\":" + result.index() + ",\"success\":" + result.isSuccess());
+        if (result.isSuccess()) {
+            sink.ascii(",\"route\":");
+            writeJson(result.route(), result.token(), sink, false, GeometryFormat.COORDINATES, false);
+        } else {
+            sink.ascii(",\"error\":");
+            sink.string(result.error());
+            sink.ascii(",\"details\":");
+            sink.string(result.details());
+        }
+        sink.ascii("}\n");
+        sink.flush();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Buffered ASCII writer; the caller owns the stream and closes it
+    private static final class Sink {
+        private final OutputStream out;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+
+        Sink(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            if (bytes.length > buf.length - pos) {
+                flushBuffer();
+                if (bytes.length > buf.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void ascii(String s) throws IOException {
+            write(RouteExporter.ascii(s));
+        }
+
+        // JSON string literal; control and non-ASCII characters are written as unicode escapes
+        void string(String s) throws IOException {
+            if (s == null) {
+                ascii("null");
+                return;
+            }
+            StringBuilder escaped = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') escaped.append('\\').append(c);
+                else if (c < 0x20 || c > 0x7e) escaped.append(String.format("\\u%04x", (int) c));
+                else escaped.append(c);
+            }
+            ascii(escaped.append('"').toString());
+        }
+
+        // Half-up fixed-point formatting, equivalent to %.Nf for the magnitudes routes use
+        void fixed(double value, int decimals) throws IOException {
+            if (!Double.isFinite(value)) {
+                throw new IllegalArgumentException("Cannot export non-finite value " + value);
+            }
+            long scale = POW10[decimals];
+            long scaled = Math.round(Math.abs(value) * scale);
+            // sign, up to 19 digits and the decimal point
+            if (buf.length - pos < 21) flushBuffer();
+
+            if (value < 0 && scaled != 0) buf[pos++] = '-';
+            pos = digits(scaled / scale, 1);
+            if (decimals > 0) {
+                buf[pos++] = '.';
+                pos = digits(scaled % scale, decimals);
+            }
+        }
+
+        // Writes n zero-padded to at least minDigits, returns the new position
+        private int digits(long n, int minDigits) {
+            int len = 1;
+            for (long t = n / 10; t > 0; t /= 10) len++;
+            len = Math.max(len, minDigits);
+            for (int i = pos + len - 1; i >= pos; i--) {
+                buf[i] = (byte) ('0' + n % 10);
+                n /= 10;
+            }
+            return pos + len;
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+    }
+}
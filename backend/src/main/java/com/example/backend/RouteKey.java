@@ -0,0 +1,21 @@
+package com.example.backend;
+
+// Quantized cache key: route shape, geohash cell of the start point, the distance rounded to a bucket and
+// the terrain the variants were picked for
+public record RouteKey(RouteShape shape, String cell, int distanceMeters, Terrain terrain) {
+
+    public RouteKey(RouteShape shape, String cell, int distanceMeters) {
+        this(shape, cell, distanceMeters, Terrain.ANY);
+    }
+
+    public RouteKey withTerrain(Terrain terrain) {
+        return new RouteKey(shape, cell, distanceMeters, terrain);
+    }
+
+    @Override
+    public String toString() {
+        String base = cell + ":" + distanceMeters;
+        if (terrain != Terrain.ANY) base = terrain.wireName() + ":" + base;
+        return shape == RouteShape.OUT_AND_BACK ? base : shape.wireName() + ":" + base;
+    }
+}
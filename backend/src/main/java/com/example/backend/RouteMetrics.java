@@ -0,0 +1,187 @@
+package com.example.backend;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Timers and counters for each stage of route generation, published under routes.* (Prometheus at
+// /actuator/prometheus). Every meter is registered up front, so the hot path only reads a clock and
+// bumps a few atomics: no tag lookups or allocations per call.
+@Component
+public class RouteMetrics {
+
+    enum Stage {
+        CACHE_LOOKUP,
+        ISOCHRONES,
+        TURNAROUND_SELECTION,
+        DIRECTIONS,
+        LOOP,
+        ROUTE_BUILD,
+        PARSE_ISOCHRONES,
+        PARSE_DIRECTIONS,
+        SERIALIZATION;
+
+        final String tag = name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    // Turnaround band that produced the candidates for an out-and-back batch
+    enum Band { STRICT, LOOSE, FALLBACK }
+
+    // Where a route request was answered from
+    enum Lookup { HIT, SHARED, STORE, MISS }
+
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> succeeded = new EnumMap<>(Stage.class);
+    private final Map<Stage, Timer> failed = new EnumMap<>(Stage.class);
+    private final Map<Band, Counter> bands = new EnumMap<>(Band.class);
+    private final Map<Lookup, Counter> lookups = new EnumMap<>(Lookup.class);
+    private final DistributionSummary isochronePayload;
+    private final DistributionSummary directionsPayload;
+    private final Map<RouteShape, DistributionSummary> distanceError = new EnumMap<>(RouteShape.class);
+    private final Counter staleServed;
+
+    public RouteMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            succeeded.put(stage, stageTimer(stage, "success"));
+            failed.put(stage, stageTimer(stage, "error"));
+        }
+        for (Band band : Band.values()) {
+            bands.put(band, Counter.builder("routes.turnaround.band")
+                    .description("Out-and-back batches by the tolerance band their turnarounds came from")
+                    .tag("band", band.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        for (Lookup lookup : Lookup.values()) {
+            lookups.put(lookup, Counter.builder("routes.cache.lookups")
+                    .description("Route requests by where they were answered from")
+                    .tag("result", lookup.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        this.isochronePayload = payloadSummary("isochrones");
+        this.directionsPayload = payloadSummary("directions");
+        for (RouteShape shape : RouteShape.values()) {
+            distanceError.put(shape, DistributionSummary.builder("routes.distance.error")
+                    .description("Generated route length off the requested distance, in percent")
+                    .baseUnit("percent")
+                    .tag("shape", shape.wireName())
+                    .serviceLevelObjectives(1, 2, 5, 10, 20, 30, 50, 100)
+                    .register(registry));
+        }
+        this.staleServed = Counter.builder("routes.stale.served")
+                .description("Expired variants served while the provider was throttling or down")
+                .register(registry);
+    }
+
+    // Meters go nowhere: for code paths built without Spring
+    public static RouteMetrics disabled() {
+        return new RouteMetrics(new CompositeMeterRegistry());
+    }
+
+    MeterRegistry registry() {
+        return registry;
+    }
+
+    long start() {
+        return registry.config().clock().monotonicTime();
+    }
+
+    void stop(Stage stage, long start, boolean success) {
+        (success ? succeeded : failed).get(stage)
+                .record(registry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Time measured by the caller, e.g. spread over the chunks of a streamed response
+    void record(Stage stage, long nanos) {
+        succeeded.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    <T> T time(Stage stage, Supplier<T> work) {
+        long start = start();
+        boolean success = false;
+        try {
+            T result = work.get();
+            success = true;
+            return result;
+        } finally {
+            stop(stage, start, success);
+        }
+    }
+
+    // Returns the call's own future, so cancelling it still reaches the provider
+    <T> CompletableFuture<T> timeAsync(Stage stage, Supplier<CompletableFuture<T>> call) {
+        long start = start();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            stop(stage, start, false);
+            throw e;
+        }
+        future.whenComplete((result, error) -> stop(stage, start, error == null));
+        return future;
+    }
+
+    void band(Band band) {
+        bands.get(band).increment();
+    }
+
+    void lookup(Lookup lookup) {
+        lookups.get(lookup).increment();
+    }
+
+    void staleServed() {
+        staleServed.increment();
+    }
+
+    // Read from the tier when scraped: its failed calls, and whether it is in use or sitting out an outage
+    void sharedTier(SharedCacheTier shared) {
+        FunctionCounter.builder("routes.shared.errors", shared, SharedCacheTier::errorCount)
+                .description("Failed shared route cache calls; each one switches the tier off for retry-seconds")
+                .register(registry);
+        Gauge.builder("routes.shared.available", shared, tier -> tier.isAvailable() ? 1 : 0)
+                .description("1 while the shared route cache is in use, 0 during an outage")
+                .register(registry);
+    }
+
+    void isochronePayload(long bytes) {
+        isochronePayload.record(bytes);
+    }
+
+    void directionsPayload(long bytes) {
+        directionsPayload.record(bytes);
+    }
+
+    void distanceError(RouteShape shape, double requestedKm, Route route) {
+        if (requestedKm <= 0) return;
+        distanceError.get(shape).record(Math.abs(route.getActualDistanceKm() - requestedKm) / requestedKm * 100);
+    }
+
+    private Timer stageTimer(Stage stage, String outcome) {
+        return Timer.builder("routes.stage")
+                .description("Time spent in each stage of route generation")
+                .tag("stage", stage.tag)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private DistributionSummary payloadSummary(String endpoint) {
+        return DistributionSummary.builder("routes.upstream.payload")
+                .description("Size of routing provider responses")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .register(registry);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.backend;
+
+// A route token that can no longer be resolved: the route has left the cache and the store, and cannot be rebuilt
+public class RouteNotFoundException extends RuntimeException {
+
+    public RouteNotFoundException(String message) {
+        super(message);
+    }
+}
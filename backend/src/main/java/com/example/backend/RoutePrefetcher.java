@@ -0,0 +1,124 @@
+package com.example.backend;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+// Keeps the hottest route keys cached: every interval it fills keys that have no variants and refreshes
+// those about to expire, so their next request is a hit. It only goes upstream while the scheduler has
+// spare capacity, at prefetch priority, with at most max-concurrency keys in flight and keys-per-minute
+// keys started. A key is attempted at most once per refresh-ahead window, whether or not it worked.
+@Component
+public class RoutePrefetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(RoutePrefetcher.class);
+
+    private final RouteService routeService;
+    private final RouteDemand demand;
+    private final UpstreamScheduler upstream;
+    private final int hotKeys;
+    private final long minRequests;
+    private final Semaphore permits;
+    private final double keysPerNano;
+    private final double maxBudget;
+    private final long refreshAheadNanos;
+    private final long halfLifeNanos;
+    private final ScheduledExecutorService timer;
+
+    // Last attempt per key, so a key the provider cannot route is not retried every cycle
+    private final Map<RouteKey, Long> attempted = new ConcurrentHashMap<>();
+    private double budget;
+    private long budgetAt = System.nanoTime();
+    private long decayedAt = budgetAt;
+
+    @Autowired
+    public RoutePrefetcher(RouteService routeService, RouteDemand demand, UpstreamScheduler upstream,
+                           @Value("${routes.prefetch.enabled:true}") boolean enabled,
+                           @Value("${routes.prefetch.interval-seconds:30}") long intervalSeconds,
+                           @Value("${routes.prefetch.hot-keys:50}") int hotKeys,
+                           @Value("${routes.prefetch.min-requests:3}") long minRequests,
+                           @Value("${routes.prefetch.max-concurrency:2}") int maxConcurrency,
+                           @Value("${routes.prefetch.keys-per-minute:4}") double keysPerMinute,
+                           @Value("${routes.prefetch.refresh-ahead-minutes:30}") long refreshAheadMinutes,
+                           @Value("${routes.prefetch.half-life-minutes:60}") long halfLifeMinutes) {
+        this.routeService = routeService;
+        this.demand = demand;
+        this.upstream = upstream;
+        this.hotKeys = hotKeys;
+        this.minRequests = Math.max(1, minRequests);
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.keysPerNano = keysPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.maxBudget = Math.max(1, keysPerMinute);
+        this.budget = maxBudget;
+        this.refreshAheadNanos = TimeUnit.MINUTES.toNanos(refreshAheadMinutes);
+        this.halfLifeNanos = TimeUnit.MINUTES.toNanos(halfLifeMinutes);
+        this.timer = enabled && intervalSeconds > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "route-prefetcher");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        if (timer != null) {
+            timer.scheduleWithFixedDelay(this::runSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            // A failed cycle must not cancel the schedule
+            log.warn("Route prefetch failed", e);
+        }
+    }
+
+    // One cycle; returns the number of keys it started prefetching
+    synchronized int runOnce() {
+        long now = System.nanoTime();
+        if (halfLifeNanos > 0) {
+            for (; now - decayedAt >= halfLifeNanos; decayedAt += halfLifeNanos) {
+                demand.decay();
+            }
+        }
+        budget = Math.min(maxBudget, budget + (now - budgetAt) * keysPerNano);
+        budgetAt = now;
+        attempted.values().removeIf(at -> now - at >= refreshAheadNanos);
+
+        int started = 0;
+        for (RouteDemand.HotKey hot : demand.hottest(hotKeys, minRequests)) {
+            if (budget < 1 || !upstream.hasSpareCapacity()) break;
+            RouteKey key = hot.key();
+            if (!needsPrefetch(key) || attempted.containsKey(key)) continue;
+            if (!permits.tryAcquire()) break;
+
+            budget -= 1;
+            attempted.put(key, now);
+            started++;
+            routeService.prefetchAsync(key, hot.lat(), hot.lon(), hot.distanceKm(), ThreadLocalRandom.current().nextLong())
+                    .whenComplete((variants, error) -> {
+                        permits.release();
+                        demand.prefetched(key, variants == null ? 0 : variants);
+                    });
+        }
+        return started;
+    }
+
+    // Missing, or expiring before the next cycles could refresh it
+    private boolean needsPrefetch(RouteKey key) {
+        return routeService.cachedVariantCount(key) == 0
+                || routeService.cacheTimeToLive(key).compareTo(Duration.ofNanos(refreshAheadNanos)) < 0;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+}
@@ -8,6 +8,8 @@ public class RouteRequest {
     private double lon;
     private double distanceKm;
     private Long seed;  // Use Long (object) so it can be nullable
+    private String type;  // "out-and-back" (default) or "loop"
+    private String terrain;  // "any" (default), "flat" or "hilly"
 
     public double getLat() { return lat; }
     public void setLat(double lat) { this.lat = lat; }
@@ -20,4 +22,14 @@ public class RouteRequest {
 
     public Long getSeed() { return seed; }
     public void setSeed(Long seed) { this.seed = seed; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getTerrain() { return terrain; }
+    public void setTerrain(String terrain) { this.terrain = terrain; }
+
+    public RouteShape getShape() { return RouteShape.fromWireName(type); }
+
+    public Terrain getTerrainPreference() { return Terrain.fromWireName(terrain); }
 }
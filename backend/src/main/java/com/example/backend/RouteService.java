@@ -1,274 +1,633 @@
 package com.example.backend;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 @Service
 public class RouteService {
 
-    private static final String API_KEY = "eyJvcmciOiI1YjNjZTM1OTc4NTExMTAwMDFjZjYyNDgiLCJpZCI6IjRhYjMyZDNlZjhlYjRhNTFiMDM1MjEyZjFlMTVlMTdkIiwiaCI6Im11cm11cjY0In0=";
-    private static final String ISOCHRONES_URL = "https://api.openrouteservice.org/v2/isochrones/foot-walking";
-    private static final String DIRECTIONS_URL = "https://api.openrouteservice.org/v2/directions/foot-walking/geojson";
+    private static final Logger log = LoggerFactory.getLogger(RouteService.class);
     private static final double MIN_TURNAROUND_DISTANCE_KM = 0.3;
+    static final double STRICT_TOLERANCE = 0.05;
+    static final double LOOSE_TOLERANCE = 0.30;
+
+    static final int MAX_VARIANTS = 6;
+    static final double MAX_DISTANCE_KM = 50;
+    // How far a route's first vertex may be from the requested start: the embedded engine's snap radius
+    static final double MAX_SNAP_KM = 0.5;
+    // With a terrain preference, this many directional picks per band are scored for the MAX_VARIANTS kept
+    static final int TERRAIN_CANDIDATE_ROUNDS = 4;
+    // and at most this many of the kept ones come from one direction sector
+    static final int TERRAIN_PICKS_PER_SECTOR = 2;
+    private static final double TERRAIN_SAMPLE_SPACING_M = 60;
+
+    // Single-flight: concurrent misses on the same key share one computation
+    private final Map<RouteKey, CompletableFuture<Route>> inFlight = new ConcurrentHashMap<>();
+
+    private final RoutingEngine routingEngine;
+    private final RouteCache routeCache;
+    private final IsochroneCache isochroneCache;
+    private final LoopRouteGenerator loopGenerator;
+    private final RouteStore routeStore;
+    private final RouteMetrics metrics;
+    private final RouteDemand demand;
+    private final ElevationModel elevation;
+    private final SharedCacheTier shared;
+
+    public RouteService() {
+        this(OrsClient.createDefault());
+    }
 
-    private final Map<String, List<Map<String, Object>>> routeCache = new ConcurrentHashMap<>();
-    private final Map<String, Integer> routeIndex = new ConcurrentHashMap<>();
+    public RouteService(RoutingEngine routingEngine) {
+        this(routingEngine, RouteCache.withDefaults(), IsochroneCache.withDefaults(),
+                LoopRouteGenerator.withDefaults(routingEngine), RouteStore.disabled(), RouteMetrics.disabled(),
+                RouteDemand.withDefaults(), ElevationModel.disabled());
+    }
 
-    public synchronized Map<String, Object> generateBackAndForthRoute(double lat, double lon, double distanceKm, long seed) {
-        String key = lat + "," + lon + "," + distanceKm;
+    public RouteService(RoutingEngine routingEngine, RouteCache routeCache, IsochroneCache isochroneCache,
+                        LoopRouteGenerator loopGenerator, RouteStore routeStore, RouteMetrics metrics,
+                        RouteDemand demand, ElevationModel elevation) {
+        this(routingEngine, routeCache, isochroneCache, loopGenerator, routeStore, metrics, demand, elevation,
+                SharedCacheTier.disabled());
+    }
 
-        if (routeCache.containsKey(key) && routeCache.get(key).size() >= 6) {
-            int idx = routeIndex.getOrDefault(key, 0);
-            Map<String, Object> route = routeCache.get(key).get(idx);
-            routeIndex.put(key, (idx + 1) % 6);
-            return route;
+    @Autowired
+    public RouteService(RoutingEngine routingEngine, RouteCache routeCache, IsochroneCache isochroneCache,
+                        LoopRouteGenerator loopGenerator, RouteStore routeStore, RouteMetrics metrics,
+                        RouteDemand demand, ElevationModel elevation, SharedCacheTier shared) {
+        this.routingEngine = routingEngine;
+        this.routeCache = routeCache;
+        this.isochroneCache = isochroneCache;
+        this.loopGenerator = loopGenerator;
+        this.routeStore = routeStore;
+        this.metrics = metrics;
+        this.demand = demand;
+        this.elevation = elevation;
+        this.shared = shared;
+        if (shared.isEnabled()) {
+            metrics.sharedTier(shared);
         }
+    }
 
-        Map<String, Object> newRoute = createBackAndForth(lat, lon, distanceKm, seed);
+    public Route generateRoute(RouteShape shape, double lat, double lon, double distanceKm, long seed) {
+        return await(generateRouteAsync(shape, lat, lon, distanceKm, seed));
+    }
 
-        routeCache.computeIfAbsent(key, k -> new ArrayList<>()).add(newRoute);
-        routeIndex.putIfAbsent(key, 0);
+    public CompletableFuture<Route> generateRouteAsync(RouteShape shape, double lat, double lon, double distanceKm, long seed) {
+        return generateRouteAsync(shape, Terrain.ANY, lat, lon, distanceKm, seed);
+    }
 
-        return newRoute;
+    public Route generateRoute(RouteShape shape, Terrain terrain, double lat, double lon, double distanceKm, long seed) {
+        return await(generateRouteAsync(shape, terrain, lat, lon, distanceKm, seed));
     }
 
-    private Map<String, Object> createBackAndForth(double lat, double lon, double distanceKm, long seed) {
-        Random random = new Random(seed);
-        double targetLegKm = distanceKm / 2.0;
+    public CompletableFuture<Route> generateRouteAsync(RouteShape shape, Terrain terrain, double lat, double lon,
+                                                       double distanceKm, long seed) {
+        return switch (shape) {
+            case OUT_AND_BACK -> generateBackAndForthRouteAsync(terrain, lat, lon, distanceKm, seed);
+            case LOOP -> generateLoopRouteAsync(lat, lon, distanceKm, seed);
+        };
+    }
 
-        // Step 1: Get reachable area
-        Set<double[]> reachablePoints = getIsochrones(lat, lon, targetLegKm);
+    public Route generateBackAndForthRoute(double lat, double lon, double distanceKm, long seed) {
+        return await(generateBackAndForthRouteAsync(lat, lon, distanceKm, seed));
+    }
 
-        if (reachablePoints.isEmpty()) {
-            throw new RuntimeException("No reachable points from Isochrones API");
+    public CompletableFuture<Route> generateBackAndForthRouteAsync(double lat, double lon, double distanceKm, long seed) {
+        return generateCachedAsync(keyFor(lat, lon, distanceKm), lat, lon, distanceKm,
+                () -> createVariantBatchAsync(lat, lon, distanceKm, seed));
+    }
+
+    // Variants for a terrain preference are picked and cached apart from the unscored ones
+    public CompletableFuture<Route> generateBackAndForthRouteAsync(Terrain terrain, double lat, double lon,
+                                                                   double distanceKm, long seed) {
+        RouteKey key = keyFor(RouteShape.OUT_AND_BACK, terrain, lat, lon, distanceKm);
+        if (key.terrain() == Terrain.ANY) {
+            return generateBackAndForthRouteAsync(lat, lon, distanceKm, seed);
         }
+        return generateCachedAsync(key, lat, lon, distanceKm,
+                () -> createVariantBatchAsync(lat, lon, distanceKm, seed, key.terrain()));
+    }
 
-        // Step 2: Try strict match (±5%)
-        List<double[]> candidates = filterTurnaroundCandidates(reachablePoints, lat, lon, targetLegKm, 0.05);
+    public CompletableFuture<Route> generateLoopRouteAsync(double lat, double lon, double distanceKm, long seed) {
+        return generateCachedAsync(keyFor(RouteShape.LOOP, lat, lon, distanceKm), lat, lon, distanceKm,
+                () -> createLoopBatchAsync(lat, lon, distanceKm, seed));
+    }
 
-        // Step 3: Looser match (±30%)
-        if (candidates.isEmpty()) {
-            candidates = filterTurnaroundCandidates(reachablePoints, lat, lon, targetLegKm, 0.30);
+    // Completes immediately on a cache hit; concurrent misses on the same key share one future, and with a
+    // shared tier so do concurrent misses on other replicas. Lookup order: L1, shared L2, store, provider.
+    private CompletableFuture<Route> generateCachedAsync(RouteKey key, double lat, double lon, double distanceKm,
+                                                         Supplier<CompletableFuture<List<CompletableFuture<Route>>>> batch) {
+        long lookupStart = metrics.start();
+        Route cached = rotated(key, routeCache.nextVariant(key));
+        metrics.stop(RouteMetrics.Stage.CACHE_LOOKUP, lookupStart, true);
+        // Only background prefetches leave the interactive path untracked
+        if (UpstreamPriority.current() != UpstreamPriority.PREFETCH) {
+            demand.record(key, lat, lon, distanceKm, cached != null);
+        }
+        if (cached != null) {
+            metrics.lookup(RouteMetrics.Lookup.HIT);
+            return CompletableFuture.completedFuture(cached);
         }
 
-        // Step 4: Fallback — pick farthest point
-        if (candidates.isEmpty()) {
-            candidates = new ArrayList<>(reachablePoints);
-            candidates.sort((a, b) -> Double.compare(
-                haversine(lat, lon, b[0], b[1]),
-                haversine(lat, lon, a[0], a[1])
-            ));
-            candidates = Collections.singletonList(candidates.get(0));
-            System.out.println("⚠️ Using farthest reachable point as fallback");
+        CompletableFuture<Route> pending = new CompletableFuture<>();
+        CompletableFuture<Route> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            metrics.lookup(RouteMetrics.Lookup.MISS);
+            return existing;
         }
 
-        // Step 5: Add directional variety
-        double[] turnaround = pickDirectionalCandidate(candidates, lat, lon, random);
+        pending.whenComplete((route, error) -> inFlight.remove(key, pending));
+        // Another replica generated the key
+        List<Route> sharedVariants = shared.variants(key);
+        if (!sharedVariants.isEmpty()) {
+            metrics.lookup(RouteMetrics.Lookup.SHARED);
+            pending.complete(adoptShared(key, sharedVariants));
+            return pending;
+        }
+        // The batch may start on a store reader thread, which does not carry the caller's priority
+        UpstreamPriority priority = UpstreamPriority.current();
+        // Variants persisted before a restart are served before anything goes upstream
+        routeStore.loadAsync(key).whenComplete((stored, storeError) -> {
+            if (storeError != null || stored.isEmpty()) {
+                metrics.lookup(RouteMetrics.Lookup.MISS);
+                generateOnce(key, priority, batch, pending);
+                return;
+            }
+            metrics.lookup(RouteMetrics.Lookup.STORE);
+            for (Route route : stored) {
+                if (routeCache.addVariant(key, route)) {
+                    pending.complete(route);
+                }
+            }
+            pending.complete(stored.get(0));
+        });
+        return pending;
+    }
 
-        // Step 6: Get out-and-back route
-        List<double[]> outRoute = getDirections(lat, lon, turnaround[0], turnaround[1]);
-        List<double[]> backRoute = new ArrayList<>(outRoute);
-        Collections.reverse(backRoute);
+    // With the shared tier up, the variant at the cluster-wide rotation position replaces the local pick
+    private Route rotated(RouteKey key, Route local) {
+        if (local == null || !shared.isAvailable()) return local;
+        long position = shared.nextRotation(key);
+        Route global = position < 0 ? null : routeCache.variantAt(key, position);
+        return global != null ? global : local;
+    }
 
-        List<double[]> fullRoute = new ArrayList<>(outRoute);
-        fullRoute.addAll(backRoute.subList(1, backRoute.size()));
+    // Variants read from L2 become this replica's L1 set; the request gets the next one in the shared rotation
+    private Route adoptShared(RouteKey key, List<Route> variants) {
+        routeCache.replaceVariants(key, variants);
+        Route next = rotated(key, routeCache.nextVariant(key));
+        return next != null ? next : variants.get(0);
+    }
 
-        double totalDistanceMeters = calculateTotalDistance(fullRoute);
+    // Cross-node single-flight: the replica holding the key's lock generates it and shares each variant as it
+    // arrives; the others wait for the first one in L2. If the generating replica gives up or dies, a waiter
+    // generates after all once the lock is gone.
+    private void generateOnce(RouteKey key, UpstreamPriority priority,
+                              Supplier<CompletableFuture<List<CompletableFuture<Route>>>> batch,
+                              CompletableFuture<Route> pending) {
+        if (shared.tryLock(key)) {
+            generateVariants(key, startBatch(priority, batch), pending, () -> shared.unlock(key));
+            return;
+        }
+        shared.awaitVariants(key).whenComplete((variants, error) -> {
+            if (error == null && !variants.isEmpty()) {
+                metrics.lookup(RouteMetrics.Lookup.SHARED);
+                pending.complete(adoptShared(key, variants));
+                return;
+            }
+            generateVariants(key, startBatch(priority, batch), pending, () -> { });
+        });
+    }
 
-        Map<String, Object> routeData = new HashMap<>();
-        routeData.put("coordinates", toCoordinateMap(fullRoute));
-        routeData.put("distanceMeters", totalDistanceMeters);
-        routeData.put("actualDistanceKm", totalDistanceMeters / 1000.0);
-        routeData.put("success", true);
-        return routeData;
+    // An engine may throw before it returns a future; that becomes a failed batch, so the waiting request and
+    // the in-flight entry are completed like for any other failure rather than lost in a store callback
+    private static CompletableFuture<List<CompletableFuture<Route>>> startBatch(UpstreamPriority priority,
+            Supplier<CompletableFuture<List<CompletableFuture<Route>>>> batch) {
+        try {
+            return priority.run(batch);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
-       
-    public String exportRouteAsJSON(Map<String, Object> route) {
-        return new JSONObject(route).toString(2);
+    public Route findRoute(RouteToken token) {
+        return await(findRouteAsync(token));
     }
 
-    //Exports route as gpx
-    public String exportRouteAsGPX(Map<String, Object> route) {
-        @SuppressWarnings("unchecked")
-        List<Map<String, Double>> coords = (List<Map<String, Double>>) route.get("coordinates");
-
-        StringBuilder gpx = new StringBuilder();
-        gpx.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        gpx.append("<gpx version=\"1.1\" creator=\"RouteService\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n");
-        gpx.append("<trk><name>Generated Route</name><trkseg>\n");
-
-        for (Map<String, Double> point : coords) {
-            gpx.append(String.format(Locale.US,
-                    "<trkpt lat=\"%.6f\" lon=\"%.6f\"></trkpt>\n",
-                    point.get("lat"), point.get("lng")));
+    // The exact route a token was issued for, without advancing the key's rotation: from the cache, else the
+    // store, else (out-and-back only) rebuilt with one directions call from its start to its turnaround.
+    // A rebuilt route is kept for the token alone, never added to the key's rotation, since the token that
+    // asked for it may have been crafted.
+    public CompletableFuture<Route> findRouteAsync(RouteToken token) {
+        Route cached = routeCache.findVariant(token);
+        if (cached != null) {
+            metrics.lookup(RouteMetrics.Lookup.HIT);
+            return CompletableFuture.completedFuture(cached);
         }
-
-        gpx.append("</trkseg></trk>\n</gpx>");
-        return gpx.toString();
+        RouteKey key = token.key();
+        for (Route route : shared.variants(key)) {
+            if (token.matches(route)) {
+                metrics.lookup(RouteMetrics.Lookup.SHARED);
+                return CompletableFuture.completedFuture(route);
+            }
+        }
+        return routeStore.loadAsync(key).exceptionally(error -> List.of()).thenCompose(stored -> {
+            for (Route route : stored) {
+                if (token.matches(route)) {
+                    metrics.lookup(RouteMetrics.Lookup.STORE);
+                    return CompletableFuture.completedFuture(route);
+                }
+            }
+            metrics.lookup(RouteMetrics.Lookup.MISS);
+            // Only a miss costs anything, so the limits guard the rebuild rather than the lookups
+            if (!isWithinLimits(token)) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("Route token is out of range"));
+            }
+            if (!token.isRebuildable()) {
+                return CompletableFuture.failedFuture(
+                        new RouteNotFoundException("Route " + token + " has expired; generate a new one"));
+            }
+            return metrics.timeAsync(RouteMetrics.Stage.DIRECTIONS, () -> getDirectionsAsync(token.startLatitude(),
+                            token.startLongitude(), token.turnaroundLatitude(), token.turnaroundLongitude()))
+                    .thenApply(outRoute -> {
+                        Route route = buildBackAndForthRoute(outRoute, key.distanceMeters() / 1000.0);
+                        // Kept, so the download that usually follows a view does not rebuild it again
+                        routeCache.keepRebuilt(token, route);
+                        return route;
+                    });
+        });
     }
 
-    private double[] pickDirectionalCandidate(List<double[]> candidates, double lat, double lon, Random random) {
-        // Split into sectors (N, NE, E, SE, S, SW, W, NW)
-        Map<Integer, List<double[]>> sectors = new HashMap<>();
-        for (double[] p : candidates) {
-            double angle = Math.atan2(p[1] - lon, p[0] - lat);
-            int sector = (int) Math.round(((angle + Math.PI) / (2 * Math.PI)) * 8) % 8;
-            sectors.computeIfAbsent(sector, k -> new ArrayList<>()).add(p);
+    // What this service could have issued: a distance within the request limits and, for a rebuildable
+    // token, a start within snapping distance of the key's cell and a turnaround no farther in a straight
+    // line than the loose band allows. The token's start is the route's first vertex, where the provider
+    // snapped the requested start onto a path, so it may lie outside the cell the request was keyed on.
+    // The straight line is never longer than the band distance, so it bounds only the top.
+    boolean isWithinLimits(RouteToken token) {
+        RouteKey key = token.key();
+        double distanceKm = key.distanceMeters() / 1000.0;
+        if (!(distanceKm > 0 && distanceKm <= MAX_DISTANCE_KM)) return false;
+        if (!token.isRebuildable()) return true;
+        double startLat = token.startLatitude(), startLon = token.startLongitude();
+        if (Math.abs(startLat) > 90 || Math.abs(startLon) > 180
+                || Math.abs(token.turnaroundLatitude()) > 90 || Math.abs(token.turnaroundLongitude()) > 180) {
+            return false;
         }
+        // The cell's centre stands in for the requested start: same precision, distance bucket and terrain
+        double[] cell = GeoCell.bounds(key.cell());
+        double centerLat = (cell[0] + cell[2]) / 2, centerLon = (cell[1] + cell[3]) / 2;
+        if (!keyFor(key.shape(), key.terrain(), centerLat, centerLon, distanceKm).equals(key)) return false;
+        double nearestLat = Math.max(cell[0], Math.min(cell[2], startLat));
+        double nearestLon = Math.max(cell[1], Math.min(cell[3], startLon));
+        if (GeoDistance.haversineKm(startLat, startLon, nearestLat, nearestLon) > MAX_SNAP_KM) return false;
+        double legKm = GeoDistance.haversineKm(startLat, startLon, token.turnaroundLatitude(), token.turnaroundLongitude());
+        return legKm <= distanceKm / 2 * (1 + LOOSE_TOLERANCE);
+    }
 
-        List<Integer> availableSectors = new ArrayList<>(sectors.keySet());
-        int chosenSector = availableSectors.get(random.nextInt(availableSectors.size()));
+    public RouteToken tokenFor(RouteShape shape, double lat, double lon, double distanceKm, Route route) {
+        return RouteToken.of(keyFor(shape, lat, lon, distanceKm), route);
+    }
 
-        List<double[]> sectorCandidates = sectors.get(chosenSector);
-        return sectorCandidates.get(random.nextInt(sectorCandidates.size()));
+    public RouteToken tokenFor(RouteShape shape, Terrain terrain, double lat, double lon, double distanceKm, Route route) {
+        return RouteToken.of(keyFor(shape, terrain, lat, lon, distanceKm), route);
     }
 
-    private List<double[]> filterTurnaroundCandidates(Set<double[]> points, double lat, double lon, double targetLegKm, double tolerance) {
-        double minDist = targetLegKm * (1 - tolerance);
-        double maxDist = targetLegKm * (1 + tolerance);
+    public RouteKey keyFor(double lat, double lon, double distanceKm) {
+        return routeCache.keyFor(lat, lon, distanceKm);
+    }
 
-        List<double[]> candidates = new ArrayList<>();
-        for (double[] p : points) {
-            double dist = haversine(lat, lon, p[0], p[1]);
-            if (dist >= MIN_TURNAROUND_DISTANCE_KM && dist >= minDist && dist <= maxDist) {
-                candidates.add(p);
-            }
-        }
-        return candidates;
+    public RouteKey keyFor(RouteShape shape, double lat, double lon, double distanceKm) {
+        return routeCache.keyFor(shape, lat, lon, distanceKm);
     }
 
-    private Set<double[]> getIsochrones(double lat, double lon, double maxDistanceKm) {
-        try {
-            JSONObject body = new JSONObject();
-            JSONArray locations = new JSONArray();
-            locations.put(new JSONArray().put(lon).put(lat));
-            body.put("locations", locations);
-
-            // Boost range to 1.6x half-distance
-            double rangeMeters = maxDistanceKm * 1000 * 1.6;
-            body.put("range", new JSONArray().put((int) rangeMeters));
-            body.put("range_type", "distance");
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(ISOCHRONES_URL))
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", API_KEY)
-                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
-                    .build();
-
-            HttpClient client = HttpClient.newHttpClient();
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() != 200) {
-                throw new RuntimeException("Isochrones API error: " + response.body());
+    // The preference only splits the key when it can change the variants: out-and-back, with elevation tiles
+    public RouteKey keyFor(RouteShape shape, Terrain terrain, double lat, double lon, double distanceKm) {
+        RouteKey key = routeCache.keyFor(shape, lat, lon, distanceKm);
+        return terrain == Terrain.ANY || shape != RouteShape.OUT_AND_BACK || !elevation.isEnabled()
+                ? key : key.withTerrain(terrain);
+    }
+
+    // Fills the whole rotation set from one batch and completes firstVariant as soon as any variant is ready.
+    // finished runs once every variant has been handled (after firstVariant when the batch itself fails).
+    private void generateVariants(RouteKey key, CompletableFuture<List<CompletableFuture<Route>>> variantBatch,
+                                  CompletableFuture<Route> firstVariant, Runnable finished) {
+        variantBatch.whenComplete((batch, batchError) -> {
+            if (batchError != null) {
+                failOrServeStale(key, firstVariant, unwrap(batchError));
+                finished.run();
+                return;
+            }
+            if (batch.isEmpty()) {
+                failOrServeStale(key, firstVariant, new RuntimeException("No route variants could be generated"));
+                finished.run();
+                return;
             }
 
-            JSONObject json = new JSONObject(response.body());
-            Set<double[]> points = new HashSet<>();
-
-            JSONArray features = json.getJSONArray("features");
-            for (int i = 0; i < features.length(); i++) {
-                JSONObject geometry = features.getJSONObject(i).getJSONObject("geometry");
-                JSONArray coordinates = geometry.getJSONArray("coordinates");
-                for (int j = 0; j < coordinates.length(); j++) {
-                    JSONArray polygon = coordinates.getJSONArray(j);
-                    for (int k = 0; k < polygon.length(); k++) {
-                        JSONArray coord = polygon.getJSONArray(k);
-                        points.add(new double[]{coord.getDouble(1), coord.getDouble(0)});
+            AtomicInteger remaining = new AtomicInteger(batch.size());
+            // Report the failure that mattered, not the cancellations it caused
+            AtomicReference<RuntimeException> firstError = new AtomicReference<>();
+            for (CompletableFuture<Route> variant : batch) {
+                variant.whenComplete((route, error) -> {
+                    if (error == null) {
+                        routeStore.save(key, route);
+                        shared.addVariant(key, route);
+                        routeCache.addVariant(key, route);
+                        // Normally the variant that became the key's first; if variants from another batch (a
+                        // prefetch, or one still finishing after a reset) got there first, still this request's
+                        firstVariant.complete(route);
                     }
-                }
+                    if (error != null && !(unwrap(error) instanceof CancellationException)) {
+                        firstError.compareAndSet(null, unwrap(error));
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        if (!firstVariant.isDone()) {
+                            failOrServeStale(key, firstVariant, firstError.get() != null ? firstError.get()
+                                    : new RuntimeException("No route variants could be generated"));
+                        }
+                        finished.run();
+                    }
+                });
             }
+        });
+    }
 
-            return points;
+    // While the provider is throttling us or down, an expired variant is better than an error.
+    // It is not put back in the cache, so the next request still tries the provider first.
+    private void failOrServeStale(RouteKey key, CompletableFuture<Route> firstVariant, RuntimeException error) {
+        Route stale = error instanceof UpstreamException upstream && upstream.isTransient()
+                ? routeCache.staleVariant(key) : null;
+        if (stale == null) {
+            firstVariant.completeExceptionally(error);
+            return;
+        }
+        metrics.staleServed();
+        log.debug("Serving stale route for {}: {}", key, error.getMessage());
+        firstVariant.complete(stale);
+    }
+
+    static RuntimeException unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RuntimeException e ? e : new RuntimeException(cause);
+    }
 
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException("Isochrones request failed: " + e.getMessage(), e);
+    int cachedVariantCount(double lat, double lon, double distanceKm) {
+        return routeCache.variantCount(keyFor(lat, lon, distanceKm));
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    public int cachedVariantCount(RouteKey key) {
+        return routeCache.variantCount(key);
+    }
+
+    public Duration cacheTimeToLive(RouteKey key) {
+        return routeCache.timeToLive(key);
+    }
+
+    // Generates a full rotation set for key at prefetch priority and swaps it in whole, replacing whatever
+    // is cached, so readers never see a half-refreshed set. Completes with the number of variants cached;
+    // zero when the provider failed or a request for the key, here or on another replica, is generating it.
+    public CompletableFuture<Integer> prefetchAsync(RouteKey key, double lat, double lon, double distanceKm, long seed) {
+        if (inFlight.containsKey(key) || !shared.tryLock(key)) {
+            return CompletableFuture.completedFuture(0);
+        }
+        CompletableFuture<List<CompletableFuture<Route>>> batch = UpstreamPriority.PREFETCH.run(() -> switch (key.shape()) {
+            case OUT_AND_BACK -> createVariantBatchAsync(lat, lon, distanceKm, seed, key.terrain());
+            case LOOP -> createLoopBatchAsync(lat, lon, distanceKm, seed);
+        });
+        return batch.thenCompose(variants -> CompletableFuture
+                        .allOf(variants.stream().map(variant -> variant.handle((route, error) -> route))
+                                .toArray(CompletableFuture[]::new))
+                        .thenApply(done -> {
+                            List<Route> routes = new ArrayList<>(variants.size());
+                            for (CompletableFuture<Route> variant : variants) {
+                                Route route = variant.isCompletedExceptionally() ? null : variant.join();
+                                if (route != null) routes.add(route);
+                            }
+                            if (!routes.isEmpty()) {
+                                routeCache.replaceVariants(key, routes);
+                                routes.forEach(route -> routeStore.save(key, route));
+                                shared.replaceVariants(key, routes);
+                            }
+                            return routes.size();
+                        }))
+                .exceptionally(error -> 0)
+                .whenComplete((count, error) -> shared.unlock(key));
+    }
+
+    // Fills L1 for key from the shared tier or the store, never from the provider. Completes with the number
+    // of variants restored; zero when the key is already cached or nothing is kept for it.
+    public CompletableFuture<Integer> restoreAsync(RouteKey key) {
+        if (routeCache.variantCount(key) > 0) {
+            return CompletableFuture.completedFuture(0);
         }
+        List<Route> sharedVariants = shared.variants(key);
+        if (!sharedVariants.isEmpty()) {
+            routeCache.replaceVariants(key, sharedVariants);
+            return CompletableFuture.completedFuture(sharedVariants.size());
+        }
+        return routeStore.loadAsync(key).thenApply(stored -> {
+            routeCache.replaceVariants(key, stored);
+            return stored.size();
+        }).exceptionally(error -> 0);
+    }
+
+    public Map<String, Object> cacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(routeCache.stats());
+        stats.put("isochrones", isochroneCache.stats());
+        stats.put("store", routeStore.stats());
+        stats.put("prefetch", demand.stats());
+        stats.put("shared", shared.stats());
+        return stats;
     }
 
-    private List<double[]> getDirections(double startLat, double startLon, double endLat, double endLon) {
+    private static <T> T await(CompletableFuture<T> future) {
         try {
-            String body = String.format(Locale.US,
-                    "{\"coordinates\":[[%f,%f],[%f,%f]]}",
-                    startLon, startLat, endLon, endLat);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(DIRECTIONS_URL))
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", API_KEY)
-                    .POST(HttpRequest.BodyPublishers.ofString(body))
-                    .build();
-
-            HttpClient client = HttpClient.newHttpClient();
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() != 200) {
-                throw new RuntimeException("Directions API error: " + response.body());
-            }
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
 
-            JSONObject json = new JSONObject(response.body());
-            JSONArray coords = json.getJSONArray("features")
-                    .getJSONObject(0)
-                    .getJSONObject("geometry")
-                    .getJSONArray("coordinates");
+    CompletableFuture<List<CompletableFuture<Route>>> createVariantBatchAsync(
+            double lat, double lon, double distanceKm, long seed) {
+        return createVariantBatchAsync(lat, lon, distanceKm, seed, Terrain.ANY);
+    }
 
-            List<double[]> points = new ArrayList<>();
-            for (int i = 0; i < coords.length(); i++) {
-                JSONArray coord = coords.getJSONArray(i);
-                points.add(new double[]{coord.getDouble(1), coord.getDouble(0)});
-            }
+    // One reachability query, then directions for up to MAX_VARIANTS turnarounds in parallel
+    CompletableFuture<List<CompletableFuture<Route>>> createVariantBatchAsync(
+            double lat, double lon, double distanceKm, long seed, Terrain terrain) {
+        Random random = new Random(seed);
+        double targetLegKm = distanceKm / 2.0;
+        // The directions calls are issued from whichever thread completes the isochrone, so carry the priority along
+        UpstreamPriority priority = UpstreamPriority.current();
+
+        return isochroneCache.getOrLoad(lat, lon, targetLegKm,
+                        () -> metrics.timeAsync(RouteMetrics.Stage.ISOCHRONES, () -> getIsochronesAsync(lat, lon, targetLegKm)))
+                .thenApply(reachablePoints -> metrics.time(RouteMetrics.Stage.TURNAROUND_SELECTION,
+                        () -> selectTurnarounds(reachablePoints, lat, lon, targetLegKm, random, terrain)))
+                .thenApply(turnarounds -> {
+                    // The directions calls are independent; a rejected key or exhausted quota cancels the rest
+                    RouteTaskScope<List<double[]>> scope = RouteTaskScope.shutdownOnFatalUpstreamError();
+                    List<CompletableFuture<Route>> variants = new ArrayList<>(turnarounds.size());
+                    for (double[] turnaround : turnarounds) {
+                        variants.add(scope.fork(() -> priority.run(() -> metrics.timeAsync(RouteMetrics.Stage.DIRECTIONS,
+                                        () -> getDirectionsAsync(lat, lon, turnaround[0], turnaround[1]))))
+                                .thenApply(outRoute -> buildBackAndForthRoute(outRoute, distanceKm)));
+                    }
+                    return variants;
+                });
+    }
 
-            return points;
+    // No reachability query: each loop variant places its own waypoints and routes them, in parallel
+    CompletableFuture<List<CompletableFuture<Route>>> createLoopBatchAsync(
+            double lat, double lon, double distanceKm, long seed) {
+        Random random = new Random(seed);
+        RouteTaskScope<Route> scope = RouteTaskScope.shutdownOnFatalUpstreamError();
+        List<CompletableFuture<Route>> variants = new ArrayList<>(loopGenerator.variants());
+        for (int i = 0; i < loopGenerator.variants(); i++) {
+            Random variantRandom = new Random(random.nextLong());
+            CompletableFuture<Route> variant = scope.fork(() -> metrics.timeAsync(RouteMetrics.Stage.LOOP,
+                    () -> loopGenerator.generateAsync(lat, lon, distanceKm, variantRandom)));
+            variant.thenAccept(route -> metrics.distanceError(RouteShape.LOOP, distanceKm, route));
+            variants.add(variant);
+        }
+        return CompletableFuture.completedFuture(variants);
+    }
+
+    List<double[]> selectTurnarounds(ReachableSet reachable, double lat, double lon, double targetLegKm, Random random) {
+        return selectTurnarounds(reachable, lat, lon, targetLegKm, random, Terrain.ANY);
+    }
 
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException("Directions request failed: " + e.getMessage(), e);
+    List<double[]> selectTurnarounds(ReachableSet reachable, double lat, double lon, double targetLegKm, Random random,
+                                     Terrain terrain) {
+        if (reachable.isEmpty()) {
+            throw new RuntimeException("No reachable points from Isochrones API");
+        }
+
+        PolarIndex index = reachable.polarIndex(lat, lon);
+
+        // Try strict match (±5%), one pick per direction sector
+        List<double[]> turnarounds = pickInBand(index, lat, lon, targetLegKm, STRICT_TOLERANCE, random, terrain);
+        if (!turnarounds.isEmpty()) {
+            metrics.band(RouteMetrics.Band.STRICT);
+            return turnarounds;
         }
+
+        // Looser match (±30%)
+        turnarounds = pickInBand(index, lat, lon, targetLegKm, LOOSE_TOLERANCE, random, terrain);
+        if (!turnarounds.isEmpty()) {
+            metrics.band(RouteMetrics.Band.LOOSE);
+            return turnarounds;
+        }
+
+        // Fallback — pick farthest point
+        metrics.band(RouteMetrics.Band.FALLBACK);
+        return Collections.singletonList(reachable.point(index.farthestIndex()));
     }
 
-    private List<Map<String, Double>> toCoordinateMap(List<double[]> coords) {
-        List<Map<String, Double>> list = new ArrayList<>();
-        for (double[] p : coords) {
-            Map<String, Double> m = new HashMap<>();
-            m.put("lat", p[0]);
-            m.put("lng", p[1]);
-            list.add(m);
+    // Band check on the reachable set's own distance: walking distance from the embedded engine,
+    // straight-line distance for remote isochrone vertices
+    private List<double[]> pickInBand(PolarIndex index, double lat, double lon, double targetLegKm, double tolerance,
+                                      Random random, Terrain terrain) {
+        double minDist = Math.max(MIN_TURNAROUND_DISTANCE_KM, targetLegKm * (1 - tolerance));
+        double maxDist = targetLegKm * (1 + tolerance);
+        if (terrain == Terrain.ANY) {
+            return index.pickDirectional(minDist, maxDist, random, MAX_VARIANTS);
         }
-        return list;
+
+        // Several picks per sector, scored by the relief of the straight line out: no provider call needed
+        Set<Turnaround> seen = new HashSet<>();
+        List<double[]> candidates = new ArrayList<>();
+        Map<double[], Double> relief = new IdentityHashMap<>();
+        for (int round = 0; round < TERRAIN_CANDIDATE_ROUNDS; round++) {
+            for (double[] pick : index.pickDirectional(minDist, maxDist, random, PolarIndex.SECTORS)) {
+                if (seen.add(new Turnaround(pick[0], pick[1]))) {
+                    candidates.add(pick);
+                    relief.put(pick, elevation.relief(lat, lon, pick[0], pick[1], TERRAIN_SAMPLE_SPACING_M));
+                }
+            }
+        }
+        Comparator<double[]> flatFirst = Comparator.comparingDouble(relief::get);
+        candidates.sort(terrain == Terrain.FLAT ? flatFirst : flatFirst.reversed());
+
+        // Best first, but no sector fills the rotation on its own, so the variants keep some spread
+        int[] perSector = new int[PolarIndex.SECTORS];
+        List<double[]> best = new ArrayList<>(MAX_VARIANTS);
+        for (double[] candidate : candidates) {
+            if (best.size() == MAX_VARIANTS) break;
+            int sector = PolarIndex.sector(lat, lon, candidate[0], candidate[1]);
+            if (perSector[sector] < TERRAIN_PICKS_PER_SECTOR) {
+                perSector[sector]++;
+                best.add(candidate);
+            }
+        }
+        return best;
+    }
+
+    private record Turnaround(double lat, double lon) {
     }
 
-    private double calculateTotalDistance(List<double[]> coords) {
-        double dist = 0;
-        for (int i = 1; i < coords.size(); i++) {
-            dist += haversine(coords.get(i - 1)[0], coords.get(i - 1)[1],
-                    coords.get(i)[0], coords.get(i)[1]) * 1000;
+    private Route buildBackAndForthRoute(List<double[]> outRoute, double requestedKm) {
+        Route route = metrics.time(RouteMetrics.Stage.ROUTE_BUILD, () -> Route.outAndBack(outRoute));
+        metrics.distanceError(RouteShape.OUT_AND_BACK, requestedKm, route);
+        return route;
+    }
+
+       
+    public String exportRouteAsJSON(Route route) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            RouteExporter.writeJson(route, out, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return dist;
+        return out.toString(StandardCharsets.UTF_8);
     }
 
-    private double haversine(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371;
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    //Exports route as gpx
+    public String exportRouteAsGPX(Route route) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            RouteExporter.writeGpx(route, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
     }
 
+    CompletableFuture<ReachableSet> getIsochronesAsync(double lat, double lon, double maxDistanceKm) {
+        return routingEngine.isochronesAsync(lat, lon, maxDistanceKm);
+    }
+
+    CompletableFuture<List<double[]>> getDirectionsAsync(double startLat, double startLon, double endLat, double endLon) {
+        return routingEngine.directionsAsync(startLat, startLon, endLat, endLon);
+    }
 
     //Resets cache
-    public synchronized void resetCache() {
+    public void resetCache() {
         routeCache.clear();
-        routeIndex.clear();
+        isochroneCache.clear();
+        routeStore.clear();
+        shared.clear();
     }
 }
@@ -0,0 +1,26 @@
+package com.example.backend;
+
+// Route geometry a request asks for; the wire name is what clients send as RouteRequest.type
+public enum RouteShape {
+    OUT_AND_BACK("out-and-back"),
+    LOOP("loop");
+
+    private final String wireName;
+
+    RouteShape(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String wireName() {
+        return wireName;
+    }
+
+    // A missing type keeps the original out-and-back behaviour
+    public static RouteShape fromWireName(String type) {
+        if (type == null || type.isBlank()) return OUT_AND_BACK;
+        for (RouteShape shape : values()) {
+            if (shape.wireName.equalsIgnoreCase(type.trim())) return shape;
+        }
+        throw new IllegalArgumentException("Route type must be 'out-and-back' or 'loop'");
+    }
+}
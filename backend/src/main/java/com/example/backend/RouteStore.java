@@ -0,0 +1,282 @@
+package com.example.backend;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Route variants persisted in H2 under the same quantized key as RouteCache, so a restart starts warm.
+// Writes are queued and flushed in batches by one writer thread; a full queue drops the write instead of
+// blocking the request. The set of stored keys is loaded in the background after startup: until it is,
+// every miss asks the table (indexed by key), afterwards only misses on stored keys do.
+// Each key keeps only its MAX_VARIANTS newest rows, and expired rows are purged every purgeIntervalMinutes,
+// so refreshes and a long uptime do not grow the file.
+@Component
+public class RouteStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteStore.class);
+    private static final int WRITE_BATCH = 256;
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private final StoredRouteRepository repository;
+    private final long ttlMillis;
+    private final BlockingQueue<StoredRoute> writes;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService writer;
+    private final ExecutorService readers;
+
+    private final Set<String> storedKeys = ConcurrentHashMap.newKeySet();
+    private volatile boolean keyIndexLoaded;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong purged = new AtomicLong();
+
+    @Autowired
+    public RouteStore(StoredRouteRepository repository,
+                      @Value("${routes.store.enabled:true}") boolean enabled,
+                      @Value("${routes.store.ttl-hours:168}") long ttlHours,
+                      @Value("${routes.store.write-queue-capacity:10000}") int writeQueueCapacity,
+                      @Value("${routes.store.reader-threads:2}") int readerThreads,
+                      @Value("${routes.store.purge-interval-minutes:60}") long purgeIntervalMinutes) {
+        this.repository = enabled ? repository : null;
+        this.ttlMillis = Duration.ofHours(ttlHours).toMillis();
+        this.writes = new ArrayBlockingQueue<>(Math.max(1, writeQueueCapacity));
+        this.writer = enabled ? Executors.newSingleThreadScheduledExecutor(daemon("route-store-writer")) : null;
+        this.readers = enabled ? Executors.newFixedThreadPool(Math.max(1, readerThreads), daemon("route-store-reader")) : null;
+        if (enabled) {
+            readers.execute(this::loadKeyIndex);
+            if (purgeIntervalMinutes > 0) {
+                // On the writer thread, so a purge never interleaves with a batch being written
+                writer.scheduleWithFixedDelay(this::purgeExpired, purgeIntervalMinutes, purgeIntervalMinutes,
+                        TimeUnit.MINUTES);
+            }
+        }
+    }
+
+    // No persistence: every lookup misses and saves are ignored
+    public static RouteStore disabled() {
+        return new RouteStore(null, false, 0, 1, 1, 0);
+    }
+
+    public boolean isEnabled() {
+        return repository != null;
+    }
+
+    // Stored variants for the key, newest first; completes at once with an empty list for keys known to be absent
+    public CompletableFuture<List<Route>> loadAsync(RouteKey key) {
+        String id = key.toString();
+        if (!isEnabled() || (keyIndexLoaded && !storedKeys.contains(id))) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            List<StoredRoute> rows = repository.findByRouteKeyAndCreatedAtGreaterThanOrderByCreatedAtDescIdDesc(
+                    id, System.currentTimeMillis() - ttlMillis, PageRequest.of(0, RouteService.MAX_VARIANTS));
+            List<Route> routes = new ArrayList<>(rows.size());
+            for (StoredRoute row : rows) {
+                routes.add(decode(row.getPoints(), row.getDistanceMeters(), row.isOutAndBack()));
+            }
+            if (!routes.isEmpty()) loads.incrementAndGet();
+            return routes;
+        }, readers);
+    }
+
+    // Never blocks: the route is queued for the writer thread
+    public void save(RouteKey key, Route route) {
+        if (!isEnabled()) return;
+        StoredRoute row = new StoredRoute(key.toString(), route.shape() == RouteShape.OUT_AND_BACK,
+                route.getDistanceMeters(), encode(route), System.currentTimeMillis());
+        if (!writes.offer(row)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        storedKeys.add(row.getRouteKey());
+        if (flushScheduled.compareAndSet(false, true)) {
+            writer.execute(this::flush);
+        }
+    }
+
+    // Drops queued writes and deletes everything stored, after any flush already running
+    public void clear() {
+        if (!isEnabled()) return;
+        writes.clear();
+        storedKeys.clear();
+        writer.execute(repository::deleteAllInBatch);
+    }
+
+    // Waits until every write queued so far has reached the table
+    public void awaitWrites(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!isEnabled()) return;
+        try {
+            writer.submit(this::flush).get(timeout, unit);
+        } catch (ExecutionException e) {
+            throw RouteService.unwrap(e.getCause());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get() + failedWrites.get());
+        stats.put("pendingWrites", writes.size());
+        stats.put("loads", loads.get());
+        stats.put("purged", purged.get());
+        stats.put("keyIndexLoaded", keyIndexLoaded);
+        return stats;
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        List<StoredRoute> batch = new ArrayList<>(WRITE_BATCH);
+        while (writes.drainTo(batch, WRITE_BATCH) > 0) {
+            try {
+                repository.saveAll(batch);
+                written.addAndGet(batch.size());
+                Set<String> keys = new HashSet<>();
+                for (StoredRoute row : batch) keys.add(row.getRouteKey());
+                keys.forEach(this::trim);
+            } catch (RuntimeException e) {
+                // Persistence is best effort; the routes are still in the memory cache
+                failedWrites.addAndGet(batch.size());
+                log.warn("Route store write failed: {}", e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    // Older rows than the key's MAX_VARIANTS newest are never loaded again
+    private void trim(String routeKey) {
+        List<Long> ids = repository.findIdsByRouteKeyNewestFirst(routeKey);
+        if (ids.size() > RouteService.MAX_VARIANTS) {
+            List<Long> older = ids.subList(RouteService.MAX_VARIANTS, ids.size());
+            repository.deleteAllByIdInBatch(older);
+            purged.addAndGet(older.size());
+        }
+    }
+
+    // Deletes expired rows and forgets the keys left without any. Keys with writes still queued stay known.
+    int purgeExpired() {
+        try {
+            long cutoff = System.currentTimeMillis() - ttlMillis;
+            int deleted = repository.deleteCreatedUpTo(cutoff);
+            purged.addAndGet(deleted);
+            if (deleted > 0 && keyIndexLoaded) {
+                Set<String> live = new HashSet<>(repository.findRouteKeysCreatedAfter(cutoff));
+                for (StoredRoute pending : writes) live.add(pending.getRouteKey());
+                storedKeys.retainAll(live);
+            }
+            return deleted;
+        } catch (RuntimeException e) {
+            log.warn("Route store purge failed: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    // Runs once in the background: expired rows are purged, the remaining keys become the lookup filter
+    private void loadKeyIndex() {
+        try {
+            long cutoff = System.currentTimeMillis() - ttlMillis;
+            repository.deleteCreatedUpTo(cutoff);
+            storedKeys.addAll(repository.findRouteKeysCreatedAfter(cutoff));
+            keyIndexLoaded = true;
+        } catch (RuntimeException e) {
+            // Without the index every miss keeps asking the table, which is slower but still correct
+            log.warn("Route store key index not loaded: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (!isEnabled()) return;
+        readers.shutdownNow();
+        writer.execute(this::flush);
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // Point count, then each {lat, lon} as a zigzag varint delta from the previous point, in 1e-7 degrees (about 1 cm)
+    static byte[] encode(Route route) {
+        double[] packed = route.packedOutLeg();
+        byte[] out = new byte[5 + packed.length * 10];
+        int pos = writeVarint(out, 0, packed.length / 2);
+        long prevLat = 0;
+        long prevLon = 0;
+        for (int i = 0; i + 1 < packed.length; i += 2) {
+            long lat = Math.round(packed[i] * COORDINATE_SCALE);
+            long lon = Math.round(packed[i + 1] * COORDINATE_SCALE);
+            pos = writeVarint(out, pos, zigzag(lat - prevLat));
+            pos = writeVarint(out, pos, zigzag(lon - prevLon));
+            prevLat = lat;
+            prevLon = lon;
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    // Throws IllegalArgumentException for bytes encode() did not produce
+    static Route decode(byte[] bytes, double distanceMeters, boolean outAndBack) {
+        int[] pos = {0};
+        long points = readVarint(bytes, pos);
+        // Every point takes at least two bytes; a larger count is corruption, not a reason to allocate
+        if (points < 0 || points > (bytes.length - pos[0]) / 2) {
+            throw new IllegalArgumentException("Malformed route encoding");
+        }
+        int count = (int) points;
+        double[] packed = new double[count * 2];
+        long lat = 0;
+        long lon = 0;
+        for (int i = 0; i < count; i++) {
+            lat += unzigzag(readVarint(bytes, pos));
+            lon += unzigzag(readVarint(bytes, pos));
+            packed[2 * i] = lat / COORDINATE_SCALE;
+            packed[2 * i + 1] = lon / COORDINATE_SCALE;
+        }
+        return new Route(packed, distanceMeters, outAndBack);
+    }
+
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarint(byte[] in, int[] pos) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicLong count = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
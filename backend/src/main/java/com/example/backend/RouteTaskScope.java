@@ -0,0 +1,75 @@
+package com.example.backend;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// StructuredTaskScope-style fan-out over CompletableFuture (the JDK API is still preview and needs Java 21):
+// forked upstream calls run concurrently, and the first failure accepted by shutdownOn cancels every sibling
+// that has not finished yet. Cancelling a fork cancels the provider call behind it.
+final class RouteTaskScope<T> {
+
+    private final Predicate<Throwable> shutdownOn;
+    private final List<CompletableFuture<T>> forks = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    RouteTaskScope(Predicate<Throwable> shutdownOn) {
+        this.shutdownOn = shutdownOn;
+    }
+
+    static <T> RouteTaskScope<T> shutdownOnFailure() {
+        return new RouteTaskScope<>(error -> true);
+    }
+
+    // Shut down only when the provider rejects us outright, so one unroutable turnaround does not cost the others
+    static <T> RouteTaskScope<T> shutdownOnFatalUpstreamError() {
+        return new RouteTaskScope<>(error -> error instanceof UpstreamException e && e.isFatal());
+    }
+
+    CompletableFuture<T> fork(Supplier<CompletableFuture<T>> task) {
+        if (failure.get() != null) {
+            return CompletableFuture.failedFuture(new CancellationException("Scope already shut down"));
+        }
+
+        CompletableFuture<T> fork;
+        try {
+            fork = task.get();
+        } catch (RuntimeException e) {
+            fork = CompletableFuture.failedFuture(e);
+        }
+        forks.add(fork);
+        fork.whenComplete((value, error) -> {
+            if (error == null) return;
+            Throwable cause = RouteService.unwrap(error);
+            if (!(cause instanceof CancellationException) && shutdownOn.test(cause)) {
+                shutdown(cause);
+            }
+        });
+        // A shutdown that raced with this fork has already walked the list
+        if (failure.get() != null) {
+            fork.cancel(true);
+        }
+        return fork;
+    }
+
+    void shutdown(Throwable cause) {
+        if (failure.compareAndSet(null, cause)) {
+            for (CompletableFuture<T> fork : forks) {
+                fork.cancel(true);
+            }
+        }
+    }
+
+    boolean isShutdown() {
+        return failure.get() != null;
+    }
+
+    // The failure that shut the scope down, or null
+    Throwable failure() {
+        return failure.get();
+    }
+}
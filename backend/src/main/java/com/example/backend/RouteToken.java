@@ -0,0 +1,109 @@
+package com.example.backend;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Short, URL-safe address of one route variant: its cache key plus what tells it apart from the other
+// variants under that key. An out-and-back route is identified by its start and turnaround (1e-5 degrees,
+// about a metre), which is also all a directions call needs to rebuild it once it has left the cache.
+// A loop has no single turnaround, so it is identified by a fingerprint of its polyline instead and can
+// only be resolved while it is cached or stored.
+public record RouteToken(RouteKey key, int startLat, int startLon, int turnLat, int turnLon, long fingerprint) {
+
+    private static final byte VERSION = 1;
+    private static final double SCALE = 1e5;
+
+    public static RouteToken of(RouteKey key, Route route) {
+        if (key.shape() == RouteShape.LOOP) {
+            return new RouteToken(key, 0, 0, 0, 0, fingerprint(route));
+        }
+        int turnaround = route.outLegPointCount() - 1;
+        return new RouteToken(key, quantize(route.lat(0)), quantize(route.lon(0)),
+                quantize(route.lat(turnaround)), quantize(route.lon(turnaround)), 0);
+    }
+
+    // Throws IllegalArgumentException for anything encode() did not produce
+    public static RouteToken parse(String token) {
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(Base64.getUrlDecoder().decode(token));
+            if (bytes.get() != VERSION) {
+                throw new IllegalArgumentException("Unsupported route token version");
+            }
+            // Shape in the low nibble, terrain in the high one (zero, ANY, in tokens from before terrain)
+            int kind = bytes.get();
+            RouteShape shape = RouteShape.values()[kind & 0x0F];
+            Terrain terrain = Terrain.values()[kind >>> 4];
+            byte[] cell = new byte[bytes.get()];
+            bytes.get(cell);
+            RouteKey key = new RouteKey(shape, new String(cell, StandardCharsets.US_ASCII), bytes.getInt(), terrain);
+            RouteToken parsed = shape == RouteShape.LOOP
+                    ? new RouteToken(key, 0, 0, 0, 0, bytes.getLong())
+                    : new RouteToken(key, bytes.getInt(), bytes.getInt(), bytes.getInt(), bytes.getInt(), 0);
+            if (bytes.hasRemaining()) {
+                throw new IllegalArgumentException("Malformed route token");
+            }
+            return parsed;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Malformed route token");
+        }
+    }
+
+    public String encode() {
+        byte[] cell = key.cell().getBytes(StandardCharsets.US_ASCII);
+        boolean loop = key.shape() == RouteShape.LOOP;
+        ByteBuffer bytes = ByteBuffer.allocate(3 + cell.length + 4 + (loop ? 8 : 16));
+        bytes.put(VERSION).put((byte) (key.terrain().ordinal() << 4 | key.shape().ordinal()))
+                .put((byte) cell.length).put(cell).putInt(key.distanceMeters());
+        if (loop) {
+            bytes.putLong(fingerprint);
+        } else {
+            bytes.putInt(startLat).putInt(startLon).putInt(turnLat).putInt(turnLon);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    public boolean matches(Route route) {
+        return route.shape() == key.shape() && equals(of(key, route));
+    }
+
+    public boolean isRebuildable() {
+        return key.shape() == RouteShape.OUT_AND_BACK;
+    }
+
+    public double startLatitude() {
+        return startLat / SCALE;
+    }
+
+    public double startLongitude() {
+        return startLon / SCALE;
+    }
+
+    public double turnaroundLatitude() {
+        return turnLat / SCALE;
+    }
+
+    public double turnaroundLongitude() {
+        return turnLon / SCALE;
+    }
+
+    private static int quantize(double degrees) {
+        return (int) Math.round(degrees * SCALE);
+    }
+
+    // FNV-1a over the quantized points, so routes read back from the store (1e-7 precision) still match
+    private static long fingerprint(Route route) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < route.pointCount(); i++) {
+            hash = (hash ^ quantize(route.lat(i))) * 0x100000001b3L;
+            hash = (hash ^ quantize(route.lon(i))) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.backend;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Startup warm-up. Spring reports readiness (/actuator/health/readiness) only once every ApplicationRunner has
+// returned, so a replica the autoscaler starts under load gets traffic only after this has run:
+// - the hot keys the previous instance saved at shutdown are restored: their demand counts, for the prefetcher,
+//   and their variants from the shared tier or the store into the cache, so their first requests are hits
+// - generation (isochrone and directions parsing, turnaround selection, route building, loops), tokens and the
+//   JSON, polyline and GPX exporters run against recorded provider responses until the JIT has compiled them,
+//   on a throwaway RouteService so nothing reaches the provider, the caches or the metrics
+// - a few requests go through the web stack, so the first real one does not initialize it
+// With exit-when-ready the application exits once it is ready: the training run of the AppCDS build (the cds
+// profile), so the archive also holds the classes the warm-up loads.
+@Component
+public class RouteWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteWarmup.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final double FIXTURE_LAT = 51.5074;
+    private static final double FIXTURE_LON = -0.1278;
+    private static final double FIXTURE_KM = 10;
+    private static final int WEB_REQUESTS = 20;
+
+    private final RouteService routeService;
+    private final RouteDemand demand;
+    private final Environment environment;
+    private final boolean enabled;
+    private final int iterations;
+    private final long maxNanos;
+    private final Path snapshotFile;
+    private final int snapshotKeys;
+    private final boolean exitWhenReady;
+
+    // One saved hot key, by the request it was last generated for rather than by its quantized key, so a change
+    // to the cache's quantization between instances does not strand it
+    record SnapshotEntry(String type, String terrain, double lat, double lon, double distanceKm, long requests) {
+    }
+
+    @Autowired
+    public RouteWarmup(RouteService routeService, RouteDemand demand, Environment environment,
+                       @Value("${routes.warmup.enabled:true}") boolean enabled,
+                       @Value("${routes.warmup.iterations:200}") int iterations,
+                       @Value("${routes.warmup.max-seconds:20}") long maxSeconds,
+                       @Value("${routes.warmup.snapshot-file:}") String snapshotFile,
+                       @Value("${routes.warmup.snapshot-keys:200}") int snapshotKeys,
+                       @Value("${routes.warmup.exit-when-ready:false}") boolean exitWhenReady) {
+        this.routeService = routeService;
+        this.demand = demand;
+        this.environment = environment;
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.maxNanos = TimeUnit.SECONDS.toNanos(maxSeconds);
+        this.snapshotFile = snapshotFile == null || snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+        this.snapshotKeys = snapshotKeys;
+        this.exitWhenReady = exitWhenReady;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) return;
+        long start = System.nanoTime();
+        int restored = restoreSnapshot();
+        int exercised = exercise();
+        int requests = warmWebStack();
+        log.info("Warm-up finished in {} ms: {} hot keys restored, {} generation rounds, {} web requests",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), restored, exercised, requests);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void exitIfTrainingRun(ApplicationReadyEvent event) {
+        if (exitWhenReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    // Returns the number of hot keys that had variants to restore
+    int restoreSnapshot() {
+        if (snapshotFile == null || !Files.isRegularFile(snapshotFile)) return 0;
+        List<SnapshotEntry> entries;
+        try {
+            entries = JSON.readValue(snapshotFile.toFile(), new TypeReference<>() {
+            });
+        } catch (IOException e) {
+            log.warn("Ignoring hot key snapshot {}: {}", snapshotFile, e.getMessage());
+            return 0;
+        }
+        List<CompletableFuture<Integer>> restores = new ArrayList<>(entries.size());
+        for (SnapshotEntry entry : entries) {
+            try {
+                RouteShape shape = RouteShape.fromWireName(entry.type());
+                RouteKey key = routeService.keyFor(shape, Terrain.fromWireName(entry.terrain()), entry.lat(),
+                        entry.lon(), entry.distanceKm());
+                demand.restore(new RouteDemand.HotKey(key, entry.lat(), entry.lon(), entry.distanceKm(), entry.requests()));
+                restores.add(routeService.restoreAsync(key));
+            } catch (IllegalArgumentException e) {
+                // An entry from a newer or older version; the rest are still good
+            }
+        }
+        int restored = 0;
+        for (CompletableFuture<Integer> restore : restores) {
+            try {
+                if (restore.get(Math.max(1, maxNanos), TimeUnit.NANOSECONDS) > 0) restored++;
+            } catch (Exception e) {
+                // The key is generated on its first request instead
+            }
+        }
+        return restored;
+    }
+
+    // Returns the number of rounds run: iterations, or fewer if max-seconds ran out first
+    int exercise() {
+        RoutingEngine recorded = RecordedRoutingEngine.fromResources();
+        RouteService service = new RouteService(recorded);
+        long deadline = System.nanoTime() + maxNanos;
+        OutputStream sink = OutputStream.nullOutputStream();
+        int round = 0;
+        for (; round < iterations && System.nanoTime() - deadline < 0; round++) {
+            try {
+                // A miss that generates every variant, then a hit
+                Route route = service.generateRoute(RouteShape.OUT_AND_BACK, FIXTURE_LAT, FIXTURE_LON, FIXTURE_KM, round);
+                service.generateRoute(RouteShape.OUT_AND_BACK, FIXTURE_LAT, FIXTURE_LON, FIXTURE_KM, round + 1);
+                Route loop = service.generateRoute(RouteShape.LOOP, FIXTURE_LAT, FIXTURE_LON, FIXTURE_KM, round);
+
+                String token = service.tokenFor(RouteShape.OUT_AND_BACK, FIXTURE_LAT, FIXTURE_LON, FIXTURE_KM, route).encode();
+                // A token that no longer round-trips would break every link the service hands out
+                if (!RouteToken.parse(token).matches(route)) {
+                    throw new IllegalStateException("Route token " + token + " does not round-trip");
+                }
+                RouteExporter.writeJson(route, token, sink, false);
+                RouteExporter.writeJson(route.simplified(2), token, sink, false, GeometryFormat.POLYLINE, true);
+                RouteExporter.writeGpx(loop, sink);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Warm-up round failed: {}", e.getMessage());
+                break;
+            } finally {
+                // Every round starts cold, so it parses the fixtures again
+                service.resetCache();
+            }
+        }
+        return round;
+    }
+
+    // Only when serving over HTTP; returns the number of requests that succeeded
+    int warmWebStack() {
+        String port = environment.getProperty("local.server.port");
+        if (port == null) return 0;
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/routes/cache-stats"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        int succeeded = 0;
+        for (int i = 0; i < WEB_REQUESTS; i++) {
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) succeeded++;
+            } catch (IOException e) {
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return succeeded;
+    }
+
+    // The hottest keys, for the next instance; a replica that saw no traffic keeps the previous snapshot
+    @PreDestroy
+    public void writeSnapshot() {
+        if (snapshotFile == null) return;
+        List<SnapshotEntry> entries = new ArrayList<>();
+        for (RouteDemand.HotKey hot : demand.hottest(snapshotKeys, 1)) {
+            RouteKey key = hot.key();
+            entries.add(new SnapshotEntry(key.shape().wireName(), key.terrain().wireName(), hot.lat(), hot.lon(),
+                    hot.distanceKm(), hot.requests()));
+        }
+        if (entries.isEmpty()) return;
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path partial = Files.createTempFile(parent, "hot-keys", ".tmp");
+            JSON.writeValue(partial.toFile(), entries);
+            Files.move(partial, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Hot key snapshot not written: {}", e.getMessage());
+        }
+    }
+}
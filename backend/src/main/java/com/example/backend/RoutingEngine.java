@@ -0,0 +1,28 @@
+package com.example.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Foot-walking routing provider behind RouteService: remote (openrouteservice) or embedded (GraphHopper)
+public interface RoutingEngine {
+
+    // Turnaround candidates for a leg of maxDistanceKm, with their distance from the start
+    CompletableFuture<ReachableSet> isochronesAsync(double lat, double lon, double maxDistanceKm);
+
+    // Walking path from start to end, as {lat, lon} vertices
+    CompletableFuture<List<double[]>> directionsAsync(double startLat, double startLon, double endLat, double endLon);
+
+    // Walking path through {lat, lon} waypoints in order, one polyline per leg. Providers that route a whole
+    // chain in one request override this; by default each leg is a separate directions call.
+    default CompletableFuture<List<List<double[]>>> directionsAsync(List<double[]> waypoints) {
+        List<CompletableFuture<List<double[]>>> legs = new ArrayList<>(waypoints.size() - 1);
+        for (int i = 0; i + 1 < waypoints.size(); i++) {
+            double[] from = waypoints.get(i);
+            double[] to = waypoints.get(i + 1);
+            legs.add(directionsAsync(from[0], from[1], to[0], to[1]));
+        }
+        return CompletableFuture.allOf(legs.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> legs.stream().map(CompletableFuture::join).toList());
+    }
+}
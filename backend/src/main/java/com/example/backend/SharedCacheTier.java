@@ -0,0 +1,248 @@
+package com.example.backend;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// The L2 tier as RouteService sees it: routes instead of bytes, and never an exception. Any store failure
+// switches the tier off for retry-seconds, during which the replica runs on its own L1 as it did before there
+// was a shared tier: reads miss, rotation is local, every lock is granted and writes are dropped. Writes are
+// queued for one thread, so a request never waits on them, and a lock is released only after the writes
+// queued before it.
+@Component
+public class SharedCacheTier {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedCacheTier.class);
+
+    // First byte of every entry. 1 is skipped: entries from before versioning start with a shape flag of 1
+    static final byte ENCODING_VERSION = 2;
+    private static final int HEADER_BYTES = 10;
+
+    private final SharedRouteCache store;
+    private final Duration ttl;
+    private final Duration lockLease;
+    private final long pollMillis;
+    private final long retryNanos;
+    private final LongSupplier nanoTime;
+    // Lock owner: this replica
+    private final String owner = UUID.randomUUID().toString();
+    private final ScheduledExecutorService worker;
+
+    private volatile long downUntilNanos;
+    private final AtomicBoolean down = new AtomicBoolean();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong unreadable = new AtomicLong();
+
+    @Autowired
+    public SharedCacheTier(@Value("${routes.shared-cache.redis-uri:}") String redisUri,
+                           @Value("${routes.shared-cache.timeout-millis:250}") long timeoutMillis,
+                           @Value("${routes.shared-cache.ttl-minutes:360}") long ttlMinutes,
+                           @Value("${routes.shared-cache.lock-lease-seconds:30}") long lockLeaseSeconds,
+                           @Value("${routes.shared-cache.poll-millis:100}") long pollMillis,
+                           @Value("${routes.shared-cache.retry-seconds:30}") long retrySeconds) {
+        this(redisUri == null || redisUri.isBlank() ? null
+                        : new RedisSharedRouteCache(redisUri, Duration.ofMillis(timeoutMillis)),
+                Duration.ofMinutes(ttlMinutes), Duration.ofSeconds(lockLeaseSeconds), pollMillis,
+                Duration.ofSeconds(retrySeconds), System::nanoTime);
+    }
+
+    SharedCacheTier(SharedRouteCache store, Duration ttl, Duration lockLease, long pollMillis, Duration retry,
+                    LongSupplier nanoTime) {
+        this.store = store;
+        this.ttl = ttl;
+        this.lockLease = lockLease;
+        this.pollMillis = Math.max(1, pollMillis);
+        this.retryNanos = retry.toNanos();
+        this.nanoTime = nanoTime;
+        this.worker = store == null ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shared-cache-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // No shared tier: the replica caches on its own
+    public static SharedCacheTier disabled() {
+        return new SharedCacheTier(null, Duration.ZERO, Duration.ZERO, 1, Duration.ZERO, System::nanoTime);
+    }
+
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    // Enabled and not sitting out an outage
+    public boolean isAvailable() {
+        return store != null && (!down.get() || nanoTime.getAsLong() - downUntilNanos >= 0);
+    }
+
+    // Entries this replica cannot read (another encoding version, or corrupt) are skipped; none readable is a miss
+    public List<Route> variants(RouteKey key) {
+        List<byte[]> encoded = call(() -> store.variants(key.toString()), List.of());
+        if (encoded.isEmpty()) return List.of();
+        List<Route> routes = new ArrayList<>(encoded.size());
+        for (byte[] bytes : encoded) {
+            Route route = decode(bytes);
+            if (route != null) {
+                routes.add(route);
+            } else {
+                unreadable.incrementAndGet();
+            }
+        }
+        if (!routes.isEmpty()) hits.incrementAndGet();
+        return routes;
+    }
+
+    // The cluster-wide rotation position, or -1 while the tier is unavailable
+    public long nextRotation(RouteKey key) {
+        return call(() -> store.nextRotation(key.toString(), ttl), -1L);
+    }
+
+    public void addVariant(RouteKey key, Route route) {
+        write(() -> store.appendVariant(key.toString(), encode(route), RouteService.MAX_VARIANTS, ttl));
+    }
+
+    public void replaceVariants(RouteKey key, List<Route> routes) {
+        List<byte[]> encoded = routes.stream().limit(RouteService.MAX_VARIANTS).map(SharedCacheTier::encode).toList();
+        write(() -> store.replaceVariants(key.toString(), encoded, ttl));
+    }
+
+    // True when this replica should generate the key: it got the lock, or there is no tier to coordinate with
+    public boolean tryLock(RouteKey key) {
+        return call(() -> store.tryLock(key.toString(), owner, lockLease), true);
+    }
+
+    public void unlock(RouteKey key) {
+        write(() -> store.unlock(key.toString(), owner));
+    }
+
+    // Variants another replica is generating under its lock, as soon as the first one arrives. Completes
+    // empty, for the caller to generate after all, if the lock is released or lapses with nothing stored,
+    // or the tier fails meanwhile.
+    public CompletableFuture<List<Route>> awaitVariants(RouteKey key) {
+        waits.incrementAndGet();
+        CompletableFuture<List<Route>> result = new CompletableFuture<>();
+        long deadline = nanoTime.getAsLong() + lockLease.toNanos();
+        poll(key, deadline, result);
+        return result;
+    }
+
+    private void poll(RouteKey key, long deadline, CompletableFuture<List<Route>> result) {
+        if (!isAvailable()) {
+            result.complete(List.of());
+            return;
+        }
+        boolean locked = call(() -> store.isLocked(key.toString()), false);
+        List<Route> routes = variants(key);
+        if (!routes.isEmpty() || !locked || nanoTime.getAsLong() - deadline >= 0) {
+            result.complete(routes);
+            return;
+        }
+        try {
+            worker.schedule(() -> poll(key, deadline, result), pollMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            result.complete(List.of());
+        }
+    }
+
+    // Waits until every write queued so far has been sent
+    void awaitWrites(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (store == null) return;
+        worker.submit(() -> { }).get(timeout, unit);
+    }
+
+    public void clear() {
+        write(store == null ? null : store::clear);
+    }
+
+    long errorCount() {
+        return errors.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("available", isAvailable());
+        stats.put("hits", hits.get());
+        stats.put("waits", waits.get());
+        stats.put("errors", errors.get());
+        stats.put("unreadable", unreadable.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (store == null) return;
+        worker.shutdown();
+        worker.awaitTermination(5, TimeUnit.SECONDS);
+        store.close();
+    }
+
+    private <T> T call(Callable<T> operation, T fallback) {
+        if (!isAvailable()) return fallback;
+        try {
+            T value = operation.call();
+            if (down.get()) down.set(false);
+            return value;
+        } catch (Exception e) {
+            failed(e);
+            return fallback;
+        }
+    }
+
+    private void write(Runnable operation) {
+        if (operation == null || !isAvailable()) return;
+        try {
+            worker.execute(() -> call(() -> {
+                operation.run();
+                return null;
+            }, null));
+        } catch (RejectedExecutionException e) {
+            // Shutting down: the write would have been lost with the replica anyway
+        }
+    }
+
+    private void failed(Exception e) {
+        errors.incrementAndGet();
+        downUntilNanos = nanoTime.getAsLong() + retryNanos;
+        if (down.compareAndSet(false, true)) {
+            log.warn("Shared route cache unavailable, using the local cache only: {}", e.getMessage());
+        }
+    }
+
+    // Version, shape flag and full-resolution distance, then the points as RouteStore encodes them
+    static byte[] encode(Route route) {
+        byte[] points = RouteStore.encode(route);
+        return ByteBuffer.allocate(HEADER_BYTES + points.length)
+                .put(ENCODING_VERSION)
+                .put((byte) (route.shape() == RouteShape.OUT_AND_BACK ? 1 : 0))
+                .putDouble(route.getDistanceMeters())
+                .put(points)
+                .array();
+    }
+
+    // Null for an entry written with another encoding version, or one that does not parse
+    static Route decode(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.get() != ENCODING_VERSION) return null;
+            boolean outAndBack = buffer.get() == 1;
+            double distanceMeters = buffer.getDouble();
+            return RouteStore.decode(Arrays.copyOfRange(bytes, HEADER_BYTES, bytes.length), distanceMeters, outAndBack);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
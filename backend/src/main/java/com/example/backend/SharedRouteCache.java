@@ -0,0 +1,37 @@
+package com.example.backend;
+
+import java.time.Duration;
+import java.util.List;
+
+// Key-value store shared by every replica: the L2 behind each replica's RouteCache. Holds the encoded variants
+// of a key, the key's rotation counter and a generation lock, so the replicas serve one rotation and generate
+// each key once between them. Implementations throw RuntimeException when the store cannot be reached;
+// SharedCacheTier turns that into L1-only operation.
+public interface SharedRouteCache extends AutoCloseable {
+
+    // Encoded variants in the order they were added; empty on a miss
+    List<byte[]> variants(String key);
+
+    // Appends unless the key already has maxVariants. The first variant of a key has already been served,
+    // so it also starts the rotation at 1
+    void appendVariant(String key, byte[] route, int maxVariants, Duration ttl);
+
+    // Swaps in a fresh rotation set, none of it served yet
+    void replaceVariants(String key, List<byte[]> routes, Duration ttl);
+
+    // Position in the key's rotation for this request, counted across all replicas
+    long nextRotation(String key, Duration ttl);
+
+    // Generation lock: true when owner got it; it lapses after lease if the owner never unlocks
+    boolean tryLock(String key, String owner, Duration lease);
+
+    boolean isLocked(String key);
+
+    // Only releases a lock owner still holds, never one that lapsed and was taken by another replica
+    void unlock(String key, String owner);
+
+    void clear();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,61 @@
+package com.example.backend;
+
+import jakarta.persistence.*;
+
+// One persisted route variant: the quantized cache key it belongs to and its points in RouteStore's binary encoding
+@Entity
+@Table(name = "stored_route", indexes = @Index(name = "idx_stored_route_key", columnList = "routeKey"))
+public class StoredRoute {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String routeKey;
+
+    private boolean outAndBack;
+
+    private double distanceMeters;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] points;
+
+    private long createdAt;
+
+    protected StoredRoute() {
+    }
+
+    StoredRoute(String routeKey, boolean outAndBack, double distanceMeters, byte[] points, long createdAt) {
+        this.routeKey = routeKey;
+        this.outAndBack = outAndBack;
+        this.distanceMeters = distanceMeters;
+        this.points = points;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getRouteKey() {
+        return routeKey;
+    }
+
+    public boolean isOutAndBack() {
+        return outAndBack;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public byte[] getPoints() {
+        return points;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.backend;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface StoredRouteRepository extends JpaRepository<StoredRoute, Long> {
+
+    // Newest variants first
+    List<StoredRoute> findByRouteKeyAndCreatedAtGreaterThanOrderByCreatedAtDescIdDesc(String routeKey, long createdAfter, Pageable page);
+
+    @Query("select r.id from StoredRoute r where r.routeKey = :routeKey order by r.createdAt desc, r.id desc")
+    List<Long> findIdsByRouteKeyNewestFirst(@Param("routeKey") String routeKey);
+
+    @Query("select distinct r.routeKey from StoredRoute r where r.createdAt > :createdAfter")
+    List<String> findRouteKeysCreatedAfter(@Param("createdAfter") long createdAfter);
+
+    @Modifying
+    @Transactional
+    @Query("delete from StoredRoute r where r.createdAt <= :cutoff")
+    int deleteCreatedUpTo(@Param("cutoff") long cutoff);
+}
@@ -0,0 +1,28 @@
+package com.example.backend;
+
+// Elevation profile a request asks for; the wire name is what clients send as RouteRequest.terrain.
+// Only out-and-back routes are scored, and only while elevation tiles are configured.
+public enum Terrain {
+    ANY("any"),
+    FLAT("flat"),
+    HILLY("hilly");
+
+    private final String wireName;
+
+    Terrain(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String wireName() {
+        return wireName;
+    }
+
+    // A missing preference keeps the original behaviour
+    public static Terrain fromWireName(String terrain) {
+        if (terrain == null || terrain.isBlank()) return ANY;
+        for (Terrain value : values()) {
+            if (value.wireName.equalsIgnoreCase(terrain.trim())) return value;
+        }
+        throw new IllegalArgumentException("Terrain must be 'any', 'flat' or 'hilly'");
+    }
+}
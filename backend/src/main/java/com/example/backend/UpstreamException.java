@@ -0,0 +1,61 @@
+package com.example.backend;
+
+import java.net.http.HttpHeaders;
+
+// Non-success response from the routing provider, with its HTTP status (0 when no response arrived at all)
+public class UpstreamException extends RuntimeException {
+
+    private final int statusCode;
+    private final long retryAfterMs;
+
+    public UpstreamException(String message, int statusCode) {
+        this(message, statusCode, 0);
+    }
+
+    public UpstreamException(String message, int statusCode, long retryAfterMs) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public UpstreamException(String message, int statusCode, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+        this.retryAfterMs = 0;
+    }
+
+    // Error response, keeping the provider's Retry-After hint when it gives one in seconds
+    public static UpstreamException fromResponse(String message, int statusCode, HttpHeaders headers) {
+        long retryAfterMs;
+        try {
+            retryAfterMs = Math.max(0, headers.firstValueAsLong("Retry-After").orElse(0)) * 1000;
+        } catch (NumberFormatException e) {
+            retryAfterMs = 0;  // HTTP-date form: left to the caller's own backoff
+        }
+        return new UpstreamException(message, statusCode, retryAfterMs);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    // 0 when the provider gave no hint
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    // Rejected credentials or exhausted quota: every other call to the provider will fail the same way
+    public boolean isFatal() {
+        return statusCode == 401 || statusCode == 403 || statusCode == 429;
+    }
+
+    // Throttled or failing on the provider's side (or unreachable): worth retrying later, not a bad request
+    public boolean isTransient() {
+        return statusCode == 0 || statusCode == 429 || statusCode >= 500;
+    }
+
+    // The provider is down or refusing traffic, as opposed to rejecting this particular request
+    public boolean isOutage() {
+        return statusCode == 0 || statusCode >= 500;
+    }
+}
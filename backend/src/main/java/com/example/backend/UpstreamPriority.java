@@ -0,0 +1,28 @@
+package com.example.backend;
+
+import java.util.function.Supplier;
+
+// Queue priority for provider calls, highest first. Attached to the calling thread only while a call is
+// being issued: code that fans out asynchronously captures current() up front and re-applies it with run().
+public enum UpstreamPriority {
+    INTERACTIVE,
+    BATCH,
+    PREFETCH;
+
+    private static final ThreadLocal<UpstreamPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    public static UpstreamPriority current() {
+        return CURRENT.get();
+    }
+
+    // Runs call with this priority applied to every provider request it issues synchronously
+    public <T> T run(Supplier<T> call) {
+        UpstreamPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.example.backend;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Gatekeeper in front of the routing provider. Calls wait in per-endpoint priority queues and start only when
+// both a concurrency permit and a token from the endpoint's bucket are free. Identical requests already queued
+// or in flight share one exchange. 429s and 5xx are retried with jittered backoff, and consecutive outages
+// open a circuit breaker that fails calls fast until a probe gets through again.
+@Component
+public class UpstreamScheduler implements MeterBinder {
+
+    private final int maxConcurrent;
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final CircuitBreaker breaker;
+
+    private final Map<String, PriorityQueue<Call>> queues = new HashMap<>();
+    private final Map<String, Call> coalescing = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private int active;
+    private long wakeupAt = Long.MAX_VALUE;
+
+    @Autowired
+    public UpstreamScheduler(@Value("${ors.http.max-concurrent-requests:32}") int maxConcurrent,
+                             @Value("${ors.rate.isochrones-per-minute:20}") double isochronesPerMinute,
+                             @Value("${ors.rate.directions-per-minute:40}") double directionsPerMinute,
+                             @Value("${ors.rate.burst:10}") int burst,
+                             @Value("${ors.retry.max-attempts:3}") int maxAttempts,
+                             @Value("${ors.retry.base-delay-ms:500}") long baseDelayMs,
+                             @Value("${ors.retry.max-delay-ms:8000}") long maxDelayMs,
+                             @Value("${ors.circuit.failure-threshold:5}") int failureThreshold,
+                             @Value("${ors.circuit.open-ms:30000}") long openMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.buckets.put("Isochrones", new TokenBucket(isochronesPerMinute, burst));
+        this.buckets.put("Directions", new TokenBucket(directionsPerMinute, burst));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.breaker = new CircuitBreaker(failureThreshold, TimeUnit.MILLISECONDS.toNanos(openMs));
+    }
+
+    // openrouteservice free-plan limits
+    public static UpstreamScheduler withDefaults() {
+        return new UpstreamScheduler(32, 20, 40, 10, 3, 500, 8000, 5, 30000);
+    }
+
+    // Concurrency limit only: for self-hosted providers and stub servers
+    public static UpstreamScheduler unthrottled(int maxConcurrent) {
+        return new UpstreamScheduler(maxConcurrent, 0, 0, 1, 1, 0, 0, 0, 0);
+    }
+
+    // Body of a 200 response; any other outcome fails with an UpstreamException. Requests with the same
+    // endpoint and body share one exchange; cancelling the returned future only withdraws this caller.
+    // Callers that share a key share the body handler too, so the unchecked casts cannot mix body types.
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(String endpoint, String body, Supplier<CompletableFuture<HttpResponse<T>>> exchange) {
+        UpstreamPriority priority = UpstreamPriority.current();
+        if (!breaker.allowsQueueing()) {
+            return CompletableFuture.failedFuture(breaker.openException(endpoint));
+        }
+
+        String key = endpoint + '\n' + body;
+        while (true) {
+            Call call = coalescing.computeIfAbsent(key, k -> new Call(k, endpoint,
+                    (Supplier<CompletableFuture<HttpResponse<Object>>>) (Supplier<?>) exchange));
+            CompletableFuture<T> view = (CompletableFuture<T>) call.subscribe(priority);
+            if (view == null) {
+                // Lost a race with the call finishing; it has left the map by now
+                coalescing.remove(key, call);
+                continue;
+            }
+            if (call.isNew()) {
+                enqueue(call);
+            } else {
+                reprioritize(call, priority);
+            }
+            return view;
+        }
+    }
+
+    private void enqueue(Call call) {
+        synchronized (this) {
+            queues.computeIfAbsent(call.endpoint, e -> new PriorityQueue<>()).add(call);
+        }
+        dispatch();
+    }
+
+    // A shared call takes the highest priority among its callers; a queued one is re-sorted
+    private void reprioritize(Call call, UpstreamPriority priority) {
+        synchronized (this) {
+            if (priority.compareTo(call.priority) >= 0) return;
+            PriorityQueue<Call> queue = queues.get(call.endpoint);
+            boolean queued = queue != null && queue.remove(call);
+            call.priority = priority;
+            if (queued) queue.add(call);
+        }
+    }
+
+    // Starts every call that has a permit and a token; if tokens are what is missing, wakes up when one is due
+    private void dispatch() {
+        List<Call> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            long nextToken = Long.MAX_VALUE;
+            while (active < maxConcurrent) {
+                Call best = null;
+                for (Map.Entry<String, PriorityQueue<Call>> entry : queues.entrySet()) {
+                    Call head = entry.getValue().peek();
+                    if (head == null) continue;
+                    TokenBucket bucket = buckets.get(entry.getKey());
+                    long wait = bucket == null ? 0 : bucket.nanosUntilToken(now);
+                    if (wait > 0) {
+                        nextToken = Math.min(nextToken, now + wait);
+                    } else if (best == null || head.compareTo(best) < 0) {
+                        best = head;
+                    }
+                }
+                if (best == null) break;
+                queues.get(best.endpoint).poll();
+                if (best.isCancelled()) continue;
+                TokenBucket bucket = buckets.get(best.endpoint);
+                if (bucket != null) bucket.take(now);
+                active++;
+                ready.add(best);
+            }
+            if (nextToken != Long.MAX_VALUE && nextToken < wakeupAt) {
+                wakeupAt = nextToken;
+                CompletableFuture.delayedExecutor(Math.max(0, nextToken - now), TimeUnit.NANOSECONDS).execute(() -> {
+                    synchronized (this) {
+                        wakeupAt = Long.MAX_VALUE;
+                    }
+                    dispatch();
+                });
+            }
+        }
+        for (Call call : ready) {
+            start(call);
+        }
+    }
+
+    private void start(Call call) {
+        if (!breaker.allowsAttempt()) {
+            release();
+            finish(call, null, breaker.openException(call.endpoint));
+            return;
+        }
+        CompletableFuture<HttpResponse<Object>> exchange;
+        try {
+            exchange = call.exchange.get();
+        } catch (RuntimeException e) {
+            exchange = CompletableFuture.failedFuture(e);
+        }
+        call.running = exchange;
+        if (call.isCancelled()) exchange.cancel(true);
+
+        exchange.whenComplete((response, error) -> {
+            release();
+            // Abandoned by every caller: nothing to report, and not a sign of trouble upstream
+            if (call.isCancelled()) {
+                breaker.onAbandoned();
+                return;
+            }
+            UpstreamException failure = error != null ? transportFailure(call.endpoint, error)
+                    : response.statusCode() != 200
+                    ? UpstreamException.fromResponse(call.endpoint + " API error: " + response.body(), response.statusCode(),
+                            response.headers())
+                    : null;
+            if (failure == null) {
+                breaker.onSuccess();
+                finish(call, response.body(), null);
+                return;
+            }
+            if (failure.isOutage()) breaker.onFailure();
+            else breaker.onSuccess();
+
+            if (failure.isTransient() && call.attempts.incrementAndGet() < maxAttempts) {
+                long delay = Math.max(backoffMs(call.attempts.get()), Math.min(maxDelayMs, failure.getRetryAfterMs()));
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> enqueue(call));
+            } else {
+                finish(call, null, failure);
+            }
+        });
+    }
+
+    private void release() {
+        synchronized (this) {
+            active--;
+        }
+        dispatch();
+    }
+
+    private void finish(Call call, Object body, RuntimeException error) {
+        coalescing.remove(call.key, call);
+        call.complete(body, error);
+    }
+
+    private static UpstreamException transportFailure(String endpoint, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof UpstreamException upstream) return upstream;
+        return new UpstreamException(endpoint + " request failed: " + cause.getMessage(), 0, cause);
+    }
+
+    // Full jitter: uniform in [0, min(max, base * 2^(attempt - 1))]
+    private long backoffMs(int attempt) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(20, attempt - 1));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    // Background work (prefetching) only goes upstream when nothing is waiting, the circuit is closed and
+    // every bucket still holds half its burst, so it never takes quota an interactive request is about to need
+    public boolean hasSpareCapacity() {
+        if (!"closed".equals(breaker.state())) return false;
+        synchronized (this) {
+            if (active >= maxConcurrent || queued() > 0) return false;
+            long now = System.nanoTime();
+            for (TokenBucket bucket : buckets.values()) {
+                if (!bucket.hasHeadroom(now)) return false;
+            }
+            return true;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("active", active);
+            stats.put("queued", queued());
+        }
+        stats.put("circuit", breaker.state());
+        return stats;
+    }
+
+    // Picked up by the actuator's registry; sampled at scrape time, so nothing is recorded per call
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("routes.upstream.active", this, scheduler -> {
+            synchronized (scheduler) {
+                return scheduler.active;
+            }
+        }).description("Provider calls in flight").register(registry);
+        Gauge.builder("routes.upstream.queued", this, scheduler -> {
+            synchronized (scheduler) {
+                return scheduler.queued();
+            }
+        }).description("Provider calls waiting for a permit or a rate-limit token").register(registry);
+        Gauge.builder("routes.upstream.circuit.open", breaker, b -> "closed".equals(b.state()) ? 0 : 1)
+                .description("1 while the provider circuit breaker is open or half-open").register(registry);
+    }
+
+    private int queued() {
+        int queued = 0;
+        for (PriorityQueue<Call> queue : queues.values()) {
+            queued += queue.size();
+        }
+        return queued;
+    }
+
+    // One exchange shared by every caller that asked for the same endpoint and body
+    private final class Call implements Comparable<Call> {
+        final String key;
+        final String endpoint;
+        final Supplier<CompletableFuture<HttpResponse<Object>>> exchange;
+        final int seq = sequence.getAndIncrement();
+        final AtomicInteger attempts = new AtomicInteger();
+        volatile UpstreamPriority priority;
+        volatile CompletableFuture<HttpResponse<Object>> running;
+
+        private final List<CompletableFuture<Object>> subscribers = new ArrayList<>();
+        private boolean done;
+        private boolean started;
+
+        Call(String key, String endpoint, Supplier<CompletableFuture<HttpResponse<Object>>> exchange) {
+            this.key = key;
+            this.endpoint = endpoint;
+            this.exchange = exchange;
+        }
+
+        // Null once the call has completed
+        synchronized CompletableFuture<Object> subscribe(UpstreamPriority callerPriority) {
+            if (done) return null;
+            if (priority == null) priority = callerPriority;
+            CompletableFuture<Object> view = new CompletableFuture<>();
+            subscribers.add(view);
+            view.whenComplete((body, error) -> {
+                if (view.isCancelled()) unsubscribe(view);
+            });
+            return view;
+        }
+
+        // True for the first subscriber only, which is the one that queues the call
+        synchronized boolean isNew() {
+            boolean first = !started;
+            started = true;
+            return first;
+        }
+
+        private void unsubscribe(CompletableFuture<Object> view) {
+            boolean abandoned;
+            synchronized (this) {
+                subscribers.remove(view);
+                abandoned = subscribers.isEmpty() && !done;
+                if (abandoned) done = true;
+            }
+            if (!abandoned) return;
+            // Nobody is waiting any more: drop it from the queue, or abort the exchange
+            coalescing.remove(key, this);
+            synchronized (UpstreamScheduler.this) {
+                PriorityQueue<Call> queue = queues.get(endpoint);
+                if (queue != null) queue.remove(this);
+            }
+            CompletableFuture<HttpResponse<Object>> exchange = running;
+            if (exchange != null) exchange.cancel(true);
+        }
+
+        synchronized boolean isCancelled() {
+            return done && subscribers.isEmpty();
+        }
+
+        void complete(Object body, RuntimeException error) {
+            List<CompletableFuture<Object>> waiting;
+            synchronized (this) {
+                done = true;
+                waiting = new ArrayList<>(subscribers);
+            }
+            for (CompletableFuture<Object> view : waiting) {
+                if (error != null) view.completeExceptionally(error);
+                else view.complete(body);
+            }
+        }
+
+        @Override
+        public int compareTo(Call other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Integer.compare(seq, other.seq);
+        }
+    }
+
+    // Refills continuously at ratePerMinute up to burst tokens; a rate of 0 or less means unlimited
+    static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double ratePerMinute, int burst) {
+            this.tokensPerNano = ratePerMinute / TimeUnit.MINUTES.toNanos(1);
+            this.capacity = Math.max(1, burst);
+            this.tokens = capacity;
+        }
+
+        long nanosUntilToken(long now) {
+            if (tokensPerNano <= 0) return 0;
+            refill(now);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        boolean hasHeadroom(long now) {
+            if (tokensPerNano <= 0) return true;
+            refill(now);
+            return tokens >= capacity / 2;
+        }
+
+        void take(long now) {
+            if (tokensPerNano <= 0) return;
+            refill(now);
+            tokens -= 1;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+
+    // Closed -> open after failureThreshold consecutive outages -> half-open after openNanos, where a single
+    // probe decides between closing again and another open period. A threshold of 0 disables it.
+    static final class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openNanos;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean open;
+        private boolean probing;
+
+        CircuitBreaker(int failureThreshold, long openNanos) {
+            this.failureThreshold = failureThreshold;
+            this.openNanos = openNanos;
+        }
+
+        // Open (and not yet due for a probe): new calls fail at once instead of queueing
+        synchronized boolean allowsQueueing() {
+            return !open || System.nanoTime() - openedAt >= openNanos;
+        }
+
+        // While open, only one call at a time is let through as the probe
+        synchronized boolean allowsAttempt() {
+            if (!open) return true;
+            if (probing || System.nanoTime() - openedAt < openNanos) return false;
+            probing = true;
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            open = false;
+            probing = false;
+        }
+
+        synchronized void onFailure() {
+            if (failureThreshold <= 0) return;
+            consecutiveFailures++;
+            if (probing || consecutiveFailures >= failureThreshold) {
+                open = true;
+                probing = false;
+                openedAt = System.nanoTime();
+            }
+        }
+
+        // An abandoned probe proves nothing either way; the next call gets to probe instead
+        synchronized void onAbandoned() {
+            probing = false;
+        }
+
+        synchronized String state() {
+            if (!open) return "closed";
+            return System.nanoTime() - openedAt >= openNanos ? "half-open" : "open";
+        }
+
+        UpstreamException openException(String endpoint) {
+            return new UpstreamException(endpoint + " API unavailable: circuit open after repeated failures", 503);
+        }
+    }
+}
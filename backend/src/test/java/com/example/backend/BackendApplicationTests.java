@@ -1,13 +1,43 @@
 package com.example.backend;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
 
-@SpringBootTest
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:routes", "routes.warmup.iterations=20",
+		"routes.warmup.snapshot-file="})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
 class BackendApplicationTests {
 
+	@Autowired
+	private MockMvc mvc;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void readinessIsReportedAfterWarmUp() throws Exception {
+		mvc.perform(get("/actuator/health/readiness"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("\"UP\"")));
+	}
+
+	@Test
+	void prometheusEndpointPublishesRouteMetrics() throws Exception {
+		mvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("routes_stage_seconds_count{outcome=\"success\",stage=\"isochrones\"}")))
+				.andExpect(content().string(containsString("routes_upstream_queued")));
+	}
+
 }
@@ -0,0 +1,91 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRouteServiceTest {
+
+    private static RouteRequest request(double lat, double lon, double distanceKm) {
+        RouteRequest request = new RouteRequest();
+        request.setLat(lat);
+        request.setLon(lon);
+        request.setDistanceKm(distanceKm);
+        return request;
+    }
+
+    private static Map<Integer, RouteRequest> items(RouteRequest... requests) {
+        Map<Integer, RouteRequest> items = new LinkedHashMap<>();
+        for (int i = 0; i < requests.length; i++) {
+            items.put(i, requests[i]);
+        }
+        return items;
+    }
+
+    @Test
+    void testEntriesWithTheSameQuantizedKeyShareOneComputation() throws Exception {
+        RouteServiceConcurrencyTest.StubRouteService routes = new RouteServiceConcurrencyTest.StubRouteService();
+        BatchRouteService batch = new BatchRouteService(routes, 4, 500);
+        ConcurrentLinkedQueue<BatchRouteService.BatchResult> results = new ConcurrentLinkedQueue<>();
+
+        batch.generate(items(
+                request(51.50700, -0.12850, 5.0),
+                request(51.50715, -0.12830, 5.02),
+                request(51.50700, -0.12850, 5.0),
+                request(51.52, -0.10, 5.0),
+                request(51.54, -0.08, 3.0)
+        ), 1, results::add).get(5, TimeUnit.SECONDS);
+
+        assertEquals(5, results.size());
+        assertTrue(results.stream().allMatch(BatchRouteService.BatchResult::isSuccess));
+        assertEquals(3, routes.isochroneCalls.get(), "Duplicate keys should not go upstream again");
+
+        Route shared = results.stream().filter(r -> r.index() == 0).findFirst().orElseThrow().route();
+        for (int index : new int[]{1, 2}) {
+            assertSame(shared, results.stream().filter(r -> r.index() == index).findFirst().orElseThrow().route());
+        }
+    }
+
+    @Test
+    void testConcurrencyIsBoundedAndFailuresStayPerItem() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        RouteService routes = new RouteService() {
+            @Override
+            public CompletableFuture<Route> generateBackAndForthRouteAsync(double lat, double lon, double distanceKm, long seed) {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                return CompletableFuture.supplyAsync(() -> {
+                    active.decrementAndGet();
+                    if (lat > 10) throw new RuntimeException("Isochrones API error: out of range");
+                    return Route.outAndBack(List.of(new double[]{lat, lon}, new double[]{lat + 0.01, lon}));
+                }, CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS));
+            }
+        };
+        BatchRouteService batch = new BatchRouteService(routes, 3, 500);
+
+        RouteRequest[] requests = new RouteRequest[20];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = request(i, 0, 5.0);
+        }
+
+        ConcurrentLinkedQueue<BatchRouteService.BatchResult> results = new ConcurrentLinkedQueue<>();
+        batch.generate(items(requests), 1, results::add).get(5, TimeUnit.SECONDS);
+
+        assertEquals(20, results.size());
+        assertTrue(peak.get() <= 3, "At most three keys should be in flight, saw " + peak.get());
+        for (BatchRouteService.BatchResult result : results) {
+            assertEquals(result.index() <= 10, result.isSuccess());
+            if (!result.isSuccess()) {
+                assertEquals("Isochrones API error: out of range", result.details());
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElevationModelTest {
+
+    private static final int SIZE = 1201;
+
+    @TempDir
+    Path tiles;
+
+    // SRTM3 layout: north row first, west to east, big-endian int16
+    static void writeTile(Path dir, int south, int west, DoubleBinaryOperator height) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(SIZE * SIZE * 2);
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                double lat = south + 1 - (double) row / (SIZE - 1);
+                double lon = west + (double) col / (SIZE - 1);
+                bytes.putShort((short) Math.round(height.applyAsDouble(lat, lon)));
+            }
+        }
+        Files.write(dir.resolve(ElevationModel.fileName(south, west)), bytes.array());
+    }
+
+    // London's tile rises 1000 m per degree northwards and is level east to west
+    private ElevationModel northwardSlope() throws IOException {
+        writeTile(tiles, 51, -1, (lat, lon) -> (lat - 51) * 1000);
+        return new ElevationModel(tiles.toString(), 4);
+    }
+
+    @Test
+    void testHeightsAreInterpolatedFromTheTile() throws IOException {
+        ElevationModel model = northwardSlope();
+
+        assertTrue(model.isEnabled());
+        assertEquals(507.4, model.elevation(51.5074, -0.1278), 0.5);
+        assertEquals(0, model.elevation(51.0001, -0.9999), 0.5);
+        assertTrue(Double.isNaN(model.elevation(48.8566, 2.3522)), "No tile for Paris");
+        assertEquals("S34E018.hgt", ElevationModel.fileName(-34, 18));
+    }
+
+    @Test
+    void testVoidSamplesAreUnknown() throws IOException {
+        writeTile(tiles, 51, -1, (lat, lon) -> lat > 51.5 ? Short.MIN_VALUE : 10);
+        ElevationModel model = new ElevationModel(tiles.toString(), 4);
+
+        assertTrue(Double.isNaN(model.elevation(51.7, -0.5)));
+        assertEquals(10, model.elevation(51.2, -0.5), 1e-9);
+    }
+
+    @Test
+    void testReliefFollowsTheSlopeAndIgnoresNoise() throws IOException {
+        ElevationModel model = northwardSlope();
+
+        // The last climb under the noise threshold is not counted
+        assertEquals(20, model.relief(51.50, -0.13, 51.52, -0.13, 60), ElevationModel.NOISE_METERS);
+        assertEquals(0, model.relief(51.50, -0.13, 51.50, -0.10, 60), 1e-9);
+    }
+
+    @Test
+    void testOpenTilesAreBounded() throws IOException {
+        writeTile(tiles, 51, -1, (lat, lon) -> 5);
+        writeTile(tiles, 51, 0, (lat, lon) -> 7);
+        ElevationModel model = new ElevationModel(tiles.toString(), 1);
+
+        assertEquals(5, model.elevation(51.5, -0.5), 1e-9);
+        assertEquals(7, model.elevation(51.5, 0.5), 1e-9);
+        assertEquals(1, model.openTiles());
+        assertEquals(5, model.elevation(51.5, -0.5), 1e-9, "An evicted tile is mapped again");
+    }
+
+    @Test
+    void testTerrainPreferencePicksTurnaroundsByRelief() throws IOException {
+        RouteStoreTest.CountingEngine engine = new RouteStoreTest.CountingEngine();
+        RouteService service = new RouteService(engine, RouteCache.withDefaults(), IsochroneCache.withDefaults(),
+                LoopRouteGenerator.withDefaults(engine), RouteStore.disabled(), RouteMetrics.disabled(),
+                RouteDemand.withDefaults(), northwardSlope());
+
+        double flat = meanNorthSouthKm(service, Terrain.FLAT);
+        double hilly = meanNorthSouthKm(service, Terrain.HILLY);
+        assertTrue(flat < 1.0, "Flat routes should head east or west: " + flat);
+        assertTrue(hilly > 2.0, "Hilly routes should head up or down the slope: " + hilly);
+
+        // Ranking does not collapse the rotation onto the one best direction
+        int[] perSector = new int[PolarIndex.SECTORS];
+        for (int i = 0; i < RouteService.MAX_VARIANTS; i++) {
+            Route route = service.generateRoute(RouteShape.OUT_AND_BACK, Terrain.FLAT, 51.5074, -0.1278, 5.0, i);
+            int turnaround = route.outLegPointCount() - 1;
+            perSector[PolarIndex.sector(51.5074, -0.1278, route.lat(turnaround), route.lon(turnaround))]++;
+        }
+        assertTrue(Arrays.stream(perSector).max().orElse(0) <= RouteService.TERRAIN_PICKS_PER_SECTOR);
+        assertNotEquals(service.keyFor(RouteShape.OUT_AND_BACK, Terrain.FLAT, 51.5074, -0.1278, 5.0),
+                service.keyFor(RouteShape.OUT_AND_BACK, Terrain.HILLY, 51.5074, -0.1278, 5.0));
+    }
+
+    @Test
+    void testTerrainIsIgnoredWithoutTiles() {
+        RouteService service = new RouteService(new RouteStoreTest.CountingEngine());
+
+        assertEquals(service.keyFor(51.5074, -0.1278, 5.0),
+                service.keyFor(RouteShape.OUT_AND_BACK, Terrain.HILLY, 51.5074, -0.1278, 5.0));
+    }
+
+    // Mean north-south reach of the turnarounds over a full rotation
+    private static double meanNorthSouthKm(RouteService service, Terrain terrain) {
+        double sum = 0;
+        for (int i = 0; i < RouteService.MAX_VARIANTS; i++) {
+            Route route = service.generateRoute(RouteShape.OUT_AND_BACK, terrain, 51.5074, -0.1278, 5.0, i);
+            sum += Math.abs(route.lat(route.outLegPointCount() - 1) - 51.5074) * 111.32;
+        }
+        return sum / RouteService.MAX_VARIANTS;
+    }
+}
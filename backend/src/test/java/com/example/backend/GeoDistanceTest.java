@@ -0,0 +1,76 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoDistanceTest {
+
+    // The per-segment implementation RouteService used before GeoDistance
+    private static double legacyHaversine(double lat1, double lon1, double lat2, double lon2) {
+        final double R = 6371;
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    @Test
+    void testTotalDistanceMatchesPerSegmentHaversine() {
+        Random random = new Random(1);
+        double[] packed = new double[2 * 3000];
+        packed[0] = 51.5;
+        packed[1] = -0.12;
+        for (int i = 2; i < packed.length; i += 2) {
+            packed[i] = packed[i - 2] + (random.nextDouble() - 0.5) * 1e-3;
+            packed[i + 1] = packed[i - 1] + (random.nextDouble() - 0.5) * 1e-3;
+        }
+
+        double expected = 0;
+        for (int i = 2; i < packed.length; i += 2) {
+            expected += legacyHaversine(packed[i - 2], packed[i - 1], packed[i], packed[i + 1]) * 1000;
+        }
+        assertEquals(expected, GeoDistance.totalDistanceMeters(packed), 0.0);
+        assertEquals(0, GeoDistance.totalDistanceMeters(new double[]{51.5, -0.12}));
+    }
+
+    @Test
+    void testLocalFrameErrorIsBoundedWithin50Km() {
+        Random random = new Random(2);
+        double maxRelativeError = 0;
+        double maxAbsoluteErrorMeters = 0;
+        for (int i = 0; i < 200_000; i++) {
+            double originLat = (random.nextDouble() - 0.5) * 140;
+            double originLon = (random.nextDouble() - 0.5) * 360;
+            double rangeKm = 50 * random.nextDouble();
+            double angle = 2 * Math.PI * random.nextDouble();
+            double lat = originLat + rangeKm / 111.32 * Math.sin(angle);
+            double lon = originLon + rangeKm / (111.32 * Math.cos(Math.toRadians(originLat))) * Math.cos(angle);
+
+            double exact = legacyHaversine(originLat, originLon, lat, lon);
+            double approx = new GeoDistance.Local(originLat, originLon).distanceKm(lat, lon);
+            maxAbsoluteErrorMeters = Math.max(maxAbsoluteErrorMeters, Math.abs(approx - exact) * 1000);
+            if (exact > 0.1) {
+                maxRelativeError = Math.max(maxRelativeError, Math.abs(approx - exact) / exact);
+            }
+        }
+
+        assertTrue(maxRelativeError < 1e-4, "Relative error should stay below 0.01%, was " + maxRelativeError);
+        assertTrue(maxAbsoluteErrorMeters < 5, "Absolute error should stay below 5 m, was " + maxAbsoluteErrorMeters);
+    }
+
+    @Test
+    void testSquaredDistancePreservesOrderingAndWrapsTheAntimeridian() {
+        GeoDistance.Local local = new GeoDistance.Local(51.5, -0.12);
+        assertTrue(local.squaredKm(51.51, -0.12) < local.squaredKm(51.52, -0.12));
+        assertTrue(local.isWithinKm(51.51, -0.12, 1.2));
+        assertFalse(local.isWithinKm(51.52, -0.12, 1.2));
+
+        GeoDistance.Local dateLine = new GeoDistance.Local(-17.0, 179.99);
+        assertEquals(legacyHaversine(-17.0, 179.99, -17.0, -179.99), dateLine.distanceKm(-17.0, -179.99), 1e-3);
+    }
+}
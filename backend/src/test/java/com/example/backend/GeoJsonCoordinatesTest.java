@@ -0,0 +1,147 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoJsonCoordinatesTest {
+
+    // Two bands sharing a vertex, each ring closed on its first vertex, with bbox and center arrays around them
+    private static final String ISOCHRONES = "{\"type\":\"FeatureCollection\",\"bbox\":[-0.2,51.4,-0.1,51.6],\"features\":["
+            + "{\"type\":\"Feature\",\"properties\":{\"center\":[-0.12,51.5],\"value\":800.0},\"geometry\":{\"coordinates\":"
+            + "[[[-0.12,51.50],[-0.11,51.51],[-0.13,51.52],[-0.12,51.50]]],\"type\":\"Polygon\"}},"
+            + "{\"type\":\"Feature\",\"properties\":{\"center\":[-0.12,51.5],\"value\":1600.0},\"geometry\":{\"coordinates\":"
+            + "[[[-0.12,51.50],[-0.10,51.53],[-0.14,51.54],[-0.12,51.50]]],\"type\":\"Polygon\"}}]}";
+
+    private static final String DIRECTIONS = "{\"features\":[{\"bbox\":[-0.12,51.5,-0.1,51.52],\"properties\":"
+            + "{\"segments\":[{\"distance\":120.5,\"steps\":[{\"way_points\":[0,1]}]}],\"way_points\":[0,2,3]},"
+            + "\"geometry\":{\"coordinates\":[[-0.12,51.50,12.0],[-0.11,51.51,13.5],[-0.10,51.52,14.0],[-0.12,51.50,12.0]],"
+            + "\"type\":\"LineString\"}}]}";
+
+    @Test
+    void testIsochroneVerticesAreDeduplicated() {
+        GeoJsonCoordinates parsed = GeoJsonCoordinates.parse(ISOCHRONES, true);
+
+        assertEquals(5, parsed.count(), "Closing vertices and the vertex shared by both bands appear once");
+        ReachableSet reachable = parsed.reachableSet(51.50, -0.12);
+        assertEquals(51.50, reachable.lat(0));
+        assertEquals(-0.12, reachable.lon(0));
+        assertEquals(0.0, reachable.distanceKm(0), 1e-9);
+    }
+
+    @Test
+    void testDirectionsKeepEveryPointAndIgnoreElevation() {
+        GeoJsonCoordinates parsed = GeoJsonCoordinates.parse(DIRECTIONS, false);
+
+        List<double[]> path = parsed.path();
+        assertEquals(4, path.size(), "A path may return to its start");
+        assertArrayEquals(new double[]{51.51, -0.11}, path.get(1));
+
+        List<List<double[]>> legs = parsed.legs();
+        assertEquals(2, legs.size(), "Only the top-level way_points split the path, not the steps'");
+        assertEquals(3, legs.get(0).size());
+        assertArrayEquals(legs.get(0).get(2), legs.get(1).get(0));
+    }
+
+    @Test
+    void testQueryEchoedInMetadataIsNotGeometry() {
+        // openrouteservice repeats the requested coordinates under metadata.query, after the features
+        String response = "{\"type\":\"FeatureCollection\",\"features\":[{\"properties\":{\"way_points\":[0,2]},"
+                + "\"geometry\":{\"coordinates\":[[-0.12,51.50],[-0.11,51.51],[-0.10,51.52]],\"type\":\"LineString\"}}],"
+                + "\"metadata\":{\"service\":\"routing\",\"query\":{\"coordinates\":[[-0.12,51.50],[-0.10,51.52]],"
+                + "\"profile\":\"foot-walking\",\"format\":\"geojson\"}}}";
+
+        GeoJsonCoordinates parsed = GeoJsonCoordinates.parse(response, false);
+
+        assertEquals(3, parsed.count());
+        assertArrayEquals(new double[]{51.52, -0.10}, parsed.path().get(2));
+        assertEquals(1, parsed.legs().size());
+    }
+
+    @Test
+    void testRecordedResponsesCarryQueryMetadata() throws Exception {
+        String directions = resource("warmup/directions.json");
+        String isochrone = resource("warmup/isochrone.json");
+        assertTrue(directions.contains("\"query\":{\"coordinates\":"), "The fixture should echo the query like ORS does");
+
+        String geometry = directions.substring(directions.indexOf("\"geometry\":{\"coordinates\":[") + 27,
+                directions.indexOf("]]", directions.indexOf("\"geometry\":")));
+        assertEquals(geometry.split("\\[").length - 1, GeoJsonCoordinates.parse(directions, false).count());
+        assertTrue(GeoJsonCoordinates.parse(isochrone, true).count() > 0);
+    }
+
+    private static String resource(String name) throws Exception {
+        try (var in = GeoJsonCoordinatesTest.class.getClassLoader().getResourceAsStream(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testChunkBoundariesDoNotMatter() {
+        byte[] bytes = DIRECTIONS.getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[]{1, 3, 7, 64}) {
+            GeoJsonCoordinates parsed = new GeoJsonCoordinates(false);
+            for (int i = 0; i < bytes.length; i += chunk) {
+                parsed.feed(ByteBuffer.wrap(bytes, i, Math.min(chunk, bytes.length - i)));
+            }
+            parsed.finish();
+
+            assertEquals(4, parsed.count(), "chunk " + chunk);
+            assertEquals(bytes.length, parsed.bytes());
+            assertEquals(2, parsed.legs().size());
+            assertArrayEquals(new double[]{51.52, -0.10}, parsed.path().get(2));
+        }
+    }
+
+    @Test
+    void testNumbersParseExactlyAsJavaDoes() {
+        Random random = new Random(7);
+        StringBuilder json = new StringBuilder("{\"features\":[{\"geometry\":{\"coordinates\":[");
+        List<String> lats = new ArrayList<>();
+        List<String> lons = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // Short and long decimals, integers, exponents and more digits than the fast path takes
+            String lon = switch (i % 5) {
+                case 0 -> String.format(Locale.US, "%.6f", random.nextDouble() * 360 - 180);
+                case 1 -> Double.toString(random.nextDouble() * 360 - 180);
+                case 2 -> Integer.toString(random.nextInt(361) - 180);
+                case 3 -> String.format(Locale.US, "%.3e", random.nextDouble() * 180);
+                default -> String.format(Locale.US, "%.17f", random.nextDouble() - 0.5);
+            };
+            String lat = String.format(Locale.US, "%.7f", random.nextDouble() * 180 - 90);
+            lons.add(lon);
+            lats.add(lat);
+            json.append(i > 0 ? "," : "").append('[').append(lon).append(',').append(lat).append(']');
+        }
+        GeoJsonCoordinates parsed = GeoJsonCoordinates.parse(json.append("]}}]}").toString(), false);
+
+        List<double[]> path = parsed.path();
+        for (int i = 0; i < path.size(); i++) {
+            assertEquals(Double.parseDouble(lats.get(i)), path.get(i)[0], lats.get(i));
+            assertEquals(Double.parseDouble(lons.get(i)), path.get(i)[1], lons.get(i));
+        }
+    }
+
+    @Test
+    void testTruncatedBodyFails() {
+        assertThrows(UncheckedIOException.class,
+                () -> GeoJsonCoordinates.parse(DIRECTIONS.substring(0, DIRECTIONS.length() / 2), false));
+    }
+
+    @Test
+    void testPackedPathBuildsRouteWithoutCopying() {
+        PackedPoints path = GeoJsonCoordinates.parse(DIRECTIONS, false).path();
+        Route route = Route.outAndBack(path);
+
+        assertSame(path.packed(), route.packedOutLeg());
+        assertEquals(7, route.pointCount());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphHopperRoutingEngineTest {
+
+    // 9x9 footway grid, 0.001° spacing, south-west corner at 51.500,-0.130
+    private static final String GRID_OSM = "footway-grid.osm";
+
+    @TempDir
+    static Path graphDir;
+
+    private static GraphHopperRoutingEngine engine;
+
+    @BeforeAll
+    static void importGrid() throws Exception {
+        String osmFile = Paths.get(GraphHopperRoutingEngineTest.class.getClassLoader().getResource(GRID_OSM).toURI()).toString();
+        engine = new GraphHopperRoutingEngine(osmFile, graphDir.toString(), null);
+    }
+
+    @AfterAll
+    static void close() {
+        engine.close();
+    }
+
+    @Test
+    void testDirectionsFollowTheGrid() {
+        List<double[]> path = engine.directionsAsync(51.500, -0.130, 51.504, -0.126).join();
+
+        assertTrue(path.size() >= 2, "Path should have at least start and end");
+        assertEquals(51.500, path.get(0)[0], 1e-4);
+        assertEquals(-0.126, path.get(path.size() - 1)[1], 1e-4);
+    }
+
+    @Test
+    void testReachableNodesLieInTheLooseBand() {
+        // 0.25 km leg -> walking distances between 175 m and 325 m
+        ReachableSet reachable = engine.isochronesAsync(51.504, -0.126, 0.25).join();
+
+        assertFalse(reachable.isEmpty());
+        for (int i = 0; i < reachable.size(); i++) {
+            assertTrue(reachable.distanceKm(i) >= 0.175 - 1e-6 && reachable.distanceKm(i) <= 0.325 + 1e-6,
+                    "Network distance should be inside the ±30% band");
+            double gridMeters = Math.abs(reachable.lat(i) - 51.504) * 111_320
+                    + Math.abs(reachable.lon(i) + 0.126) * 111_320 * Math.cos(Math.toRadians(51.504));
+            assertEquals(gridMeters, reachable.distanceKm(i) * 1000, 2.0, "On a grid, walking distance is the Manhattan distance");
+        }
+    }
+
+    @Test
+    void testSearchReturnsFarthestNodeWhenBandIsUnreachable() {
+        // A 5 km leg cannot be walked inside a 0.9 km grid: the farthest corner comes back instead
+        ReachableSet reachable = engine.isochronesAsync(51.500, -0.130, 5.0).join();
+
+        assertEquals(1, reachable.size());
+        assertEquals(51.508, reachable.lat(0), 1e-4);
+        assertEquals(-0.122, reachable.lon(0), 1e-4);
+    }
+
+    @Test
+    void testPointsOutsideGraphFailWithoutFallback() {
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> engine.isochronesAsync(48.85, 2.35, 1.0).join());
+        assertTrue(e.getCause().getMessage().contains("outside the loaded graph"));
+    }
+
+    @Test
+    void testRouteServiceRunsOffline() {
+        RouteService service = new RouteService(engine);
+        Route route = service.generateBackAndForthRoute(51.504, -0.126, 0.8, 3);
+
+        assertTrue(route.isSuccess());
+        assertTrue(route.getActualDistanceKm() > 0);
+    }
+}
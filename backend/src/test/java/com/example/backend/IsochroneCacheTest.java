@@ -0,0 +1,116 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsochroneCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private IsochroneCache cache() {
+        return new IsochroneCache(1 << 20, Duration.ofMinutes(10), 7, 250, 1.25, System::nanoTime);
+    }
+
+    private CompletableFuture<ReachableSet> load(double lat, double lon, double maxKm) {
+        loads.incrementAndGet();
+        return CompletableFuture.completedFuture(pointsNorth(lat, lon, maxKm));
+    }
+
+    // Points due north of the start every 100 m out to maxKm
+    private static ReachableSet pointsNorth(double lat, double lon, double maxKm) {
+        List<double[]> points = new ArrayList<>();
+        for (double km = 0.1; km <= maxKm + 1e-9; km += 0.1) {
+            points.add(new double[]{lat + km / 111.195, lon});
+        }
+        return ReachableSet.fromPoints(points, lat, lon);
+    }
+
+    @Test
+    void testSameCellAndBucketHitsTheCache() {
+        IsochroneCache cache = cache();
+        ReachableSet first = cache.getOrLoad(51.5, -0.12, 2.0, () -> load(51.5, -0.12, 3.2)).join();
+        ReachableSet second = cache.getOrLoad(51.5, -0.12, 2.05, () -> load(51.5, -0.12, 3.2)).join();
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.stats().get("exactHits"));
+    }
+
+    @Test
+    void testSmallerLegReusesLargerRangeFiltered() {
+        IsochroneCache cache = cache();
+        cache.getOrLoad(51.5, -0.12, 2.5, () -> load(51.5, -0.12, 4.0)).join();
+
+        ReachableSet smaller = cache.getOrLoad(51.5, -0.12, 2.0, () -> load(51.5, -0.12, 3.2)).join();
+
+        assertEquals(1, loads.get(), "2.5 km is within 1.25x of 2.0 km, so no new load");
+        assertEquals(1L, cache.stats().get("reuseHits"));
+        assertTrue(smaller.maxDistanceKm() <= 2.0 * 1.3 + 1e-6, "Points beyond the smaller loose band are dropped");
+    }
+
+    @Test
+    void testReuseFromAnotherStartMeasuresFromThatStart() {
+        IsochroneCache cache = cache();
+        cache.getOrLoad(51.5, -0.12, 2.5, () -> load(51.5, -0.12, 4.0)).join();
+        // About 55 m north, in the same cell
+        double lat = 51.5005;
+        assertEquals(GeoCell.geohash(51.5, -0.12, 7), GeoCell.geohash(lat, -0.12, 7));
+
+        ReachableSet exact = cache.getOrLoad(lat, -0.12, 2.5, () -> load(lat, -0.12, 4.0)).join();
+        ReachableSet smaller = cache.getOrLoad(lat, -0.12, 2.0, () -> load(lat, -0.12, 3.2)).join();
+        assertEquals(1, loads.get());
+        for (ReachableSet reused : List.of(exact, smaller)) {
+            for (int i = 0; i < reused.size(); i++) {
+                assertEquals(Math.abs(reused.lat(i) - lat) * 111.195, reused.distanceKm(i), 1e-3);
+            }
+        }
+        assertTrue(smaller.maxDistanceKm() <= 2.0 * 1.3 + 1e-6, "Filtered on the distances from its own start");
+    }
+
+    @Test
+    void testMuchLargerRangeIsNotReused() {
+        IsochroneCache cache = cache();
+        cache.getOrLoad(51.5, -0.12, 5.0, () -> load(51.5, -0.12, 8.0)).join();
+        cache.getOrLoad(51.5, -0.12, 2.0, () -> load(51.5, -0.12, 3.2)).join();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoad() {
+        IsochroneCache cache = cache();
+        CompletableFuture<ReachableSet> upstream = new CompletableFuture<>();
+
+        CompletableFuture<ReachableSet> a = cache.getOrLoad(51.5, -0.12, 2.0, () -> {
+            loads.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<ReachableSet> b = cache.getOrLoad(51.5, -0.12, 2.0, () -> load(51.5, -0.12, 3.2));
+        upstream.complete(pointsNorth(51.5, -0.12, 3.2));
+
+        assertSame(a.join(), b.join());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testLoaderThatThrowsFailsTheCallAndFreesTheCell() {
+        IsochroneCache cache = cache();
+        CompletableFuture<ReachableSet> failed = cache.getOrLoad(51.5, -0.12, 2.0, () -> {
+            throw new IllegalStateException("Point is not on the road network");
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertEquals("Point is not on the road network", e.getCause().getMessage());
+        ReachableSet retried = cache.getOrLoad(51.5, -0.12, 2.0, () -> load(51.5, -0.12, 3.2)).getNow(null);
+        assertNotNull(retried, "The next miss should load again rather than wait on the failed one");
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoopRouteGeneratorTest {
+
+    private static final double START_LAT = 51.5074;
+    private static final double START_LON = -0.1278;
+
+    // Every leg walks DETOUR times its straight-line length (a bent path through an offset midpoint),
+    // noticeably more than the generator's first guess assumes
+    static class DetourEngine implements RoutingEngine {
+        static final double DETOUR = 1.6;
+        final List<Integer> chainSizes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<ReachableSet> isochronesAsync(double lat, double lon, double maxDistanceKm) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException("Loops need no isochrones"));
+        }
+
+        @Override
+        public CompletableFuture<List<double[]>> directionsAsync(double startLat, double startLon, double endLat, double endLon) {
+            double midLat = (startLat + endLat) / 2;
+            double midLon = (startLon + endLon) / 2;
+            double offset = Math.sqrt(DETOUR * DETOUR - 1) / 2;
+            double scale = Math.cos(Math.toRadians(midLat));
+            // Perpendicular offset in a locally square frame, so each half of the leg is DETOUR times longer
+            double[] mid = {midLat + offset * (endLon - startLon) * scale, midLon - offset * (endLat - startLat) / scale};
+            return CompletableFuture.completedFuture(List.of(new double[]{startLat, startLon}, mid, new double[]{endLat, endLon}));
+        }
+
+        @Override
+        public CompletableFuture<List<List<double[]>>> directionsAsync(List<double[]> waypoints) {
+            chainSizes.add(waypoints.size());
+            List<List<double[]>> legs = new ArrayList<>();
+            for (int i = 0; i + 1 < waypoints.size(); i++) {
+                double[] from = waypoints.get(i);
+                double[] to = waypoints.get(i + 1);
+                legs.add(directionsAsync(from[0], from[1], to[0], to[1]).join());
+            }
+            return CompletableFuture.completedFuture(legs);
+        }
+    }
+
+    @Test
+    void testLoopConvergesOnTargetDistance() {
+        for (long seed = 0; seed < 20; seed++) {
+            DetourEngine engine = new DetourEngine();
+            LoopRouteGenerator generator = new LoopRouteGenerator(engine, 0.05, 3, 2);
+
+            Route loop = generator.generateAsync(START_LAT, START_LON, 8.0, new Random(seed)).join();
+
+            assertEquals(RouteShape.LOOP, loop.shape());
+            assertEquals(8.0, loop.getActualDistanceKm(), 8.0 * 0.05, "seed " + seed);
+            assertEquals(START_LAT, loop.lat(0), 1e-9);
+            assertEquals(START_LAT, loop.lat(loop.pointCount() - 1), 1e-9, "Loop should end at its start");
+            assertTrue(engine.chainSizes.size() <= 3, "Directions calls should be capped");
+        }
+    }
+
+    @Test
+    void testFirstCallRoutesWholeChainAndCorrectionsOnlyTheApexLegs() {
+        DetourEngine engine = new DetourEngine();
+        new LoopRouteGenerator(engine, 0.05, 3, 2).generateAsync(START_LAT, START_LON, 8.0, new Random(1)).join();
+
+        int chain = engine.chainSizes.get(0);
+        assertTrue(chain >= 4 && chain <= 6, "Start, 2-4 waypoints and start again");
+        assertTrue(engine.chainSizes.size() > 1, "A 1.6 detour is outside tolerance of the first guess");
+        for (int i = 1; i < engine.chainSizes.size(); i++) {
+            assertEquals(3, engine.chainSizes.get(i), "Only the moved waypoint's two legs should be re-routed");
+        }
+    }
+
+    @Test
+    void testStopsAtCallCapWithClosestAttempt() {
+        DetourEngine engine = new DetourEngine();
+        Route loop = new LoopRouteGenerator(engine, 0.0, 2, 1).generateAsync(START_LAT, START_LON, 8.0, new Random(3)).join();
+
+        assertEquals(2, engine.chainSizes.size());
+        assertEquals(8.0, loop.getActualDistanceKm(), 8.0 * 0.05);
+    }
+
+    @Test
+    void testLoopsAreCachedApartFromOutAndBackRoutes() {
+        DetourEngine engine = new DetourEngine();
+        RouteService service = new RouteService(engine);
+
+        Route loop = service.generateRoute(RouteShape.LOOP, START_LAT, START_LON, 5.0, 7);
+        assertEquals(RouteShape.LOOP, loop.shape());
+        assertNotEquals(service.keyFor(START_LAT, START_LON, 5.0), service.keyFor(RouteShape.LOOP, START_LAT, START_LON, 5.0));
+        assertEquals(0, service.cachedVariantCount(START_LAT, START_LON, 5.0));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.backend;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrsClientTest {
+
+    private static final String ISOCHRONE_JSON =
+            "{\"features\":[{\"geometry\":{\"coordinates\":[[[-0.12,51.50],[-0.11,51.51],[-0.12,51.50]]]}}]}";
+    private static final String DIRECTIONS_JSON =
+            "{\"features\":[{\"geometry\":{\"coordinates\":[[-0.12,51.50],[-0.11,51.51],[-0.10,51.52]]}}]}";
+
+    private HttpServer server;
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    @BeforeEach
+    void startStubServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v2/isochrones/foot-walking", exchange -> respond(exchange, 200, ISOCHRONE_JSON));
+        server.createContext("/v2/directions/foot-walking/geojson", exchange -> {
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+            respond(exchange, 200, DIRECTIONS_JSON);
+        });
+        server.createContext("/broken/v2/directions/foot-walking/geojson",
+                exchange -> respond(exchange, 503, "{\"error\":\"unavailable\"}"));
+        server.start();
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void testParsesIsochronesAndDirections() {
+        OrsClient client = OrsClient.forBaseUrl(baseUrl());
+
+        ReachableSet reachable = client.isochronesAsync(51.5, -0.12, 2.0).join();
+        assertEquals(2, reachable.size(), "The ring's closing vertex repeats its first");
+
+        List<double[]> route = client.directionsAsync(51.50, -0.12, 51.52, -0.10).join();
+        assertEquals(3, route.size());
+        assertArrayEquals(new double[]{51.50, -0.12}, route.get(0));
+    }
+
+    @Test
+    void testSplitsMultiWaypointPathIntoLegs() {
+        String response = "{\"features\":[{\"properties\":{\"way_points\":[0,2,3]},\"geometry\":{\"coordinates\":"
+                + "[[-0.12,51.50],[-0.11,51.51],[-0.10,51.52],[-0.12,51.50]]}}]}";
+
+        List<List<double[]>> legs = OrsClient.parseDirectionLegs(response);
+        assertEquals(2, legs.size());
+        assertEquals(3, legs.get(0).size());
+        assertEquals(2, legs.get(1).size());
+        assertArrayEquals(legs.get(0).get(2), legs.get(1).get(0), "Adjacent legs should share the waypoint");
+    }
+
+    @Test
+    void testBoundsConcurrentRequests() {
+        OrsClient client = new OrsClient(HttpClientConfig.buildHttpClient(1000, 4),
+                OrsClient.DEFAULT_API_KEY, baseUrl(), 5000, 2);
+
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[10];
+        for (int i = 0; i < calls.length; i++) {
+            // Distinct requests: identical ones would share a single exchange
+            calls[i] = client.directionsAsync(51.50 + i * 0.001, -0.12, 51.52, -0.10);
+        }
+        CompletableFuture.allOf(calls).join();
+
+        assertTrue(maxConcurrent.get() <= 2, "At most two requests should be in flight");
+    }
+
+    @Test
+    void testNonOkStatusFailsTheFuture() {
+        OrsClient client = OrsClient.forBaseUrl(baseUrl() + "/broken");
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> client.directionsAsync(51.50, -0.12, 51.52, -0.10).join());
+        assertTrue(e.getCause().getMessage().startsWith("Directions API error"));
+        assertEquals(503, ((UpstreamException) e.getCause()).getStatusCode());
+    }
+
+    @Test
+    void testCancelledCallsReleaseTheirPermit() {
+        OrsClient client = new OrsClient(HttpClientConfig.buildHttpClient(1000, 4),
+                OrsClient.DEFAULT_API_KEY, baseUrl(), 5000, 1);
+
+        CompletableFuture<List<double[]>> inFlight = client.directionsAsync(51.50, -0.12, 51.52, -0.10);
+        CompletableFuture<List<double[]>> queued = client.directionsAsync(51.51, -0.12, 51.52, -0.10);
+        CompletableFuture<List<double[]>> next = client.directionsAsync(51.53, -0.12, 51.52, -0.10);
+        queued.cancel(true);
+        inFlight.cancel(true);
+
+        assertEquals(3, next.orTimeout(5, TimeUnit.SECONDS).join().size());
+        assertEquals(3, client.directionsAsync(51.50, -0.12, 51.52, -0.10).orTimeout(5, TimeUnit.SECONDS).join().size());
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
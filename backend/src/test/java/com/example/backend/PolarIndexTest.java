@@ -0,0 +1,83 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolarIndexTest {
+
+    private static final double LAT = 51.5074;
+    private static final double LON = -0.1278;
+
+    // A large, irregular isochrone: points scattered up to ~25 km from the start
+    private static ReachableSet scattered(int n, long seed) {
+        Random random = new Random(seed);
+        List<double[]> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double r = 25 * Math.sqrt(random.nextDouble());
+            double angle = 2 * Math.PI * random.nextDouble();
+            points.add(new double[]{LAT + r / 111.32 * Math.sin(angle),
+                    LON + r / (111.32 * Math.cos(Math.toRadians(LAT))) * Math.cos(angle)});
+        }
+        return ReachableSet.fromPoints(points, LAT, LON);
+    }
+
+    private static Set<String> keys(List<double[]> points) {
+        Set<String> keys = new HashSet<>();
+        for (double[] p : points) keys.add(p[0] + "," + p[1]);
+        return keys;
+    }
+
+    @Test
+    void testBandQueryMatchesLinearScan() {
+        ReachableSet set = scattered(20_000, 1);
+        PolarIndex index = PolarIndex.build(set, LAT, LON);
+
+        double[][] bands = {{11.875, 13.125}, {8.75, 16.25}, {0.3, 0.5}, {24.9, 40}, {30, 40}, {0, 25}};
+        for (double[] band : bands) {
+            List<double[]> expected = new ArrayList<>();
+            for (int i = 0; i < set.size(); i++) {
+                if (set.distanceKm(i) >= band[0] && set.distanceKm(i) <= band[1]) expected.add(set.point(i));
+            }
+            List<double[]> all = index.pickDirectional(band[0], band[1], new Random(2), Integer.MAX_VALUE);
+            assertEquals(expected.size(), all.size(), "Band " + band[0] + ".." + band[1]);
+            assertEquals(keys(expected), keys(all));
+        }
+    }
+
+    @Test
+    void testPicksSpreadOverSectorsWithoutRepeats() {
+        ReachableSet set = scattered(5_000, 3);
+        PolarIndex index = PolarIndex.build(set, LAT, LON);
+
+        List<double[]> picked = index.pickDirectional(9.5, 10.5, new Random(4), 6);
+        assertEquals(6, picked.size());
+        Set<Integer> sectors = new HashSet<>();
+        for (double[] p : picked) sectors.add(PolarIndex.sector(LAT, LON, p[0], p[1]));
+        assertEquals(6, sectors.size(), "Each pick should come from a different sector while sectors remain");
+        assertEquals(6, keys(picked).size());
+    }
+
+    @Test
+    void testFarthestAndEmptyBand() {
+        ReachableSet set = scattered(1_000, 5);
+        PolarIndex index = PolarIndex.build(set, LAT, LON);
+
+        assertEquals(set.farthestIndex(), index.farthestIndex());
+        assertTrue(index.pickDirectional(26, 30, new Random(6), 6).isEmpty());
+        assertTrue(PolarIndex.build(ReachableSet.empty(), LAT, LON).pickDirectional(0, 1, new Random(7), 6).isEmpty());
+    }
+
+    @Test
+    void testIndexIsReusedForTheSameStart() {
+        ReachableSet set = scattered(100, 8);
+        assertSame(set.polarIndex(LAT, LON), set.polarIndex(LAT, LON));
+        assertNotSame(set.polarIndex(LAT, LON), set.polarIndex(LAT + 0.001, LON));
+    }
+}
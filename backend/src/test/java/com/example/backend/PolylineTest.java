@@ -0,0 +1,106 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolylineTest {
+
+    // A 2 km leg heading east in 5 m steps with a 3 m sideways wobble, turning north halfway
+    private static List<double[]> wobblyLeg() {
+        GeoDistance.Local plane = new GeoDistance.Local(51.5074, -0.1278);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i <= 400; i++) {
+            double along = i * 0.005;
+            double wobble = (i % 2 == 0 ? 0.003 : -0.003);
+            points.add(along <= 1 ? plane.toLatLon(along, wobble) : plane.toLatLon(1 + wobble, along - 1));
+        }
+        return points;
+    }
+
+    @Test
+    void testEncodesGooglesReferenceExample() {
+        Route route = Route.loop(List.of(List.of(new double[]{38.5, -120.2}, new double[]{40.7, -120.95},
+                new double[]{43.252, -126.453})));
+
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", Polyline.encode(route, route.pointCount()));
+        assertArrayEquals(new double[]{38.5, -120.2, 40.7, -120.95, 43.252, -126.453},
+                decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@"), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> decode("_p~iF~ps|U_"));
+    }
+
+    @Test
+    void testSimplificationKeepsCornersAndStaysWithinTolerance() {
+        Route route = Route.outAndBack(wobblyLeg());
+        Route simplified = route.simplified(10);
+
+        assertEquals(3, simplified.outLegPointCount(), "Start, corner and turnaround");
+        assertEquals(route.getDistanceMeters(), simplified.getDistanceMeters(), "Distance is the full-resolution one");
+        assertEquals(route.lat(400), simplified.lat(2), 1e-12);
+        assertEquals(simplified.lat(0), simplified.lat(simplified.pointCount() - 1), 1e-12);
+
+        Route fine = route.simplified(1);
+        assertEquals(route.outLegPointCount(), fine.outLegPointCount(), "The wobble is wider than 1 m");
+        assertSame(route, route.simplified(0));
+    }
+
+    @Test
+    void testLoopWithCoincidingEndsIsSimplified() {
+        List<double[]> leg = wobblyLeg();
+        List<double[]> back = new ArrayList<>(leg.subList(0, leg.size() - 1));
+        java.util.Collections.reverse(back);
+        Route loop = Route.loop(List.of(leg, back));
+
+        Route simplified = loop.simplified(10);
+        assertTrue(simplified.pointCount() <= 5, "Simplified to " + simplified.pointCount());
+        assertEquals(loop.lat(0), simplified.lat(simplified.pointCount() - 1), 1e-12);
+    }
+
+    @Test
+    void testSimplifiedFormsAreKeptWithTheRoute() {
+        Route route = Route.outAndBack(wobblyLeg());
+
+        assertSame(route.simplified(10), route.simplified(10));
+        Route simplified = route.simplified(10);
+        assertSame(simplified.encodedPolyline(true), simplified.encodedPolyline(true));
+
+        double[] mirrored = decode(simplified.encodedPolyline(true));
+        double[] full = decode(simplified.encodedPolyline(false));
+        assertEquals(2 * simplified.outLegPointCount(), mirrored.length);
+        assertEquals(2 * simplified.pointCount(), full.length);
+    }
+
+    // Reference decoder for checking the encoder's output, as a client would read it: packed {lat, lon};
+    // throws IllegalArgumentException for anything encode() did not produce
+    static double[] decode(String encoded) {
+        double[] packed = new double[encoded.length() * 2];
+        int n = 0;
+        long lat = 0, lon = 0;
+        int i = 0;
+        while (i < encoded.length()) {
+            long[] next = new long[2];
+            for (int axis = 0; axis < 2; axis++) {
+                long value = 0;
+                int shift = 0;
+                int chunk;
+                do {
+                    if (i >= encoded.length() || shift > 60) throw new IllegalArgumentException("Malformed polyline");
+                    chunk = encoded.charAt(i++) - 63;
+                    if (chunk < 0 || chunk > 0x3f) throw new IllegalArgumentException("Malformed polyline");
+                    value |= (long) (chunk & 0x1f) << shift;
+                    shift += 5;
+                } while (chunk >= 0x20);
+                next[axis] = (value & 1) != 0 ? ~(value >>> 1) : value >>> 1;
+            }
+            lat += next[0];
+            lon += next[1];
+            packed[n++] = lat / 1e5;
+            packed[n++] = lon / 1e5;
+        }
+        return Arrays.copyOf(packed, n);
+    }
+}
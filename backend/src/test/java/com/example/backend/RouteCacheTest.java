@@ -0,0 +1,142 @@
+package com.example.backend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private RouteCache cache(long maxEntries, long maxBytes) {
+        return new RouteCache(maxEntries, maxBytes, Duration.ofMinutes(10), 7, 100, nanos::get);
+    }
+
+    private static Route route(int points) {
+        return new Route(new double[points * 2], 0);
+    }
+
+    @Test
+    void testNearbyStartsShareAKey() {
+        RouteCache cache = cache(100, 0);
+
+        // ~20 m apart, same geohash-7 cell, distances in the same 100 m bucket
+        assertEquals(cache.keyFor(51.50700, -0.12850, 5.0), cache.keyFor(51.50715, -0.12830, 5.03));
+        assertNotEquals(cache.keyFor(51.50740, -0.12780, 5.0), cache.keyFor(51.51740, -0.12780, 5.0));
+        assertNotEquals(cache.keyFor(51.50740, -0.12780, 5.0), cache.keyFor(51.50740, -0.12780, 5.2));
+    }
+
+    @Test
+    void testRotationSkipsTheVariantAlreadyServed() {
+        RouteCache cache = cache(100, 0);
+        RouteKey key = cache.keyFor(51.5, -0.12, 3.0);
+        Route first = route(3);
+        Route second = route(4);
+
+        assertTrue(cache.addVariant(key, first));
+        assertFalse(cache.addVariant(key, second));
+
+        assertSame(second, cache.nextVariant(key));
+        assertSame(first, cache.nextVariant(key));
+    }
+
+    @Test
+    void testCountsHitsMissesAndEvictions() {
+        RouteCache cache = cache(2, 0);
+        RouteKey a = cache.keyFor(51.50, -0.12, 3.0);
+
+        assertNull(cache.nextVariant(a));
+        cache.addVariant(a, route(2));
+        assertNotNull(cache.nextVariant(a));
+
+        for (int i = 1; i <= 20; i++) {
+            cache.addVariant(cache.keyFor(51.50 + i * 0.01, -0.12, 3.0), route(2));
+        }
+
+        Map<String, Object> stats = cache.stats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertTrue((Long) stats.get("evictions") > 0);
+        assertTrue((Long) stats.get("size") <= 2);
+    }
+
+    @Test
+    void testByteBudgetBoundsWeight() {
+        RouteCache cache = cache(0, 50_000);
+        for (int i = 0; i < 50; i++) {
+            cache.addVariant(cache.keyFor(51.50 + i * 0.01, -0.12, 3.0), route(200));
+        }
+        assertTrue((Long) cache.stats().get("weightBytes") <= 50_000);
+    }
+
+    @Test
+    void testEntriesExpireAfterTtl() {
+        RouteCache cache = cache(100, 0);
+        RouteKey key = cache.keyFor(51.5, -0.12, 3.0);
+        cache.addVariant(key, route(2));
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        assertNull(cache.nextVariant(key));
+    }
+
+    @Test
+    void testExpiredVariantsStayAvailableAsStale() {
+        RouteCache cache = cache(100, 0);
+        RouteKey key = cache.keyFor(51.5, -0.12, 3.0);
+        Route route = route(2);
+        cache.addVariant(key, route);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        assertNull(cache.nextVariant(key));
+        assertSame(route, cache.staleVariant(key));
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(40));
+        assertNull(cache.staleVariant(key), "Stale copies should expire too");
+    }
+
+    // Working until switched off, then every call fails the way an outage does
+    static class FlakyEngine extends RouteStoreTest.CountingEngine {
+        volatile boolean down;
+
+        @Override
+        public CompletableFuture<ReachableSet> isochronesAsync(double lat, double lon, double maxDistanceKm) {
+            return down ? CompletableFuture.failedFuture(new UpstreamException("Isochrones API error", 503))
+                    : super.isochronesAsync(lat, lon, maxDistanceKm);
+        }
+
+        @Override
+        public CompletableFuture<List<double[]>> directionsAsync(double startLat, double startLon, double endLat, double endLon) {
+            return down ? CompletableFuture.failedFuture(new UpstreamException("Directions API error", 503))
+                    : super.directionsAsync(startLat, startLon, endLat, endLon);
+        }
+    }
+
+    @Test
+    void testServiceServesStaleVariantOnlyWhileProviderIsDown() {
+        FlakyEngine engine = new FlakyEngine();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RouteService service = new RouteService(engine, cache(100, 0), IsochroneCache.withDefaults(),
+                LoopRouteGenerator.withDefaults(engine), RouteStore.disabled(), new RouteMetrics(registry),
+                RouteDemand.withDefaults(), ElevationModel.disabled());
+        Route served = service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 1);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        engine.down = true;
+        Route stale = service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 2);
+        assertEquals(served.pointCount(), stale.pointCount());
+        assertEquals(1, registry.get("routes.stale.served").counter().count());
+
+        // Other keys have nothing to fall back on
+        UpstreamException e = assertThrows(UpstreamException.class,
+                () -> service.generateBackAndForthRoute(48.8566, 2.3522, 5.0, 3));
+        assertEquals(503, e.getStatusCode());
+    }
+}
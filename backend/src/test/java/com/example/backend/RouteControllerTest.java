@@ -0,0 +1,190 @@
+package com.example.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class RouteControllerTest {
+
+    private static final String BODY = "{\"lat\":51.5074,\"lon\":-0.1278,\"distanceKm\":3}";
+    private static final Route ROUTE = Route.outAndBack(List.of(
+            new double[]{51.5074, -0.1278}, new double[]{51.5080, -0.1270}, new double[]{51.5090, -0.1260}));
+
+    private final RouteService routeService = new RouteService() {
+        @Override
+        public CompletableFuture<Route> generateBackAndForthRouteAsync(double lat, double lon, double distanceKm, long seed) {
+            return CompletableFuture.completedFuture(ROUTE);
+        }
+
+        @Override
+        public CompletableFuture<Route> findRouteAsync(RouteToken token) {
+            return token.matches(ROUTE) ? CompletableFuture.completedFuture(ROUTE)
+                    : CompletableFuture.failedFuture(new RouteNotFoundException("Route " + token + " has expired"));
+        }
+    };
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(
+            new RouteController(routeService, new BatchRouteService(routeService, 4, 3))).build();
+
+    private MvcResult streamed(String path, String acceptEncoding) throws Exception {
+        return streamed(path, BODY, acceptEncoding);
+    }
+
+    private MvcResult fetched(String path) throws Exception {
+        MvcResult started = mvc.perform(get(path)).andExpect(request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+    }
+
+    private MvcResult streamed(String path, String body, String acceptEncoding) throws Exception {
+        var request = post(path).contentType(MediaType.APPLICATION_JSON).content(body);
+        if (acceptEncoding != null) request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        MvcResult started = mvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+    }
+
+    @Test
+    void testRouteJsonIsStreamed() throws Exception {
+        MvcResult result = streamed("/api/routes", null);
+        String json = result.getResponse().getContentAsString();
+        assertTrue(json.startsWith("{\"coordinates\":[{\"lat\":51.507400,\"lng\":-0.127800}"), json);
+        assertTrue(json.endsWith("\"success\":true}"), json);
+        assertNull(result.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void testGpxIsGzippedWhenAccepted() throws Exception {
+        MvcResult result = streamed("/api/routes/gpx", "br, gzip;q=0.8");
+        assertEquals("gzip", result.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+
+        byte[] gzipped = result.getResponse().getContentAsByteArray();
+        String gpx = new String(new GZIPInputStream(new ByteArrayInputStream(gzipped)).readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(new RouteService().exportRouteAsGPX(ROUTE), gpx);
+    }
+
+    @Test
+    void testTokenFetchesTheSameRouteAgain() throws Exception {
+        MvcResult created = streamed("/api/routes", null);
+        String token = new ObjectMapper().readTree(created.getResponse().getContentAsString()).get("token").asText();
+        assertEquals(token, created.getResponse().getHeader(RouteController.ROUTE_TOKEN));
+
+        assertEquals(created.getResponse().getContentAsString(), fetched("/api/routes/" + token).getResponse().getContentAsString());
+        assertEquals(new RouteService().exportRouteAsGPX(ROUTE),
+                fetched("/api/routes/gpx/" + token).getResponse().getContentAsString());
+    }
+
+    @Test
+    void testPolylineResponseCanMirrorTheOutLeg() throws Exception {
+        JsonNode json = new ObjectMapper().readTree(
+                streamed("/api/routes?format=polyline&mirror=true", null).getResponse().getContentAsString());
+
+        assertFalse(json.has("coordinates"));
+        assertTrue(json.get("mirrored").asBoolean());
+        assertArrayEquals(ROUTE.packedOutLeg(), PolylineTest.decode(json.get("polyline").asText()), 1e-9);
+        assertEquals(ROUTE.getDistanceMeters(), json.get("distanceMeters").asDouble(), 0.05);
+
+        String token = json.get("token").asText();
+        JsonNode full = new ObjectMapper().readTree(
+                fetched("/api/routes/" + token + "?format=polyline").getResponse().getContentAsString());
+        assertFalse(full.has("mirrored"));
+        assertEquals(2 * ROUTE.pointCount(), PolylineTest.decode(full.get("polyline").asText()).length);
+
+        mvc.perform(post("/api/routes?tolerance=500").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details").value("Tolerance must be between 0 and 100 meters"));
+    }
+
+    @Test
+    void testUnknownOrMalformedTokenIsRejected() throws Exception {
+        RouteKey key = routeService.keyFor(51.5074, -0.1278, 3);
+        String other = RouteToken.of(key, Route.outAndBack(List.of(new double[]{51.5074, -0.1278}, new double[]{51.6, -0.1})))
+                .encode();
+        mvc.perform(get("/api/routes/" + other))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Route not found"));
+        mvc.perform(get("/api/routes/gpx/not-a-token"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid request parameters"));
+    }
+
+    @Test
+    void testInvalidRequestGetsErrorBody() throws Exception {
+        mvc.perform(post("/api/routes").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"lat\":91,\"lon\":0,\"distanceKm\":3}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("Invalid request parameters"));
+    }
+
+    @Test
+    void testUnknownRouteTypeIsRejected() throws Exception {
+        mvc.perform(post("/api/routes").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"lat\":51.5,\"lon\":0,\"distanceKm\":3,\"type\":\"figure-eight\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details").value("Route type must be 'out-and-back' or 'loop'"));
+    }
+
+    @Test
+    void testUnknownTerrainIsRejected() throws Exception {
+        mvc.perform(post("/api/routes").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"lat\":51.5,\"lon\":0,\"distanceKm\":3,\"terrain\":\"steep\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details").value("Terrain must be 'any', 'flat' or 'hilly'"));
+    }
+
+    @Test
+    void testBatchStreamsOneLinePerEntry() throws Exception {
+        String body = "[" + BODY + ",{\"lat\":91,\"lon\":0,\"distanceKm\":3}," + BODY + "]";
+        MvcResult result = streamed("/api/routes/batch", body, null);
+        assertEquals("application/x-ndjson", result.getResponse().getContentType());
+
+        ObjectMapper mapper = new ObjectMapper();
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(3, lines.length);
+        Set<Integer> indices = new HashSet<>();
+        for (String line : lines) {
+            JsonNode node = mapper.readTree(line);
+            indices.add(node.get("index").asInt());
+            boolean invalid = node.get("index").asInt() == 1;
+            assertEquals(!invalid, node.get("success").asBoolean());
+            assertEquals(invalid, node.has("error"));
+            assertEquals(!invalid, node.has("route"));
+        }
+        assertEquals(Set.of(0, 1, 2), indices);
+    }
+
+    @Test
+    void testOversizedBatchIsRejected() throws Exception {
+        String body = "[" + String.join(",", Collections.nCopies(4, BODY)) + "]";
+        mvc.perform(post("/api/routes/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details").value("Batch cannot exceed 3 requests"));
+    }
+
+    @Test
+    void testAcceptsGzip() {
+        assertTrue(RouteController.acceptsGzip("gzip, deflate"));
+        assertTrue(RouteController.acceptsGzip("GZIP;q=0.5"));
+        assertFalse(RouteController.acceptsGzip("gzip;q=0"));
+        assertFalse(RouteController.acceptsGzip("deflate, br"));
+        assertFalse(RouteController.acceptsGzip(null));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteExporterTest {
+
+    private static Route route(int points, long seed) {
+        Random random = new Random(seed);
+        List<double[]> leg = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            leg.add(new double[]{random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180});
+        }
+        return Route.outAndBack(leg);
+    }
+
+    // The String.format writer this replaces
+    private static String legacyGpx(Route route) {
+        StringBuilder gpx = new StringBuilder();
+        gpx.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        gpx.append("<gpx version=\"1.1\" creator=\"RouteService\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n");
+        gpx.append("<trk><name>Generated Route</name><trkseg>\n");
+        for (int i = 0; i < route.pointCount(); i++) {
+            gpx.append(String.format(Locale.US, "<trkpt lat=\"%.6f\" lon=\"%.6f\"></trkpt>\n", route.lat(i), route.lon(i)));
+        }
+        gpx.append("</trkseg></trk>\n</gpx>");
+        return gpx.toString();
+    }
+
+    @Test
+    void testGpxMatchesFormattedOutput() throws Exception {
+        // Enough points to cross several buffer flushes
+        Route route = route(1500, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RouteExporter.writeGpx(route, out);
+        assertEquals(legacyGpx(route), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testFixedPrecisionEdgeCases() throws Exception {
+        Route route = new Route(new double[]{0.0000004, -0.0000004, 9.9999996, -179.9999995, -0.5, 1e-6}, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RouteExporter.writeGpx(route, out);
+        String gpx = out.toString(StandardCharsets.UTF_8);
+
+        assertTrue(gpx.contains("lat=\"0.000000\" lon=\"0.000000\""));
+        assertTrue(gpx.contains("lat=\"10.000000\" lon=\"-180.000000\""));
+        assertTrue(gpx.contains("lat=\"-0.500000\" lon=\"0.000001\""));
+    }
+
+    @Test
+    void testCompactAndPrettyJsonHaveTheApiShape() throws Exception {
+        Route route = route(40, 5);
+        ObjectMapper mapper = new ObjectMapper();
+
+        for (boolean pretty : new boolean[]{false, true}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            RouteExporter.writeJson(route, out, pretty);
+            String json = out.toString(StandardCharsets.UTF_8);
+            assertEquals(pretty, json.contains("\n"));
+
+            JsonNode node = mapper.readTree(json);
+            assertEquals(route.pointCount(), node.get("coordinates").size());
+            for (int i = 0; i < route.pointCount(); i++) {
+                JsonNode point = node.get("coordinates").get(i);
+                assertEquals(route.lat(i), point.get("lat").asDouble(), 5e-7);
+                assertEquals(route.lon(i), point.get("lng").asDouble(), 5e-7);
+            }
+            assertEquals(route.getDistanceMeters(), node.get("distanceMeters").asDouble(), 0.05);
+            assertEquals(route.getActualDistanceKm(), node.get("actualDistanceKm").asDouble(), 5e-5);
+            assertTrue(node.get("success").asBoolean());
+        }
+    }
+
+    @Test
+    void testEmptyRouteIsValidJson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RouteExporter.writeJson(new Route(new double[0], 0), out, false);
+        assertEquals(0, new ObjectMapper().readTree(out.toByteArray()).get("coordinates").size());
+    }
+}
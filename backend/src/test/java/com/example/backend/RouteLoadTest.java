@@ -0,0 +1,139 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Every request is a cold miss against an upstream with fixed latency, so the request thread spends
+// its time blocked waiting for the route. Run with -Pload-test; the profile runs it once per thread mode.
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=" + RouteLoadTest.TOMCAT_THREADS,
+        "server.tomcat.accept-count=2000",
+        "routes.store.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:routes"
+})
+class RouteLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteLoadTest.class);
+    static final int TOMCAT_THREADS = 32;
+    private static final int REQUESTS = 1000;
+    private static final long UPSTREAM_LATENCY_MS = 200;
+
+    // Fixed-latency provider that records how many requests are waiting on it at once
+    static class SlowRoutingEngine implements RoutingEngine {
+        private static final Executor LATENCY = CompletableFuture.delayedExecutor(UPSTREAM_LATENCY_MS, TimeUnit.MILLISECONDS);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peakInFlight = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<ReachableSet> isochronesAsync(double lat, double lon, double maxDistanceKm) {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                List<double[]> ring = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    double angle = 2 * Math.PI * i / 16;
+                    ring.add(new double[]{lat + maxDistanceKm / 111.32 * Math.sin(angle),
+                            lon + maxDistanceKm / (111.32 * Math.cos(Math.toRadians(lat))) * Math.cos(angle)});
+                }
+                return ReachableSet.fromPoints(ring, lat, lon);
+            }, LATENCY);
+        }
+
+        @Override
+        public CompletableFuture<List<double[]>> directionsAsync(double startLat, double startLon, double endLat, double endLon) {
+            return CompletableFuture.supplyAsync(() -> List.of(new double[]{startLat, startLon}, new double[]{endLat, endLon}), LATENCY)
+                    .whenComplete((route, error) -> inFlight.decrementAndGet());
+        }
+    }
+
+    @TestConfiguration
+    static class SlowUpstreamConfig {
+        @Bean
+        @Primary
+        SlowRoutingEngine slowRoutingEngine() {
+            return new SlowRoutingEngine();
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private SlowRoutingEngine upstream;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Test
+    void testConcurrencyAtFixedThreadBudget() throws Exception {
+        assumeTrue(!virtualThreads || Runtime.version().feature() >= 21, "Virtual threads need Java 21+");
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            // Distinct start cells, so every request misses the cache
+            String body = String.format(Locale.US, "{\"lat\":%.4f,\"lon\":-0.12,\"distanceKm\":5}", 40 + i * 0.01);
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/routes"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            assertEquals(200, response.get(120, TimeUnit.SECONDS).statusCode());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Runtime runtime = Runtime.getRuntime();
+        log.info("{} threads, Java {}, heap {} MB, {} Tomcat threads: {} requests in {} s ({} req/s), "
+                        + "peak {} requests waiting upstream, peak {} live JVM threads",
+                virtualThreads ? "Virtual" : "Platform", Runtime.version().feature(), runtime.maxMemory() >> 20,
+                TOMCAT_THREADS, REQUESTS, String.format(Locale.US, "%.2f", seconds),
+                String.format(Locale.US, "%.0f", REQUESTS / seconds), upstream.peakInFlight.get(),
+                threads.getPeakThreadCount());
+
+        // A request holds its thread for an isochrone and a directions call, so a pool of TOMCAT_THREADS
+        // cannot finish the run faster than this
+        double pooledSeconds = (double) REQUESTS / TOMCAT_THREADS * 2 * UPSTREAM_LATENCY_MS / 1000;
+        if (virtualThreads) {
+            assertTrue(upstream.peakInFlight.get() > TOMCAT_THREADS * 4,
+                    "Virtual threads should not be capped by the Tomcat pool");
+            assertTrue(seconds < pooledSeconds, "Virtual threads should beat the pool's best case, took " + seconds + " s");
+            assertTrue(threads.getPeakThreadCount() < REQUESTS, "Waiting requests should not each hold a JVM thread");
+        } else {
+            assertTrue(upstream.peakInFlight.get() <= TOMCAT_THREADS,
+                    "Platform threads cap waiting requests at the Tomcat pool size");
+            assertTrue(seconds >= pooledSeconds * 0.95, "The pool should bound throughput, took " + seconds + " s");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteMemoryTest {
+
+    // A typical 5 km out leg from the directions API
+    private static List<double[]> outLeg(int points) {
+        List<double[]> leg = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            leg.add(new double[]{51.5074 + i * 0.0001, -0.1278 + i * 0.00007});
+        }
+        return leg;
+    }
+
+    // The previous representation: a HashMap per point for both legs, boxed doubles
+    private static Map<String, Object> legacyRoute(List<double[]> outRoute) {
+        List<double[]> full = new ArrayList<>(outRoute);
+        for (int i = outRoute.size() - 2; i >= 0; i--) {
+            full.add(outRoute.get(i));
+        }
+        List<Map<String, Double>> coords = new ArrayList<>();
+        for (double[] p : full) {
+            Map<String, Double> point = new HashMap<>();
+            point.put("lat", p[0]);
+            point.put("lng", p[1]);
+            coords.add(point);
+        }
+        Map<String, Object> route = new HashMap<>();
+        route.put("coordinates", coords);
+        route.put("distanceMeters", 5000.0);
+        route.put("actualDistanceKm", 5.0);
+        route.put("success", true);
+        return route;
+    }
+
+    @Test
+    void testCompactRouteRetainsFarLessThanMapRoute() {
+        List<double[]> leg = outLeg(400);
+        long legacyBytes = GraphLayout.parseInstance(legacyRoute(leg)).totalSize();
+        Route route = Route.outAndBack(leg);
+        long compactBytes = GraphLayout.parseInstance(route).totalSize();
+
+        assertTrue(compactBytes * 10 < legacyBytes, "Compact route should be at least 10x smaller: map route "
+                + legacyBytes + " bytes, compact route " + compactBytes + " bytes");
+        assertTrue(route.sizeBytes() >= compactBytes * 0.9 && route.sizeBytes() <= compactBytes * 1.1,
+                "Cache weigher estimate should track the measured size");
+    }
+
+    @Test
+    void testBackLegIsOutLegReversed() {
+        Route route = Route.outAndBack(outLeg(5));
+        assertEquals(9, route.pointCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(route.lat(i), route.lat(8 - i));
+            assertEquals(route.lon(i), route.lon(8 - i));
+        }
+        assertEquals(2 * GeoDistance.totalDistanceMeters(route.packedOutLeg()), route.getDistanceMeters(), 1e-9);
+    }
+}
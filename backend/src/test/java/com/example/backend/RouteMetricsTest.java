@@ -0,0 +1,78 @@
+package com.example.backend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RouteMetrics metrics = new RouteMetrics(registry);
+
+    private long stageCount(String stage, String outcome) {
+        return registry.get("routes.stage").tag("stage", stage).tag("outcome", outcome).timer().count();
+    }
+
+    private double lookups(String result) {
+        return registry.get("routes.cache.lookups").tag("result", result).counter().count();
+    }
+
+    @Test
+    void testEveryStageOfAnOutAndBackRouteIsRecorded() {
+        RouteStoreTest.CountingEngine engine = new RouteStoreTest.CountingEngine();
+        RouteService service = new RouteService(engine, RouteCache.withDefaults(), IsochroneCache.withDefaults(),
+                LoopRouteGenerator.withDefaults(engine), RouteStore.disabled(), metrics, RouteDemand.withDefaults(),
+                ElevationModel.disabled());
+
+        service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 1);
+        service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 2);
+
+        assertEquals(1, stageCount("isochrones", "success"));
+        assertEquals(1, stageCount("turnaround-selection", "success"));
+        long directions = stageCount("directions", "success");
+        assertTrue(directions > 0);
+        assertEquals(directions, stageCount("route-build", "success"));
+        assertEquals(2, stageCount("cache-lookup", "success"));
+        assertEquals(1, lookups("miss"));
+        assertEquals(1, lookups("hit"));
+        // The ring engine puts every reachable point exactly at the leg distance
+        assertEquals(1, registry.get("routes.turnaround.band").tag("band", "strict").counter().count());
+        assertEquals(directions, registry.get("routes.distance.error").tag("shape", "out-and-back").summary().count());
+    }
+
+    @Test
+    void testFailedCallsAreTimedSeparately() {
+        CompletableFuture<String> failed = metrics.timeAsync(RouteMetrics.Stage.DIRECTIONS,
+                () -> CompletableFuture.failedFuture(new UpstreamException("Directions API error", 503)));
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(1, stageCount("directions", "error"));
+        assertEquals(0, stageCount("directions", "success"));
+    }
+
+    @Test
+    void testTimedFutureIsTheCallItself() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        assertSame(call, metrics.timeAsync(RouteMetrics.Stage.ISOCHRONES, () -> call),
+                "Cancelling the returned future must cancel the provider call");
+        assertEquals(0, stageCount("isochrones", "success"));
+
+        call.complete("done");
+        assertEquals(1, stageCount("isochrones", "success"));
+    }
+
+    @Test
+    void testDistanceErrorIsRelativeToTheRequest() {
+        Route route = Route.outAndBack(List.of(new double[]{51.5, -0.12}, new double[]{51.5 + 2.2 / 111.2, -0.12}));
+
+        metrics.distanceError(RouteShape.OUT_AND_BACK, 4.0, route);
+
+        double percent = registry.get("routes.distance.error").tag("shape", "out-and-back").summary().max();
+        assertEquals(Math.abs(route.getActualDistanceKm() - 4.0) / 4.0 * 100, percent, 1e-9);
+        assertTrue(percent > 5 && percent < 15);
+    }
+}
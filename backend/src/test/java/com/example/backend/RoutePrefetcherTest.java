@@ -0,0 +1,92 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutePrefetcherTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final RouteStoreTest.CountingEngine engine = new RouteStoreTest.CountingEngine();
+    private final RouteDemand demand = RouteDemand.withDefaults();
+    private final RouteService service = new RouteService(engine,
+            new RouteCache(100, 0, Duration.ofMinutes(10), 7, 100, nanos::get), IsochroneCache.withDefaults(),
+            LoopRouteGenerator.withDefaults(engine), RouteStore.disabled(), RouteMetrics.disabled(), demand,
+            ElevationModel.disabled());
+
+    // Not scheduled: the tests run the cycles themselves. Three requests make a key hot; keys expiring
+    // within five minutes are refreshed
+    private RoutePrefetcher prefetcher(double keysPerMinute) {
+        return new RoutePrefetcher(service, demand, UpstreamScheduler.unthrottled(4), false, 0, 50, 3, 2,
+                keysPerMinute, 5, 60);
+    }
+
+    private void request(double lat, int times) {
+        for (int i = 0; i < times; i++) {
+            service.generateBackAndForthRoute(lat, -0.1278, 5.0, i);
+        }
+    }
+
+    @Test
+    void testExpiredHotKeyIsRefilledAndItsNextRequestIsAHit() {
+        RoutePrefetcher prefetcher = prefetcher(4);
+        request(51.5074, 3);
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        RouteKey key = service.keyFor(51.5074, -0.1278, 5.0);
+        assertEquals(0, service.cachedVariantCount(key));
+
+        assertEquals(1, prefetcher.runOnce());
+        assertTrue(service.cachedVariantCount(key) > 0);
+
+        int calls = engine.calls.get();
+        request(51.5074, 2);
+        assertEquals(calls, engine.calls.get(), "Prefetched variants should serve the request");
+        assertEquals(1, demand.prefetchHits(), "Only the first hit after a prefetch is one it earned");
+        assertEquals(0, prefetcher.runOnce(), "A cached key needs nothing");
+    }
+
+    @Test
+    void testKeyAboutToExpireIsRefreshedAhead() {
+        RoutePrefetcher prefetcher = prefetcher(4);
+        request(51.5074, 3);
+        RouteKey key = service.keyFor(51.5074, -0.1278, 5.0);
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(6));
+        assertEquals(Duration.ofMinutes(4), service.cacheTimeToLive(key));
+
+        int calls = engine.calls.get();
+        assertEquals(1, prefetcher.runOnce());
+        assertTrue(engine.calls.get() > calls);
+        assertEquals(Duration.ofMinutes(10), service.cacheTimeToLive(key));
+    }
+
+    @Test
+    void testColdKeysAndTheQuotaBudgetLimitPrefetching() {
+        RoutePrefetcher prefetcher = prefetcher(1);
+        request(51.5074, 3);
+        request(48.8566, 3);
+        request(40.7128, 2);
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+
+        assertEquals(1, prefetcher.runOnce(), "One key per minute");
+        assertEquals(0, prefetcher.runOnce());
+        assertEquals(0, service.cachedVariantCount(service.keyFor(40.7128, -0.1278, 5.0)),
+                "Two requests do not make a key hot");
+    }
+
+    @Test
+    void testDecayHalvesCountsAndForgetsIdleKeys() {
+        request(51.5074, 4);
+        assertEquals(4, demand.hottest(10, 1).get(0).requests());
+
+        demand.decay();
+        assertEquals(2, demand.hottest(10, 1).get(0).requests());
+        demand.decay();
+        demand.decay();
+        assertTrue(demand.hottest(10, 1).isEmpty());
+        assertEquals(0L, demand.stats().get("trackedKeys"));
+    }
+}
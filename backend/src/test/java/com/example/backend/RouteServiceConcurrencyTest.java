@@ -0,0 +1,187 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteServiceConcurrencyTest {
+
+    private static final Executor UPSTREAM_DELAY = CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS);
+
+    // Stands in for the remote API: fixed latency, a ring of reachable points at the requested leg distance
+    static class StubRouteService extends RouteService {
+        final AtomicInteger isochroneCalls = new AtomicInteger();
+        final AtomicInteger directionsCalls = new AtomicInteger();
+
+        @Override
+        CompletableFuture<ReachableSet> getIsochronesAsync(double lat, double lon, double maxDistanceKm) {
+            isochroneCalls.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                Set<double[]> points = new HashSet<>();
+                double dLat = maxDistanceKm / 111.32;
+                double dLon = maxDistanceKm / (111.32 * Math.cos(Math.toRadians(lat)));
+                for (int i = 0; i < 32; i++) {
+                    double angle = 2 * Math.PI * i / 32;
+                    points.add(new double[]{lat + dLat * Math.sin(angle), lon + dLon * Math.cos(angle)});
+                }
+                return ReachableSet.fromPoints(points, lat, lon);
+            }, UPSTREAM_DELAY);
+        }
+
+        @Override
+        CompletableFuture<List<double[]>> getDirectionsAsync(double startLat, double startLon, double endLat, double endLon) {
+            directionsCalls.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                List<double[]> points = new ArrayList<>();
+                for (int i = 0; i <= 10; i++) {
+                    double t = i / 10.0;
+                    points.add(new double[]{startLat + (endLat - startLat) * t, startLon + (endLon - startLon) * t});
+                }
+                return points;
+            }, UPSTREAM_DELAY);
+        }
+    }
+
+    @Test
+    void testConcurrentMissesOnSameKeyShareOneComputation() throws Exception {
+        StubRouteService service = new StubRouteService();
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<Route>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            long seed = i;
+            results.add(pool.submit(() -> {
+                start.await();
+                return service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, seed);
+            }));
+        }
+        start.countDown();
+
+        Route first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<Route> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS), "Concurrent misses should share one route");
+        }
+        assertEquals(1, service.isochroneCalls.get(), "Only one upstream computation should run");
+        pool.shutdown();
+    }
+
+    @Test
+    void testFirstMissFillsTheWholeRotation() throws Exception {
+        StubRouteService service = new StubRouteService();
+        Route first = service.generateBackAndForthRoute(51.5074, -0.1278, 3.0, 1);
+
+        assertEquals(1, service.isochroneCalls.get(), "Reachable set should be fetched once per batch");
+        assertEquals(6, service.directionsCalls.get(), "All six variants should be requested together");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.cachedVariantCount(51.5074, -0.1278, 3.0) < 6 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(6, service.cachedVariantCount(51.5074, -0.1278, 3.0));
+
+        Set<Route> served = Collections.newSetFromMap(new IdentityHashMap<>());
+        served.add(first);
+        for (int i = 0; i < 5; i++) {
+            served.add(service.generateBackAndForthRoute(51.5074, -0.1278, 3.0, 99));
+        }
+        assertEquals(6, served.size(), "Rotation should serve every variant once before repeating");
+        assertSame(first, service.generateBackAndForthRoute(51.5074, -0.1278, 3.0, 99));
+        assertEquals(1, service.isochroneCalls.get(), "Rotation should be served from the cache");
+    }
+
+    @Test
+    void testRejectedKeyCancelsSiblingDirectionsCalls() {
+        AtomicInteger completedCalls = new AtomicInteger();
+        StubRouteService service = new StubRouteService() {
+            @Override
+            CompletableFuture<List<double[]>> getDirectionsAsync(double startLat, double startLon, double endLat, double endLon) {
+                if (directionsCalls.incrementAndGet() == 1) {
+                    return CompletableFuture.failedFuture(new UpstreamException("Directions API error: quota exceeded", 429));
+                }
+                return CompletableFuture.supplyAsync(() -> {
+                    completedCalls.incrementAndGet();
+                    return List.of(new double[]{startLat, startLon}, new double[]{endLat, endLon});
+                }, CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+            }
+        };
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> service.generateBackAndForthRoute(51.5074, -0.1278, 3.0, 1));
+        assertEquals("Directions API error: quota exceeded", e.getMessage());
+        assertEquals(0, completedCalls.get(), "Siblings should be cancelled before they reach the provider");
+    }
+
+    // An engine that throws before handing back a future (a local router rejecting its input, say) must fail
+    // the request and release the key, not leave it waiting forever on an abandoned in-flight future
+    @Test
+    void testEngineThrowingSynchronouslyFailsTheRequest() throws Exception {
+        AtomicInteger isochroneCalls = new AtomicInteger();
+        RoutingEngine engine = new RouteStoreTest.CountingEngine() {
+            @Override
+            public CompletableFuture<ReachableSet> isochronesAsync(double lat, double lon, double maxDistanceKm) {
+                if (isochroneCalls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("Point is not on the road network");
+                }
+                return super.isochronesAsync(lat, lon, maxDistanceKm);
+            }
+        };
+        RouteService service = new RouteService(engine);
+
+        CompletableFuture<Route> failed = service.generateBackAndForthRouteAsync(51.5074, -0.1278, 3.0, 1);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals("Point is not on the road network", e.getCause().getMessage());
+        assertEquals(0, service.inFlightCount(), "The key should be free for the next request");
+
+        Route route = service.generateBackAndForthRouteAsync(51.5074, -0.1278, 3.0, 1).get(5, TimeUnit.SECONDS);
+        assertTrue(route.pointCount() > 0);
+        assertEquals(2, isochroneCalls.get(), "The retry should reach the engine again");
+    }
+
+    // Every stubbed isochrone call is held until all of them are in flight at once, so the requests only
+    // finish if cold misses on different keys overlap upstream instead of queueing behind each other
+    @Test
+    void testColdMissesOnDifferentKeysOverlapUpstream() throws Exception {
+        int threads = 16;
+        AtomicInteger waiting = new AtomicInteger();
+        CompletableFuture<Void> allWaiting = new CompletableFuture<>();
+        StubRouteService service = new StubRouteService() {
+            @Override
+            CompletableFuture<ReachableSet> getIsochronesAsync(double lat, double lon, double maxDistanceKm) {
+                if (waiting.incrementAndGet() == threads) allWaiting.complete(null);
+                return allWaiting.thenCompose(ready -> super.getIsochronesAsync(lat, lon, maxDistanceKm));
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        // Distinct keys per request, so every call is a cold miss that goes upstream
+        List<Future<Route>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            double lat = 51.5 + i * 0.01;
+            long seed = i;
+            results.add(pool.submit(() -> service.generateBackAndForthRoute(lat, -0.12, 5.0, seed)));
+        }
+        for (Future<Route> result : results) {
+            assertNotNull(result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(threads, service.isochroneCalls.get());
+        pool.shutdown();
+    }
+}
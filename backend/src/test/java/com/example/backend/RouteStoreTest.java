@@ -0,0 +1,177 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The writer and reader threads commit on their own, so the tests run outside a test-managed transaction
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RouteStoreTest {
+
+    @Autowired
+    private StoredRouteRepository repository;
+
+    private final List<RouteStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        for (RouteStore store : stores) {
+            store.close();
+        }
+        repository.deleteAllInBatch();
+    }
+
+    private RouteStore newStore() {
+        RouteStore store = new RouteStore(repository, true, 168, 1000, 2, 0);
+        stores.add(store);
+        return store;
+    }
+
+    // Ring isochrone and straight-line directions, counting every upstream call
+    static class CountingEngine implements RoutingEngine {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<ReachableSet> isochronesAsync(double lat, double lon, double maxDistanceKm) {
+            calls.incrementAndGet();
+            List<double[]> ring = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                double angle = 2 * Math.PI * i / 32;
+                ring.add(new double[]{lat + maxDistanceKm / 111.32 * Math.sin(angle),
+                        lon + maxDistanceKm / (111.32 * Math.cos(Math.toRadians(lat))) * Math.cos(angle)});
+            }
+            return CompletableFuture.completedFuture(ReachableSet.fromPoints(ring, lat, lon));
+        }
+
+        @Override
+        public CompletableFuture<List<double[]>> directionsAsync(double startLat, double startLon, double endLat, double endLon) {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(List.of(new double[]{startLat, startLon},
+                    new double[]{(startLat + endLat) / 2, (startLon + endLon) / 2}, new double[]{endLat, endLon}));
+        }
+    }
+
+    private static RouteService service(RoutingEngine engine, RouteStore store) {
+        return new RouteService(engine, RouteCache.withDefaults(), IsochroneCache.withDefaults(),
+                LoopRouteGenerator.withDefaults(engine), store, RouteMetrics.disabled(),
+                RouteDemand.withDefaults(), ElevationModel.disabled());
+    }
+
+    @Test
+    void testEncodingIsCompactAndKeepsCentimeterPrecision() {
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            points.add(new double[]{51.5074 + i * 1.3e-5, -0.1278 - i * 0.7e-5});
+        }
+        Route route = Route.outAndBack(points);
+
+        byte[] encoded = RouteStore.encode(route);
+        Route decoded = RouteStore.decode(encoded, route.getDistanceMeters(), true);
+
+        assertTrue(encoded.length < 500 * 16 / 3, "Deltas should take a fraction of two raw doubles per point");
+        assertEquals(route.pointCount(), decoded.pointCount());
+        for (int i = 0; i < route.pointCount(); i++) {
+            assertEquals(route.lat(i), decoded.lat(i), 1e-7);
+            assertEquals(route.lon(i), decoded.lon(i), 1e-7);
+        }
+        assertEquals(route.getDistanceMeters(), decoded.getDistanceMeters());
+    }
+
+    @Test
+    void testSavedRoutesAreLoadedByKey() throws Exception {
+        RouteStore store = newStore();
+        RouteKey key = RouteCache.withDefaults().keyFor(RouteShape.LOOP, 51.5, -0.12, 5.0);
+        Route loop = Route.loop(List.of(
+                List.of(new double[]{51.5, -0.12}, new double[]{51.51, -0.12}),
+                List.of(new double[]{51.51, -0.12}, new double[]{51.5, -0.11}, new double[]{51.5, -0.12})));
+
+        store.save(key, loop);
+        store.awaitWrites(5, TimeUnit.SECONDS);
+
+        List<Route> loaded = store.loadAsync(key).get(5, TimeUnit.SECONDS);
+        assertEquals(1, loaded.size());
+        assertEquals(RouteShape.LOOP, loaded.get(0).shape());
+        assertEquals(loop.pointCount(), loaded.get(0).pointCount());
+        assertTrue(store.loadAsync(RouteCache.withDefaults().keyFor(51.5, -0.12, 5.0)).get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    void testRestartServesStoredVariantsWithoutUpstreamCalls() throws Exception {
+        CountingEngine before = new CountingEngine();
+        RouteStore firstStore = newStore();
+        Route generated = service(before, firstStore).generateBackAndForthRoute(51.5074, -0.1278, 5.0, 1);
+        assertTrue(before.calls.get() > 0);
+        firstStore.awaitWrites(5, TimeUnit.SECONDS);
+
+        // Fresh memory caches over the same table, as after a restart
+        CountingEngine after = new CountingEngine();
+        Route restored = service(after, newStore()).generateBackAndForthRoute(51.5074, -0.1278, 5.0, 2);
+
+        assertEquals(0, after.calls.get(), "Stored variants should be served without going upstream");
+        assertEquals(generated.pointCount(), restored.pointCount());
+    }
+
+    @Test
+    void testEachKeyKeepsOnlyItsNewestVariants() throws Exception {
+        RouteStore store = newStore();
+        RouteKey key = RouteCache.withDefaults().keyFor(51.5, -0.12, 5.0);
+        for (int i = 0; i < RouteService.MAX_VARIANTS + 4; i++) {
+            store.save(key, Route.outAndBack(List.of(new double[]{51.5, -0.12}, new double[]{51.51 + i * 1e-3, -0.12})));
+        }
+        store.awaitWrites(5, TimeUnit.SECONDS);
+
+        assertEquals(RouteService.MAX_VARIANTS, repository.count());
+        List<Route> loaded = store.loadAsync(key).get(5, TimeUnit.SECONDS);
+        assertEquals(51.51 + (RouteService.MAX_VARIANTS + 3) * 1e-3, loaded.get(0).lat(1), 1e-7, "Newest kept");
+    }
+
+    @Test
+    void testExpiredRowsArePurgedWhileRunning() throws Exception {
+        RouteStore store = newStore();
+        RouteKey key = RouteCache.withDefaults().keyFor(51.5, -0.12, 5.0);
+        Route route = Route.outAndBack(List.of(new double[]{51.5, -0.12}, new double[]{51.51, -0.12}));
+        store.save(key, route);
+        store.awaitWrites(5, TimeUnit.SECONDS);
+        // Written before the store's ttl, as if the replica had been up for weeks
+        repository.save(new StoredRoute("expired:5000", true, route.getDistanceMeters(), RouteStore.encode(route), 1));
+
+        assertEquals(1, store.purgeExpired());
+        assertEquals(1, repository.count());
+        assertEquals(1L, store.stats().get("purged"));
+    }
+
+    @Test
+    void testKeysAbsentFromLoadedIndexSkipTheTable() throws Exception {
+        RouteStore store = newStore();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!(Boolean) store.stats().get("keyIndexLoaded") && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        CompletableFuture<List<Route>> lookup = store.loadAsync(RouteCache.withDefaults().keyFor(10.0, 10.0, 3.0));
+        assertTrue(lookup.isDone(), "An unknown key should be answered from the in-memory index");
+        assertTrue(lookup.join().isEmpty());
+    }
+
+    @Test
+    void testDisabledStoreIgnoresWrites() throws Exception {
+        RouteStore store = RouteStore.disabled();
+        RouteKey key = RouteCache.withDefaults().keyFor(51.5, -0.12, 5.0);
+        store.save(key, Route.outAndBack(List.of(new double[]{51.5, -0.12}, new double[]{51.51, -0.12})));
+
+        assertTrue(store.loadAsync(key).join().isEmpty());
+        assertEquals(0, repository.count());
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTaskScopeTest {
+
+    @Test
+    void testFatalFailureCancelsRunningSiblings() {
+        RouteTaskScope<String> scope = RouteTaskScope.shutdownOnFatalUpstreamError();
+        CompletableFuture<String> sibling = new CompletableFuture<>();
+        CompletableFuture<String> done = CompletableFuture.completedFuture("ok");
+        CompletableFuture<String> failing = new CompletableFuture<>();
+
+        scope.fork(() -> sibling);
+        scope.fork(() -> done);
+        scope.fork(() -> failing);
+        failing.completeExceptionally(new UpstreamException("Directions API error: forbidden", 403));
+
+        assertTrue(scope.isShutdown());
+        assertTrue(sibling.isCancelled());
+        assertEquals("ok", done.join());
+        assertEquals(403, ((UpstreamException) scope.failure()).getStatusCode());
+        assertTrue(scope.fork(CompletableFuture::new).isCompletedExceptionally(), "No new forks after shutdown");
+    }
+
+    @Test
+    void testOrdinaryFailureLeavesSiblingsRunning() {
+        RouteTaskScope<String> scope = RouteTaskScope.shutdownOnFatalUpstreamError();
+        CompletableFuture<String> sibling = new CompletableFuture<>();
+
+        scope.fork(() -> sibling);
+        scope.fork(() -> CompletableFuture.failedFuture(new UpstreamException("Directions API error: no route", 404)));
+
+        assertFalse(scope.isShutdown());
+        assertFalse(sibling.isDone());
+    }
+
+    @Test
+    void testShutdownOnFailureCancelsOnAnyError() {
+        RouteTaskScope<String> scope = RouteTaskScope.shutdownOnFailure();
+        CompletableFuture<String> sibling = scope.fork(CompletableFuture::new);
+        scope.fork(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertTrue(sibling.isCancelled());
+        assertEquals("boom", scope.failure().getMessage());
+    }
+}
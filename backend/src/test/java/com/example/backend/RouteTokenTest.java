@@ -0,0 +1,156 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTokenTest {
+
+    private final RouteStoreTest.CountingEngine engine = new RouteStoreTest.CountingEngine();
+    private final RouteService service = new RouteService(engine);
+
+    @Test
+    void testTokenRoundTripsAndIsUrlSafe() {
+        Route outAndBack = Route.outAndBack(List.of(new double[]{51.5074, -0.1278}, new double[]{51.52, -0.11}));
+        RouteToken token = RouteToken.of(service.keyFor(51.5074, -0.1278, 5.0), outAndBack);
+
+        String encoded = token.encode();
+        assertTrue(encoded.matches("[A-Za-z0-9_-]{1,40}"), encoded);
+        assertEquals(token, RouteToken.parse(encoded));
+        assertTrue(RouteToken.parse(encoded).matches(outAndBack));
+        assertEquals(51.52, token.turnaroundLatitude(), 1e-9);
+
+        Route loop = Route.loop(List.of(List.of(new double[]{51.5074, -0.1278}, new double[]{51.51, -0.12},
+                new double[]{51.5074, -0.1278})));
+        RouteToken loopToken = RouteToken.of(service.keyFor(RouteShape.LOOP, 51.5074, -0.1278, 5.0), loop);
+        assertEquals(loopToken, RouteToken.parse(loopToken.encode()));
+        assertFalse(loopToken.matches(outAndBack));
+    }
+
+    @Test
+    void testTerrainIsPartOfTheToken() {
+        Route outAndBack = Route.outAndBack(List.of(new double[]{51.5074, -0.1278}, new double[]{51.52, -0.11}));
+        RouteKey key = service.keyFor(51.5074, -0.1278, 5.0);
+        RouteToken hilly = RouteToken.of(key.withTerrain(Terrain.HILLY), outAndBack);
+
+        assertEquals(Terrain.HILLY, RouteToken.parse(hilly.encode()).key().terrain());
+        assertNotEquals(RouteToken.of(key, outAndBack).encode(), hilly.encode());
+    }
+
+    @Test
+    void testMalformedTokensAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> RouteToken.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> RouteToken.parse("not a token"));
+        assertThrows(IllegalArgumentException.class, () -> RouteToken.parse("AQA"));
+        String valid = RouteToken.of(service.keyFor(51.5074, -0.1278, 5.0),
+                Route.outAndBack(List.of(new double[]{51.5074, -0.1278}, new double[]{51.52, -0.11}))).encode();
+        assertThrows(IllegalArgumentException.class, () -> RouteToken.parse(valid + "AAAA"));
+    }
+
+    @Test
+    void testCachedRouteIsServedWithoutAdvancingTheRotation() {
+        Route first = service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 1);
+        Route second = service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 2);
+        assertNotEquals(first, second);
+        int calls = engine.calls.get();
+
+        RouteToken token = service.tokenFor(RouteShape.OUT_AND_BACK, 51.5074, -0.1278, 5.0, first);
+        assertSame(first, service.findRoute(RouteToken.parse(token.encode())));
+        assertSame(first, service.findRoute(token));
+        assertEquals(calls, engine.calls.get());
+
+        // The third request still gets the third variant, not a repeat of the first
+        Route third = service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 3);
+        assertNotEquals(first, third);
+        assertNotEquals(second, third);
+    }
+
+    @Test
+    void testEvictedOutAndBackRouteIsRebuiltWithOneDirectionsCall() {
+        Route route = service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 1);
+        RouteToken token = service.tokenFor(RouteShape.OUT_AND_BACK, 51.5074, -0.1278, 5.0, route);
+        service.resetCache();
+        int calls = engine.calls.get();
+
+        Route rebuilt = service.findRoute(token);
+        assertEquals(calls + 1, engine.calls.get());
+        assertTrue(token.matches(rebuilt));
+        assertEquals(route.getDistanceMeters(), rebuilt.getDistanceMeters(), 1.0);
+
+        service.findRoute(token);
+        assertEquals(calls + 1, engine.calls.get(), "The rebuilt route should be cached");
+    }
+
+    @Test
+    void testRebuiltRouteDoesNotJoinTheRotation() {
+        Route route = service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 1);
+        RouteToken token = service.tokenFor(RouteShape.OUT_AND_BACK, 51.5074, -0.1278, 5.0, route);
+        service.resetCache();
+
+        service.findRoute(token);
+        assertEquals(0, service.cachedVariantCount(token.key()));
+    }
+
+    @Test
+    void testTokensOutsideTheServiceLimitsAreNotRebuilt() {
+        RouteKey key = service.keyFor(51.5074, -0.1278, 5.0);
+        Route far = Route.outAndBack(List.of(new double[]{51.5074, -0.1278}, new double[]{51.6, -0.1278}));
+        Route elsewhere = Route.outAndBack(List.of(new double[]{48.8566, 2.3522}, new double[]{48.87, 2.36}));
+        RouteKey tooLong = new RouteKey(RouteShape.OUT_AND_BACK, key.cell(), 500_000);
+        Route near = Route.outAndBack(List.of(new double[]{51.5074, -0.1278}, new double[]{51.52, -0.11}));
+
+        for (RouteToken crafted : List.of(RouteToken.of(key, far), RouteToken.of(key, elsewhere),
+                RouteToken.of(tooLong, near))) {
+            assertFalse(service.isWithinLimits(crafted));
+            assertThrows(IllegalArgumentException.class, () -> service.findRoute(crafted));
+        }
+        assertEquals(0, engine.calls.get(), "No provider call for a crafted token");
+        assertTrue(service.isWithinLimits(RouteToken.of(key, near)));
+    }
+
+    // The provider snaps the start onto the nearest path, here a street just across the cell's east edge, so
+    // the token's start (the route's first vertex) is in the neighbouring cell
+    @Test
+    void testSnappedStartOutsideTheKeyCellIsStillServedAndRebuilt() {
+        RouteKey key = service.keyFor(51.5074, -0.1278, 5.0);
+        double[] cell = GeoCell.bounds(key.cell());
+        double lat = 51.5074, lon = cell[3] - 1e-5;
+        double streetLon = cell[3] + 0.0004;
+        RouteStoreTest.CountingEngine snapping = new RouteStoreTest.CountingEngine() {
+            @Override
+            public CompletableFuture<List<double[]>> directionsAsync(double startLat, double startLon,
+                                                                     double endLat, double endLon) {
+                calls.incrementAndGet();
+                return CompletableFuture.completedFuture(List.of(new double[]{startLat, streetLon},
+                        new double[]{(startLat + endLat) / 2, (streetLon + endLon) / 2}, new double[]{endLat, endLon}));
+            }
+        };
+        RouteService snappingService = new RouteService(snapping);
+
+        Route route = snappingService.generateBackAndForthRoute(lat, lon, 5.0, 1);
+        RouteToken token = snappingService.tokenFor(RouteShape.OUT_AND_BACK, lat, lon, 5.0, route);
+        assertEquals(key, token.key());
+        assertNotEquals(key.cell(), GeoCell.geohash(token.startLatitude(), token.startLongitude(), key.cell().length()));
+
+        assertSame(route, snappingService.findRoute(token));
+        assertTrue(snappingService.isWithinLimits(token));
+
+        snappingService.resetCache();
+        int calls = snapping.calls.get();
+        assertTrue(token.matches(snappingService.findRoute(token)));
+        assertEquals(calls + 1, snapping.calls.get());
+    }
+
+    @Test
+    void testEvictedLoopIsNotFound() {
+        Route loop = service.generateLoopRouteAsync(51.5074, -0.1278, 5.0, 1).join();
+        RouteToken token = service.tokenFor(RouteShape.LOOP, 51.5074, -0.1278, 5.0, loop);
+        assertSame(loop, service.findRoute(token));
+
+        service.resetCache();
+        assertThrows(RouteNotFoundException.class, () -> service.findRoute(token));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.backend;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteWarmupTest {
+
+    @TempDir
+    Path dir;
+
+    private final RouteStoreTest.CountingEngine engine = new RouteStoreTest.CountingEngine();
+    // Outlives the replicas, as the shared tier does across restarts
+    private final InMemorySharedRouteCache sharedStore = new InMemorySharedRouteCache();
+
+    private SharedCacheTier tier() {
+        return new SharedCacheTier(sharedStore, Duration.ofMinutes(10), Duration.ofSeconds(30), 5,
+                Duration.ofSeconds(30), System::nanoTime);
+    }
+
+    private RouteService replica(RouteDemand demand, SharedCacheTier tier) {
+        return new RouteService(engine, RouteCache.withDefaults(), IsochroneCache.withDefaults(),
+                LoopRouteGenerator.withDefaults(engine), RouteStore.disabled(), RouteMetrics.disabled(), demand,
+                ElevationModel.disabled(), tier);
+    }
+
+    private RouteWarmup warmup(RouteService service, RouteDemand demand, int iterations) {
+        return new RouteWarmup(service, demand, new MockEnvironment(), true, iterations, 20,
+                dir.resolve("hot-keys.json").toString(), 200, false);
+    }
+
+    @Test
+    void testGenerationIsExercisedWithoutTheProviderOrTheCache() {
+        RouteDemand demand = RouteDemand.withDefaults();
+        RouteService service = replica(demand, SharedCacheTier.disabled());
+
+        assertEquals(3, warmup(service, demand, 3).exercise());
+        assertEquals(0, engine.calls.get());
+        assertEquals(0, service.cachedVariantCount(service.keyFor(51.5074, -0.1278, 10)));
+        assertTrue(demand.hottest(10, 1).isEmpty());
+    }
+
+    @Test
+    void testHotKeysSurviveARestart() throws Exception {
+        RouteDemand before = RouteDemand.withDefaults();
+        SharedCacheTier tier = tier();
+        RouteService first = replica(before, tier);
+        for (int i = 0; i < 3; i++) {
+            first.generateRoute(RouteShape.OUT_AND_BACK, Terrain.ANY, 51.5074, -0.1278, 5.0, i);
+        }
+        first.generateRoute(RouteShape.LOOP, Terrain.ANY, 48.8566, 2.3522, 3.0, 1);
+        tier.awaitWrites(5, TimeUnit.SECONDS);
+        warmup(first, before, 0).writeSnapshot();
+        assertTrue(Files.exists(dir.resolve("hot-keys.json")));
+        int calls = engine.calls.get();
+
+        RouteDemand after = RouteDemand.withDefaults();
+        RouteService second = replica(after, tier());
+        assertEquals(2, warmup(second, after, 0).restoreSnapshot());
+
+        RouteKey key = second.keyFor(51.5074, -0.1278, 5.0);
+        assertEquals(key, after.hottest(1, 3).get(0).key(), "The prefetcher sees the demand at once");
+        assertTrue(second.cachedVariantCount(key) > 0);
+        assertTrue(second.cachedVariantCount(second.keyFor(RouteShape.LOOP, 48.8566, 2.3522, 3.0)) > 0);
+        second.generateRoute(RouteShape.OUT_AND_BACK, Terrain.ANY, 51.5074, -0.1278, 5.0, 9);
+        assertEquals(calls, engine.calls.get());
+    }
+
+    @Test
+    void testUnreadableSnapshotIsIgnored() throws Exception {
+        Files.writeString(dir.resolve("hot-keys.json"), "[{\"type\":\"figure-eight\"");
+        RouteDemand demand = RouteDemand.withDefaults();
+
+        assertEquals(0, warmup(replica(demand, SharedCacheTier.disabled()), demand, 0).restoreSnapshot());
+        assertTrue(demand.hottest(10, 1).isEmpty());
+    }
+
+    @Test
+    void testIdleReplicaKeepsThePreviousSnapshot() throws Exception {
+        Files.writeString(dir.resolve("hot-keys.json"), "[]");
+        RouteDemand demand = RouteDemand.withDefaults();
+
+        warmup(replica(demand, SharedCacheTier.disabled()), demand, 0).writeSnapshot();
+        assertEquals(List.of("[]"), Files.readAllLines(dir.resolve("hot-keys.json")));
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.backend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedCacheTierTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final InMemorySharedRouteCache store = new InMemorySharedRouteCache(nanos::get);
+    private final RouteStoreTest.CountingEngine engine = new RouteStoreTest.CountingEngine();
+
+    // One replica: its own L1, its own view of the shared store
+    private SharedCacheTier tier(SharedRouteCache store) {
+        return new SharedCacheTier(store, Duration.ofMinutes(10), Duration.ofSeconds(30), 5, Duration.ofSeconds(30),
+                System::nanoTime);
+    }
+
+    private RouteService replica(SharedCacheTier tier) {
+        return new RouteService(engine, RouteCache.withDefaults(), IsochroneCache.withDefaults(),
+                LoopRouteGenerator.withDefaults(engine), RouteStore.disabled(), RouteMetrics.disabled(),
+                RouteDemand.withDefaults(), ElevationModel.disabled(), tier);
+    }
+
+    @Test
+    void testReplicasShareVariantsAndOneRotation() throws Exception {
+        SharedCacheTier tierA = tier(store);
+        RouteService a = replica(tierA);
+        RouteService b = replica(tier(store));
+
+        Set<Route> served = new HashSet<>();
+        served.add(a.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 1));
+        tierA.awaitWrites(5, TimeUnit.SECONDS);
+        int calls = engine.calls.get();
+
+        for (int i = 0; i < RouteService.MAX_VARIANTS - 1; i++) {
+            RouteService replica = i % 2 == 0 ? b : a;
+            served.add(replica.generateBackAndForthRoute(51.5074, -0.1278, 5.0, i));
+        }
+        assertEquals(calls, engine.calls.get(), "The second replica should not generate the key again");
+        assertEquals(RouteService.MAX_VARIANTS, served.size(), "Alternating replicas still walk one rotation");
+        assertEquals(1L, ((Map<?, ?>) b.cacheStats().get("shared")).get("hits"));
+    }
+
+    @Test
+    void testReplicaWaitsForTheOneHoldingTheLock() throws Exception {
+        RouteService b = replica(tier(store));
+        RouteKey key = b.keyFor(51.5074, -0.1278, 5.0);
+        assertTrue(store.tryLock(key.toString(), "replica-a", Duration.ofSeconds(30)));
+
+        CompletableFuture<Route> waiting = b.generateBackAndForthRouteAsync(51.5074, -0.1278, 5.0, 1);
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+
+        Route fromA = Route.outAndBack(List.of(new double[]{51.5074, -0.1278}, new double[]{51.52, -0.11}));
+        store.appendVariant(key.toString(), SharedCacheTier.encode(fromA), RouteService.MAX_VARIANTS, Duration.ofMinutes(10));
+        assertTrue(RouteToken.of(key, fromA).matches(waiting.get(5, TimeUnit.SECONDS)));
+        assertEquals(0, engine.calls.get());
+    }
+
+    @Test
+    void testWaiterGeneratesWhenTheLockIsReleasedEmpty() throws Exception {
+        RouteService b = replica(tier(store));
+        RouteKey key = b.keyFor(51.5074, -0.1278, 5.0);
+        store.tryLock(key.toString(), "replica-a", Duration.ofSeconds(30));
+
+        CompletableFuture<Route> waiting = b.generateBackAndForthRouteAsync(51.5074, -0.1278, 5.0, 1);
+        store.unlock(key.toString(), "replica-a");
+        assertNotNull(waiting.get(5, TimeUnit.SECONDS));
+        assertTrue(engine.calls.get() > 0);
+    }
+
+    @Test
+    void testOutageDegradesToTheLocalCacheAndIsRetried() throws Exception {
+        Unreachable unreachable = new Unreachable();
+        SharedCacheTier tier = new SharedCacheTier(unreachable, Duration.ofMinutes(10), Duration.ofSeconds(30), 5,
+                Duration.ofSeconds(30), nanos::get);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RouteService service = new RouteService(engine, RouteCache.withDefaults(), IsochroneCache.withDefaults(),
+                LoopRouteGenerator.withDefaults(engine), RouteStore.disabled(), new RouteMetrics(registry),
+                RouteDemand.withDefaults(), ElevationModel.disabled(), tier);
+
+        Route first = service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 1);
+        int calls = engine.calls.get();
+        Route second = service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 2);
+        assertNotEquals(first, second, "The local rotation takes over");
+        assertEquals(calls, engine.calls.get());
+        assertFalse(tier.isAvailable());
+        assertEquals(1, unreachable.attempts.get(), "Not asked again while it is down");
+        assertEquals(0, registry.get("routes.shared.available").gauge().value());
+        assertEquals(1, registry.get("routes.shared.errors").functionCounter().count());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        assertTrue(tier.isAvailable());
+        service.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 3);
+        assertEquals(2, unreachable.attempts.get());
+    }
+
+    @Test
+    void testEncodingKeepsShapeDistanceAndToken() {
+        Route loop = Route.loop(List.of(List.of(new double[]{51.5074, -0.1278}, new double[]{51.51, -0.12},
+                new double[]{51.5074, -0.1278})));
+        Route decoded = SharedCacheTier.decode(SharedCacheTier.encode(loop));
+
+        assertEquals(RouteShape.LOOP, decoded.shape());
+        assertEquals(loop.getDistanceMeters(), decoded.getDistanceMeters());
+        RouteKey key = new RouteKey(RouteShape.LOOP, "gcpvj0d", 5000);
+        assertTrue(RouteToken.of(key, loop).matches(decoded));
+    }
+
+    @Test
+    void testUnreadableEntriesAreAMissNotAnError() {
+        SharedCacheTier tier = tier(store);
+        RouteService replica = replica(tier);
+        RouteKey key = replica.keyFor(51.5074, -0.1278, 5.0);
+        byte[] current = SharedCacheTier.encode(Route.outAndBack(List.of(new double[]{51.5074, -0.1278},
+                new double[]{51.52, -0.11})));
+        byte[] otherVersion = current.clone();
+        otherVersion[0] = SharedCacheTier.ENCODING_VERSION + 1;
+        byte[] corrupt = {SharedCacheTier.ENCODING_VERSION, 1, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xFF, (byte) 0xFF, 0x7F};
+        store.replaceVariants(key.toString(), List.of(otherVersion, corrupt), Duration.ofMinutes(10));
+
+        assertNotNull(replica.generateBackAndForthRoute(51.5074, -0.1278, 5.0, 1));
+        assertTrue(engine.calls.get() > 0, "Nothing readable in the shared tier, so the key is generated");
+        Map<?, ?> stats = (Map<?, ?>) replica.cacheStats().get("shared");
+        assertEquals(2L, stats.get("unreadable"));
+        assertEquals(0L, stats.get("errors"));
+        assertTrue(tier.isAvailable(), "A bad entry does not take the tier down");
+    }
+
+    // Every call fails, like a store that is down
+    private static final class Unreachable implements SharedRouteCache {
+        final AtomicLong attempts = new AtomicLong();
+
+        private RuntimeException down() {
+            attempts.incrementAndGet();
+            return new IllegalStateException("Connection refused");
+        }
+
+        public List<byte[]> variants(String key) { throw down(); }
+        public void appendVariant(String key, byte[] route, int maxVariants, Duration ttl) { throw down(); }
+        public void replaceVariants(String key, List<byte[]> routes, Duration ttl) { throw down(); }
+        public long nextRotation(String key, Duration ttl) { throw down(); }
+        public boolean tryLock(String key, String owner, Duration lease) { throw down(); }
+        public boolean isLocked(String key) { throw down(); }
+        public void unlock(String key, String owner) { throw down(); }
+        public void clear() { throw down(); }
+        public void close() { }
+    }
+}
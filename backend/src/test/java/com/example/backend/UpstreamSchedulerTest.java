@@ -0,0 +1,185 @@
+package com.example.backend;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamSchedulerTest {
+
+    private HttpServer server;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final List<String> served = new CopyOnWriteArrayList<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void startStubServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/ok", exchange -> {
+            hits.incrementAndGet();
+            served.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            sleep(30);
+            respond(exchange, 200, "ok");
+        });
+        // Holds the first request until the test releases it
+        server.createContext("/held", exchange -> {
+            served.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "ok");
+        });
+        server.createContext("/throttled-twice",
+                exchange -> respond(exchange, hits.incrementAndGet() <= 2 ? 429 : 200, "ok"));
+        server.createContext("/down", exchange -> {
+            hits.incrementAndGet();
+            respond(exchange, 503, "{\"error\":\"unavailable\"}");
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    private CompletableFuture<String> post(UpstreamScheduler scheduler, String path, String body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return scheduler.submit("Directions", body,
+                () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+    }
+
+    @Test
+    void testIdenticalRequestsShareOneExchange() {
+        UpstreamScheduler scheduler = UpstreamScheduler.unthrottled(8);
+
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(post(scheduler, "/ok", "same"));
+        }
+        calls.add(post(scheduler, "/ok", "other"));
+
+        for (CompletableFuture<String> call : calls) {
+            assertEquals("ok", call.orTimeout(5, TimeUnit.SECONDS).join());
+        }
+        assertEquals(2, hits.get());
+    }
+
+    @Test
+    void testCancellingOneSharedCallerKeepsTheExchangeForTheOthers() {
+        UpstreamScheduler scheduler = UpstreamScheduler.unthrottled(8);
+
+        CompletableFuture<String> cancelled = post(scheduler, "/ok", "same");
+        CompletableFuture<String> kept = post(scheduler, "/ok", "same");
+        cancelled.cancel(true);
+
+        assertEquals("ok", kept.orTimeout(5, TimeUnit.SECONDS).join());
+    }
+
+    @Test
+    void testInteractiveCallsOvertakeQueuedBatchCalls() {
+        UpstreamScheduler scheduler = UpstreamScheduler.unthrottled(1);
+
+        CompletableFuture<String> blocker = post(scheduler, "/held", "blocker");
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String body = "batch-" + i;
+            calls.add(UpstreamPriority.BATCH.run(() -> post(scheduler, "/held", body)));
+        }
+        calls.add(UpstreamPriority.PREFETCH.run(() -> post(scheduler, "/held", "prefetch")));
+        calls.add(post(scheduler, "/held", "interactive"));
+        release.countDown();
+
+        blocker.orTimeout(5, TimeUnit.SECONDS).join();
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).orTimeout(5, TimeUnit.SECONDS).join();
+        assertEquals(List.of("blocker", "interactive", "batch-0", "batch-1", "batch-2", "prefetch"), served);
+    }
+
+    @Test
+    void testTokenBucketSpacesCallsBeyondTheBurst() {
+        // 600 per minute: one token every 100 ms after a burst of one
+        UpstreamScheduler scheduler = new UpstreamScheduler(8, 0, 600, 1, 1, 0, 0, 0, 0);
+
+        long started = System.nanoTime();
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(post(scheduler, "/ok", "call-" + i));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).orTimeout(5, TimeUnit.SECONDS).join();
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertTrue(elapsedMs >= 190, "Three calls at 10/s with a burst of one take at least 200 ms, took " + elapsedMs);
+    }
+
+    @Test
+    void testThrottledCallsAreRetried() {
+        UpstreamScheduler scheduler = new UpstreamScheduler(8, 0, 0, 1, 3, 1, 10, 0, 0);
+
+        assertEquals("ok", post(scheduler, "/throttled-twice", "retry").orTimeout(5, TimeUnit.SECONDS).join());
+        assertEquals(3, hits.get());
+    }
+
+    @Test
+    void testCircuitOpensAfterRepeatedOutages() {
+        UpstreamScheduler scheduler = new UpstreamScheduler(8, 0, 0, 1, 1, 0, 0, 2, 60000);
+
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<String> call = post(scheduler, "/down", "call-" + i);
+            CompletionException e = assertThrows(CompletionException.class, () -> call.orTimeout(5, TimeUnit.SECONDS).join());
+            assertEquals(503, ((UpstreamException) e.getCause()).getStatusCode());
+        }
+
+        CompletableFuture<String> rejected = post(scheduler, "/down", "call-2");
+        assertTrue(rejected.isCompletedExceptionally(), "An open circuit should fail calls without queueing them");
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(e.getCause().getMessage().contains("circuit open"));
+        assertTrue(((UpstreamException) e.getCause()).isTransient());
+        assertEquals(2, hits.get());
+        assertEquals("open", scheduler.stats().get("circuit"));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.backend;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Haversine per point/segment (the old RouteService.haversine) vs the GeoDistance kernels, over a
+// 50 km isochrone's worth of vertices and a long route polyline.
+// Run with: java -jar target/benchmarks.jar GeoDistanceBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeoDistanceBenchmark {
+
+    private static final double START_LAT = 51.5074;
+    private static final double START_LON = -0.1278;
+
+    @Param({"20000"})
+    public int points;
+
+    private double[] vertices;
+    private double[] polyline;
+
+    @Setup
+    public void buildPoints() {
+        Random random = new Random(42);
+        vertices = new double[2 * points];
+        for (int i = 0; i < points; i++) {
+            double r = 25 * Math.sqrt(random.nextDouble());
+            double angle = 2 * Math.PI * random.nextDouble();
+            vertices[2 * i] = START_LAT + r / 111.32 * Math.sin(angle);
+            vertices[2 * i + 1] = START_LON + r / (111.32 * Math.cos(Math.toRadians(START_LAT))) * Math.cos(angle);
+        }
+
+        polyline = new double[2 * points];
+        polyline[0] = START_LAT;
+        polyline[1] = START_LON;
+        for (int i = 2; i < polyline.length; i += 2) {
+            polyline[i] = polyline[i - 2] + (random.nextDouble() - 0.5) * 2e-4;
+            polyline[i + 1] = polyline[i - 1] + (random.nextDouble() - 0.5) * 2e-4;
+        }
+    }
+
+    @Benchmark
+    public double distancesHaversine() {
+        double sum = 0;
+        for (int i = 0; i < points; i++) {
+            sum += legacyHaversine(START_LAT, START_LON, vertices[2 * i], vertices[2 * i + 1]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double distancesLocalFrame() {
+        GeoDistance.Local local = new GeoDistance.Local(START_LAT, START_LON);
+        double sum = 0;
+        for (int i = 0; i < points; i++) {
+            sum += local.distanceKm(vertices[2 * i], vertices[2 * i + 1]);
+        }
+        return sum;
+    }
+
+    // Ordering-only use: count points inside a radius without any square root
+    @Benchmark
+    public int withinRadiusSquared() {
+        GeoDistance.Local local = new GeoDistance.Local(START_LAT, START_LON);
+        int count = 0;
+        for (int i = 0; i < points; i++) {
+            if (local.isWithinKm(vertices[2 * i], vertices[2 * i + 1], 12.5)) count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public double totalDistancePerSegment() {
+        double dist = 0;
+        for (int i = 2; i < polyline.length; i += 2) {
+            dist += legacyHaversine(polyline[i - 2], polyline[i - 1], polyline[i], polyline[i + 1]) * 1000;
+        }
+        return dist;
+    }
+
+    @Benchmark
+    public double totalDistancePacked() {
+        return GeoDistance.totalDistanceMeters(polyline);
+    }
+
+    static double legacyHaversine(double lat1, double lon1, double lat2, double lon2) {
+        final double R = 6371;
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.backend;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// org.json DOM plus a HashSet of arrays (the old OrsClient.parseIsochrones) vs the streaming parser, over
+// a two-band isochrone response fed in 16 KB chunks as the HTTP client delivers it.
+// Run with: java -jar target/benchmarks.jar GeoJsonParseBenchmark -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeoJsonParseBenchmark {
+
+    private static final double START_LAT = 51.5074;
+    private static final double START_LON = -0.1278;
+    private static final int CHUNK = 16 * 1024;
+
+    @Param({"5000"})
+    public int verticesPerBand;
+
+    private String body;
+    private byte[] bytes;
+
+    @Setup
+    public void buildResponse() {
+        StringBuilder json = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int band = 1; band <= 2; band++) {
+            if (band > 1) json.append(',');
+            json.append("{\"type\":\"Feature\",\"properties\":{\"value\":").append(band * 2500)
+                    .append("},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[");
+            for (int i = 0; i <= verticesPerBand; i++) {
+                // The outer band shares every other vertex with the inner one; the ring ends on its first vertex
+                double angle = 2 * Math.PI * (i % verticesPerBand) / verticesPerBand;
+                double r = band == 2 && i % 2 == 0 ? 2.5 : band * 2.5;
+                if (i > 0) json.append(',');
+                json.append(String.format(Locale.US, "[%.6f,%.6f]",
+                        START_LON + r / 69.4 * Math.cos(angle), START_LAT + r / 111.32 * Math.sin(angle)));
+            }
+            json.append("]]}}");
+        }
+        body = json.append("]}").toString();
+        bytes = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ReachableSet domAndArraySet() {
+        JSONObject json = new JSONObject(body);
+        Set<double[]> points = new HashSet<>();
+        JSONArray features = json.getJSONArray("features");
+        for (int i = 0; i < features.length(); i++) {
+            JSONArray coordinates = features.getJSONObject(i).getJSONObject("geometry").getJSONArray("coordinates");
+            for (int j = 0; j < coordinates.length(); j++) {
+                JSONArray polygon = coordinates.getJSONArray(j);
+                for (int k = 0; k < polygon.length(); k++) {
+                    JSONArray coord = polygon.getJSONArray(k);
+                    points.add(new double[]{coord.getDouble(1), coord.getDouble(0)});
+                }
+            }
+        }
+        return ReachableSet.fromPoints(points, START_LAT, START_LON);
+    }
+
+    @Benchmark
+    public ReachableSet streamingDeduplicated() {
+        GeoJsonCoordinates parsed = new GeoJsonCoordinates(true);
+        for (int i = 0; i < bytes.length; i += CHUNK) {
+            parsed.feed(ByteBuffer.wrap(bytes, i, Math.min(CHUNK, bytes.length - i)));
+        }
+        parsed.finish();
+        return parsed.reachableSet(START_LAT, START_LON);
+    }
+}
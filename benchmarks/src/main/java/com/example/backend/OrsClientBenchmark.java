@@ -0,0 +1,81 @@
+package com.example.backend;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Per-call HttpClient (the old getDirections) vs the shared OrsClient, against a local stub server.
+// Run with: java -jar target/benchmarks.jar OrsClientBenchmark -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Without TCP_NODELAY the stub server adds ~40 ms of delayed-ACK stall to every keep-alive request
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class OrsClientBenchmark {
+
+    private HttpServer server;
+    private String baseUrl;
+    private OrsClient pooledClient;
+
+    @Setup
+    public void startStubServer() throws Exception {
+        byte[] directions = stubDirections(200).getBytes(StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, directions.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(directions);
+            }
+        });
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        pooledClient = OrsClient.forBaseUrl(baseUrl);
+    }
+
+    @TearDown
+    public void stopStubServer() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public List<double[]> perCallClient() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/v2/directions/foot-walking/geojson"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"coordinates\":[[-0.1278,51.5074],[-0.1,51.52]]}"))
+                .build();
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return OrsClient.parseDirections(response.body());
+    }
+
+    @Benchmark
+    public List<double[]> pooledClient() {
+        return pooledClient.directionsAsync(51.5074, -0.1278, 51.52, -0.1).join();
+    }
+
+    static String stubDirections(int points) {
+        StringBuilder json = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[{\"geometry\":{\"coordinates\":[");
+        for (int i = 0; i < points; i++) {
+            if (i > 0) json.append(',');
+            json.append('[').append(-0.1278 + i * 1e-4).append(',').append(51.5074 + i * 1e-4).append(']');
+        }
+        return json.append("],\"type\":\"LineString\"}}]}").toString();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.backend;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Local stand-in for openrouteservice: answers every isochrone and directions request with the fixture for
+// one route length, so the whole pipeline (HTTP, streaming parse, selection, route building, caching) can be
+// measured offline. Point OrsClient.forBaseUrl at baseUrl().
+final class RecordedProvider implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+
+    RecordedProvider(double routeKm) throws IOException {
+        byte[] isochrone = RouteFixtures.isochrone(routeKm).getBytes(StandardCharsets.UTF_8);
+        byte[] directions = RouteFixtures.directions(routeKm).getBytes(StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v2/isochrones/", exchange -> respond(exchange, isochrone));
+        server.createContext("/v2/directions/", exchange -> respond(exchange, directions));
+        // A variant batch sends its directions calls in parallel, as the real provider would serve them
+        executor = Executors.newFixedThreadPool(8, runnable -> {
+            Thread thread = new Thread(runnable, "recorded-provider");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        exchange.getResponseHeaders().add("Content-Type", "application/geo+json;charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
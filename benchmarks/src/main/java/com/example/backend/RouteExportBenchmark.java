@@ -0,0 +1,134 @@
+package com.example.backend;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// String-building GPX/JSON export (the old RouteService + controller path) vs RouteExporter streaming
+// into the response stream. A 50 km route from the directions API has a few thousand points.
+// Run with: java -jar target/benchmarks.jar RouteExportBenchmark -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteExportBenchmark {
+
+    @Param({"500", "4000"})
+    public int outLegPoints;
+
+    private Route route;
+    private Map<String, Object> legacyRoute;
+    private final CountingOutputStream response = new CountingOutputStream();
+
+    @Setup
+    public void buildRoute() {
+        List<double[]> leg = new ArrayList<>(outLegPoints);
+        for (int i = 0; i < outLegPoints; i++) {
+            leg.add(new double[]{51.5074 + i * 1.1e-4, -0.1278 + i * 0.7e-4});
+        }
+        route = Route.outAndBack(leg);
+        legacyRoute = LegacyExport.toMap(route);
+    }
+
+    @Benchmark
+    public long legacyGpx() throws IOException {
+        String gpx = LegacyExport.gpx(legacyRoute);
+        // Once for Content-Length, once by the String message converter
+        long contentLength = gpx.getBytes(StandardCharsets.UTF_8).length;
+        response.write(gpx.getBytes(StandardCharsets.UTF_8));
+        return contentLength;
+    }
+
+    @Benchmark
+    public long streamedGpx() throws IOException {
+        RouteExporter.writeGpx(route, response);
+        return response.count;
+    }
+
+    @Benchmark
+    public long legacyJson() throws IOException {
+        response.write(LegacyExport.json(legacyRoute).getBytes(StandardCharsets.UTF_8));
+        return response.count;
+    }
+
+    @Benchmark
+    public long streamedJsonCompact() throws IOException {
+        RouteExporter.writeJson(route, response, false);
+        return response.count;
+    }
+
+    @Benchmark
+    public long streamedJsonPretty() throws IOException {
+        RouteExporter.writeJson(route, response, true);
+        return response.count;
+    }
+
+    // Stands in for the servlet output stream
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    // Copy of the writers RouteExporter replaced, kept here as the baseline
+    static final class LegacyExport {
+
+        static Map<String, Object> toMap(Route route) {
+            List<Map<String, Double>> coords = new ArrayList<>();
+            for (int i = 0; i < route.pointCount(); i++) {
+                Map<String, Double> point = new HashMap<>();
+                point.put("lat", route.lat(i));
+                point.put("lng", route.lon(i));
+                coords.add(point);
+            }
+            Map<String, Object> routeData = new HashMap<>();
+            routeData.put("coordinates", coords);
+            routeData.put("distanceMeters", route.getDistanceMeters());
+            routeData.put("actualDistanceKm", route.getActualDistanceKm());
+            routeData.put("success", true);
+            return routeData;
+        }
+
+        static String json(Map<String, Object> route) {
+            return new JSONObject(route).toString(2);
+        }
+
+        @SuppressWarnings("unchecked")
+        static String gpx(Map<String, Object> route) {
+            List<Map<String, Double>> coords = (List<Map<String, Double>>) route.get("coordinates");
+
+            StringBuilder gpx = new StringBuilder();
+            gpx.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            gpx.append("<gpx version=\"1.1\" creator=\"RouteService\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n");
+            gpx.append("<trk><name>Generated Route</name><trkseg>\n");
+
+            for (Map<String, Double> point : coords) {
+                gpx.append(String.format(Locale.US,
+                        "<trkpt lat=\"%.6f\" lon=\"%.6f\"></trkpt>\n",
+                        point.get("lat"), point.get("lng")));
+            }
+
+            gpx.append("</trkseg></trk>\n</gpx>");
+            return gpx.toString();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.backend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+// Provider responses in openrouteservice's foot-walking GeoJSON format, shaped and sized like recorded ones
+// for a route of the given length: an isochrone ring of about 200 + 100 per km vertices whose straight-line
+// radius wanders between 65% and 100% of the leg (walking distance along streets is longer than the crow
+// flies), and a directions line of about 60 points per leg km with a step every 25 points. Seeded, so every
+// run parses the same bytes.
+final class RouteFixtures {
+
+    static final double START_LAT = 51.5074;
+    static final double START_LON = -0.1278;
+
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
+    private RouteFixtures() {
+    }
+
+    static int isochroneVertices(double routeKm) {
+        return (int) (200 + 100 * routeKm);
+    }
+
+    static int directionsPoints(double routeKm) {
+        return Math.max(20, (int) (60 * routeKm / 2));
+    }
+
+    static String isochrone(double routeKm) {
+        double legKm = routeKm / 2;
+        int vertices = isochroneVertices(routeKm);
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(vertices * 24 + 512);
+        json.append("{\"type\":\"FeatureCollection\",\"bbox\":[")
+                .append(coordinate(START_LON - legKm / kmPerDegreeLon())).append(',')
+                .append(coordinate(START_LAT - legKm / KM_PER_DEGREE_LAT)).append(',')
+                .append(coordinate(START_LON + legKm / kmPerDegreeLon())).append(',')
+                .append(coordinate(START_LAT + legKm / KM_PER_DEGREE_LAT))
+                .append("],\"features\":[{\"type\":\"Feature\",\"properties\":{\"group_index\":0,\"value\":")
+                .append(legKm * 1000).append(",\"center\":[").append(START_LON).append(',').append(START_LAT)
+                .append("]},\"geometry\":{\"coordinates\":[[");
+        // A random walk on the radius, so neighbouring vertices are at similar distances like street ends are
+        double ratio = 0.85;
+        String first = null;
+        for (int i = 0; i < vertices; i++) {
+            ratio = Math.max(0.65, Math.min(1.0, ratio + (random.nextDouble() - 0.5) * 0.04));
+            double angle = 2 * Math.PI * i / vertices;
+            String position = position(START_LAT + legKm * ratio / KM_PER_DEGREE_LAT * Math.sin(angle),
+                    START_LON + legKm * ratio / kmPerDegreeLon() * Math.cos(angle));
+            if (first == null) first = position;
+            json.append(position).append(',');
+        }
+        // Rings close on their first vertex
+        json.append(first).append("]],\"type\":\"Polygon\"}}],\"metadata\":{\"attribution\":\"openrouteservice.org | OpenStreetMap contributors\",")
+                .append("\"service\":\"isochrones\",\"query\":{\"locations\":[").append(position(START_LAT, START_LON))
+                .append("],\"profile\":\"foot-walking\",\"range_type\":\"distance\",\"range\":[")
+                .append(legKm * 1000).append("]}}}");
+        return json.toString();
+    }
+
+    // Out leg from the start towards the north-east, meandering like a street path does
+    static String directions(double routeKm) {
+        double legKm = routeKm / 2;
+        int points = directionsPoints(routeKm);
+        Random random = new Random(7);
+        double stepKm = legKm / (points - 1);
+        double lat = START_LAT;
+        double lon = START_LON;
+        double heading = Math.PI / 4;
+
+        StringBuilder coordinates = new StringBuilder(points * 24);
+        StringBuilder steps = new StringBuilder();
+        for (int i = 0; i < points; i++) {
+            if (i > 0) {
+                heading += (random.nextDouble() - 0.5) * 0.6;
+                lat += stepKm * Math.sin(heading) / KM_PER_DEGREE_LAT;
+                lon += stepKm * Math.cos(heading) / kmPerDegreeLon();
+                coordinates.append(',');
+            }
+            coordinates.append(position(lat, lon));
+            if (i % 25 == 0 && i + 1 < points) {
+                int last = Math.min(points - 1, i + 25);
+                if (steps.length() > 0) steps.append(',');
+                steps.append("{\"distance\":").append(round(stepKm * 1000 * (last - i)))
+                        .append(",\"duration\":").append(round(stepKm * 720 * (last - i)))
+                        .append(",\"type\":").append(i == 0 ? 11 : 1 + random.nextInt(6))
+                        .append(",\"instruction\":\"Continue onto Example Street\",\"name\":\"Example Street\",\"way_points\":[")
+                        .append(i).append(',').append(last).append("]}");
+            }
+        }
+
+        String distance = round(legKm * 1000);
+        String duration = round(legKm * 720);
+        return "{\"type\":\"FeatureCollection\",\"bbox\":[" + START_LON + "," + START_LAT + "," + coordinate(lon) + ","
+                + coordinate(lat) + "],\"features\":[{\"bbox\":[" + START_LON + "," + START_LAT + "," + coordinate(lon) + ","
+                + coordinate(lat) + "],\"type\":\"Feature\",\"properties\":{\"segments\":[{\"distance\":" + distance
+                + ",\"duration\":" + duration + ",\"steps\":[" + steps + "]}],\"summary\":{\"distance\":" + distance
+                + ",\"duration\":" + duration + "},\"way_points\":[0," + (points - 1) + "]},\"geometry\":{\"coordinates\":["
+                + coordinates + "],\"type\":\"LineString\"}}],\"metadata\":{\"attribution\":\"openrouteservice.org | OpenStreetMap contributors\","
+                + "\"service\":\"routing\",\"query\":{\"coordinates\":[" + position(START_LAT, START_LON) + ","
+                + position(lat, lon) + "],\"profile\":\"foot-walking\",\"format\":\"geojson\"}}}";
+    }
+
+    // SRTM3 tiles around the start (N51W001 and N51E000) with seeded rolling hills, enough for a 50 km route
+    static Path elevationTiles() throws IOException {
+        Path dir = Files.createTempDirectory("srtm");
+        Random random = new Random(7);
+        double phaseLat = random.nextDouble() * Math.PI;
+        double phaseLon = random.nextDouble() * Math.PI;
+        int size = 1201;
+        for (int west : new int[]{-1, 0}) {
+            ByteBuffer bytes = ByteBuffer.allocate(size * size * 2);
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    double lat = 52 - (double) row / (size - 1);
+                    double lon = west + (double) col / (size - 1);
+                    double height = 60 + 40 * Math.sin(lat * 40 + phaseLat) * Math.cos(lon * 25 + phaseLon);
+                    bytes.putShort((short) Math.round(height));
+                }
+            }
+            Path tile = dir.resolve(ElevationModel.fileName(51, west));
+            Files.write(tile, bytes.array());
+            tile.toFile().deleteOnExit();
+        }
+        dir.toFile().deleteOnExit();
+        return dir;
+    }
+
+    private static double kmPerDegreeLon() {
+        return KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(START_LAT));
+    }
+
+    private static String position(double lat, double lon) {
+        return "[" + coordinate(lon) + "," + coordinate(lat) + "]";
+    }
+
+    // openrouteservice sends six decimals
+    private static String coordinate(double degrees) {
+        return String.format(Locale.US, "%.6f", degrees);
+    }
+
+    private static String round(double value) {
+        return String.format(Locale.US, "%.1f", value);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.backend;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// generateBackAndForthRoute end to end against RecordedProvider, from 1 km to 50 km routes:
+// - cachedRoute: the cache lookup path every repeat request takes (key quantization, rotation, demand tracking)
+// - variantBatch: a full miss, isochrone plus every directions call over local HTTP with streaming parses,
+//   turnaround selection and route building, waiting for all variants so no work leaks into the next op
+// Run with: java -jar target/benchmarks.jar RouteServiceBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Without TCP_NODELAY the stub server adds ~40 ms of delayed-ACK stall to every keep-alive request
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class RouteServiceBenchmark {
+
+    @Param({"1", "5", "10", "25", "50"})
+    public double routeKm;
+
+    private RecordedProvider provider;
+    private RouteService service;
+    private long seed;
+
+    @Setup
+    public void startProvider() throws Exception {
+        provider = new RecordedProvider(routeKm);
+        service = new RouteService(OrsClient.forBaseUrl(provider.baseUrl()));
+        service.generateBackAndForthRoute(RouteFixtures.START_LAT, RouteFixtures.START_LON, routeKm, seed);
+    }
+
+    @TearDown
+    public void stopProvider() {
+        provider.close();
+    }
+
+    @Benchmark
+    public Route cachedRoute() {
+        return service.generateBackAndForthRoute(RouteFixtures.START_LAT, RouteFixtures.START_LON, routeKm, seed++);
+    }
+
+    // The batch bypasses the route cache; its reachable set would be cached, so it is generated per call
+    @Benchmark
+    public int variantBatch() {
+        List<CompletableFuture<Route>> variants = service.createVariantBatchAsync(
+                RouteFixtures.START_LAT, RouteFixtures.START_LON, routeKm, seed++).join();
+        CompletableFuture.allOf(variants.toArray(CompletableFuture[]::new)).join();
+        service.resetCache();
+        return variants.size();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.backend;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Turnaround selection over a recorded-size isochrone, from 1 km to 50 km routes: building the polar index,
+// which a reachable set does once and then keeps, and the strict/loose band search over it that replaced
+// filterTurnaroundCandidates and pickDirectionalCandidate, and the same search ranked for flat terrain, which
+// scores every sector candidate's climb from memory-mapped tiles.
+// Run with: java -jar target/benchmarks.jar TurnaroundSelectionBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TurnaroundSelectionBenchmark {
+
+    @Param({"1", "5", "10", "25", "50"})
+    public double routeKm;
+
+    private ReachableSet reachable;
+    private RouteService service;
+    private RouteService terrainService;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void parseFixture() throws IOException {
+        reachable = OrsClient.parseIsochrones(RouteFixtures.isochrone(routeKm),
+                RouteFixtures.START_LAT, RouteFixtures.START_LON);
+        // Selection never calls the provider; the client only satisfies the constructor
+        OrsClient client = OrsClient.forBaseUrl("http://127.0.0.1:9");
+        service = new RouteService(client);
+        terrainService = new RouteService(client, RouteCache.withDefaults(), IsochroneCache.withDefaults(),
+                LoopRouteGenerator.withDefaults(client), RouteStore.disabled(), RouteMetrics.disabled(),
+                RouteDemand.withDefaults(), new ElevationModel(RouteFixtures.elevationTiles().toString(), 4));
+    }
+
+    @Benchmark
+    public PolarIndex buildPolarIndex() {
+        return PolarIndex.build(reachable, RouteFixtures.START_LAT, RouteFixtures.START_LON);
+    }
+
+    @Benchmark
+    public List<double[]> selectTurnarounds() {
+        return service.selectTurnarounds(reachable, RouteFixtures.START_LAT, RouteFixtures.START_LON, routeKm / 2, random);
+    }
+
+    @Benchmark
+    public List<double[]> selectFlatTurnarounds() {
+        return terrainService.selectTurnarounds(reachable, RouteFixtures.START_LAT, RouteFixtures.START_LON,
+                routeKm / 2, random, Terrain.FLAT);
+    }
+}
@@ -3,11 +3,13 @@ import RunMap from "./RunMap";
 import 'leaflet/dist/leaflet.css';
 import { FaRoute, FaInfoCircle } from "react-icons/fa";
 import axios from 'axios';
+import { decodeRoute } from './polyline';
 
 function App() {
   const [userLocation, setUserLocation] = useState(null);
   const [distanceKm, setDistanceKm] = useState(5);
   const [routeCoordinates, setRouteCoordinates] = useState([]);
+  const [routeToken, setRouteToken] = useState(null);
   const [isInfoOpen, setIsInfoOpen] = useState(false);
   const [loadingRoute, setLoadingRoute] = useState(false);
 
@@ -32,12 +34,14 @@ function App() {
     }
     setLoadingRoute(true);
     try {
+      // Encoded, simplified to 2 m and without the repeated back leg: a fraction of the coordinate array
       const response = await axios.post('http://localhost:8080/api/routes', {
         lat: userLocation.lat,
         lon: userLocation.lon,
         distanceKm,
-      });
-      setRouteCoordinates(response.data.coordinates);
+      }, { params: { format: 'polyline', tolerance: 2, mirror: true } });
+      setRouteCoordinates(decodeRoute(response.data));
+      setRouteToken(response.data.token);
     } catch (error) {
       const msg = error.response?.data;
       alert(typeof msg === "object" ? JSON.stringify(msg, null, 2) : msg);
@@ -67,15 +71,21 @@ function App() {
     if (!userLocation) return alert("User location not set");
 
     try {
-      const response = await axios.post(
-        'http://localhost:8080/api/routes/gpx',
-        {
-          lat: userLocation.lat,
-          lon: userLocation.lon,
-          distanceKm,
-        },
-        { responseType: 'blob' } // important for file downloads
-      );
+      // The route on the map, by its token; only generate one when nothing has been shown yet
+      const response = routeToken
+        ? await axios.get(
+            `http://localhost:8080/api/routes/gpx/${routeToken}`,
+            { responseType: 'blob' }
+          )
+        : await axios.post(
+            'http://localhost:8080/api/routes/gpx',
+            {
+              lat: userLocation.lat,
+              lon: userLocation.lon,
+              distanceKm,
+            },
+            { responseType: 'blob' } // important for file downloads
+          );
 
       const url = window.URL.createObjectURL(new Blob([response.data]));
       const link = document.createElement('a');
@@ -0,0 +1,22 @@
+// Decodes the backend's ?format=polyline geometry (Google encoded polyline, 1e-5 degrees) into {lat, lng}
+// points. A mirrored out-and-back carries only its out leg: the back leg is the same points reversed,
+// without repeating the turnaround.
+export function decodeRoute({ polyline, mirrored }) {
+  const points = [];
+  let index = 0, lat = 0, lng = 0;
+  while (index < polyline.length) {
+    const deltas = [0, 0].map(() => {
+      let result = 0, shift = 0, chunk;
+      do {
+        chunk = polyline.charCodeAt(index++) - 63;
+        result |= (chunk & 0x1f) << shift;
+        shift += 5;
+      } while (chunk >= 0x20);
+      return result & 1 ? ~(result >> 1) : result >> 1;
+    });
+    lat += deltas[0];
+    lng += deltas[1];
+    points.push({ lat: lat / 1e5, lng: lng / 1e5 });
+  }
+  return mirrored ? points.concat(points.slice(0, -1).reverse()) : points;
+}